@@ -0,0 +1,63 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * One benchmark run by BenchmarkRunner. operation() is timed; beforeOperation() is not,
+ * so it can restore whatever the operation changed.
+ */
+public abstract class Benchmark {
+
+	private final String name;
+	private final int operationsPerInvocation;
+
+	// results are folded in here, so that the JIT cannot drop the work
+	protected static volatile long blackhole;
+
+	protected Benchmark(String name, int operationsPerInvocation) {
+		this.name = name;
+		this.operationsPerInvocation = operationsPerInvocation;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * How many operations one call of operation() performs.
+	 */
+	public int getOperationsPerInvocation() {
+		return operationsPerInvocation;
+	}
+
+	public void setUp() throws Exception {
+	}
+
+	public void beforeOperation() throws Exception {
+	}
+
+	public abstract void operation() throws Exception;
+
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Returns the bytes allocated so far by the current thread, or -1 if the JVM cannot tell.
+	 */
+	static long getAllocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+			if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled())
+				return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
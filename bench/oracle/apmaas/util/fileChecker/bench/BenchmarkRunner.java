@@ -0,0 +1,142 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker.bench;
+
+import oracle.apmaas.util.fileChecker.Json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs benchmarks in the current thread: a few warm-up samples, then measured samples of about
+ * sampleMillis each. Reports the mean time per operation, its spread over the samples,
+ * and the bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+
+	private final int warmupSamples;
+	private final int measuredSamples;
+	private final long sampleMillis;
+
+	public BenchmarkRunner(int warmupSamples, int measuredSamples, long sampleMillis) {
+		this.warmupSamples = warmupSamples;
+		this.measuredSamples = measuredSamples;
+		this.sampleMillis = sampleMillis;
+	}
+
+	public Result run(Benchmark benchmark) throws Exception {
+		benchmark.setUp();
+		try {
+			for (int i = 0; i < warmupSamples; i++) {
+				runSample(benchmark);
+			}
+
+			double[] nanosPerOperation = new double[measuredSamples];
+			long totalOperations = 0;
+			long totalAllocatedBytes = 0;
+			for (int i = 0; i < measuredSamples; i++) {
+				Sample sample = runSample(benchmark);
+				nanosPerOperation[i] = (double) sample.nanos / sample.operations;
+				totalOperations += sample.operations;
+				if ((sample.allocatedBytes < 0) || (totalAllocatedBytes < 0))
+					totalAllocatedBytes = -1;
+				else
+					totalAllocatedBytes += sample.allocatedBytes;
+			}
+
+			double mean = 0;
+			for (double value : nanosPerOperation) {
+				mean += value;
+			}
+			mean /= measuredSamples;
+			double variance = 0;
+			for (double value : nanosPerOperation) {
+				variance += (value - mean) * (value - mean);
+			}
+			double stdDev = (measuredSamples > 1) ? Math.sqrt(variance / (measuredSamples - 1)) : 0;
+			double allocatedBytesPerOperation = (totalAllocatedBytes >= 0) ?
+					(double) totalAllocatedBytes / totalOperations : -1;
+
+			return new Result(benchmark.getName(), mean, stdDev, allocatedBytesPerOperation);
+		}
+		finally {
+			benchmark.tearDown();
+		}
+	}
+
+	private Sample runSample(Benchmark benchmark) throws Exception {
+		Sample sample = new Sample();
+		long allocatedBefore = Benchmark.getAllocatedBytes();
+		long deadline = System.nanoTime() + sampleMillis * 1000000L;
+		do {
+			benchmark.beforeOperation();
+			long start = System.nanoTime();
+			benchmark.operation();
+			long end = System.nanoTime();
+			sample.nanos += end - start;
+			sample.operations += benchmark.getOperationsPerInvocation();
+		} while (System.nanoTime() < deadline);
+		long allocatedAfter = Benchmark.getAllocatedBytes();
+		sample.allocatedBytes = ((allocatedBefore >= 0) && (allocatedAfter >= 0)) ? allocatedAfter - allocatedBefore : -1;
+		return sample;
+	}
+
+	public List<Result> runAll(List<Benchmark> benchmarks, String filter) throws Exception {
+		List<Result> results = new ArrayList<>();
+		for (Benchmark benchmark : benchmarks) {
+			if ((filter == null) || benchmark.getName().contains(filter)) {
+				Result result = run(benchmark);
+				System.out.println(result);
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
+	public static String toJson(List<Result> results) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < results.size(); i++) {
+			Result result = results.get(i);
+			if (i > 0)
+				sb.append(",");
+			sb.append("\n  {\"benchmark\":").append(Json.quote(result.name))
+					.append(",\"nsPerOp\":").append(String.format(Locale.ROOT, "%.1f", result.nanosPerOperation))
+					.append(",\"nsPerOpStdDev\":").append(String.format(Locale.ROOT, "%.1f", result.stdDev))
+					.append(",\"bytesPerOp\":").append(String.format(Locale.ROOT, "%.1f", result.allocatedBytesPerOperation))
+					.append("}");
+		}
+		sb.append("\n]");
+		return sb.toString();
+	}
+
+	private static class Sample {
+		long nanos;
+		long operations;
+		long allocatedBytes;
+	}
+
+	public static class Result {
+		final String name;
+		final double nanosPerOperation;
+		final double stdDev;
+		final double allocatedBytesPerOperation;
+
+		Result(String name, double nanosPerOperation, double stdDev, double allocatedBytesPerOperation) {
+			this.name = name;
+			this.nanosPerOperation = nanosPerOperation;
+			this.stdDev = stdDev;
+			this.allocatedBytesPerOperation = allocatedBytesPerOperation;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-40s %14.1f ns/op  +- %10.1f  %12.1f B/op",
+					name, nanosPerOperation, stdDev, allocatedBytesPerOperation);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker.bench;
+
+import oracle.apmaas.util.fileChecker.CopyrightChecker;
+import oracle.apmaas.util.fileChecker.HeaderRules;
+import oracle.apmaas.util.fileChecker.Logger;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Differential check of the byte matcher against the regular expressions: random lines built from fragments
+ * of the copyright block are matched both ways, then random files are checked with byte matching on and off,
+ * with several header windows. Exits with 1 after printing the first mismatches.
+ *
+ * Usage: ByteMatcherDiff [-lines N] [-files N] [-seed S]
+ */
+public class ByteMatcherDiff {
+
+	private final static String[] FRAGMENTS = {
+			"Copyright", "copyright", "COPYRIGHT", "Copy right", "(c)", "(C)", "( c)", "(c", "2016", "2014", "2013",
+			"2099", "201", "20165", "-", " - ", "--", "Oracle", "oracle", "Corporation,", "Corporation", "corporation",
+			"Redwood", "redwood", "Shores,", "Shores", "shores", "CA,", "CA", "USA", "usa", "All", "all", "ALL",
+			"rights", "Rights", "reserved", "Reserved", "reserved.", "ll", "a", "r", "*", "|", "/*", " */", "#",
+			" ", "  ", "\t", "\u000B", "\f", "", "+====+", "x", "\u00E9", "\u0130", "\u212A", "\uFEFF", "\u00A0" };
+	private final static String[] LINE_TERMINATORS = { "\n", "\r", "\r\n", "\n\r", "\n\n" };
+	private final static String[] VALID_LINES = {
+			" *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |",
+			"# Copyright (c) 2013-2016 Oracle Corporation, Redwood Shores, CA, USA",
+			" *  |                         All rights reserved.                              |" };
+
+	private final static int MAX_REPORTED_MISMATCHES = 20;
+
+	private static int mismatchCount = 0;
+
+	public static void main(String[] args) throws IOException {
+		int lineCount = 1000000;
+		int fileCount = 20000;
+		long seed = 42;
+		for (int i = 0; i < args.length; i++) {
+			if ("-lines".equals(args[i]) && (i + 1 < args.length))
+				lineCount = Integer.parseInt(args[++i]);
+			else if ("-files".equals(args[i]) && (i + 1 < args.length))
+				fileCount = Integer.parseInt(args[++i]);
+			else if ("-seed".equals(args[i]) && (i + 1 < args.length))
+				seed = Long.parseLong(args[++i]);
+		}
+
+		Charset charset = Charset.defaultCharset();
+		if ( ! HeaderRules.isAsciiCompatible(charset)) {
+			System.out.println("Default charset " + charset + " is not ASCII compatible, bytes are never matched.");
+			return;
+		}
+
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		Random random = new Random(seed);
+		diffLines(random, lineCount, charset);
+		diffFiles(random, fileCount, charset);
+
+		System.out.println("Default charset " + charset + ": " + lineCount + " lines and " + fileCount + " files compared, " +
+				mismatchCount + " mismatches.");
+		if (mismatchCount > 0)
+			System.exit(1);
+	}
+
+	private static void diffLines(Random random, int lineCount, Charset charset) {
+		HeaderRules rules = HeaderRules.getDefaultRules();
+		for (int i = 0; i < lineCount; i++) {
+			byte[] bytes = createLine(random).getBytes(charset);
+			// flip a bit now and then, to get bytes which do not decode
+			if ((bytes.length > 0) && (random.nextInt(8) == 0))
+				bytes[random.nextInt(bytes.length)] ^= (byte) (1 << random.nextInt(8));
+			// decoded the way the checker decodes a header window
+			String line = new String(bytes, charset);
+
+			int expected = rules.checkStartLine(line);
+			int actual = rules.checkStartLine(bytes, 0, bytes.length);
+			if (expected != actual)
+				reportMismatch("checkStartLine", line, expected, actual);
+
+			expected = rules.checkFollowingLine(line);
+			actual = rules.checkFollowingLine(bytes, 0, bytes.length);
+			if (expected != actual)
+				reportMismatch("checkFollowingLine", line, expected, actual);
+		}
+	}
+
+	private static void diffFiles(Random random, int fileCount, Charset charset) throws IOException {
+		int[][] windows = { { 40, 8 * 1024 }, { 0, 8 * 1024 }, { 3, 64 }, { 1, 16 }, { 0, 100 } };
+		File file = File.createTempFile("crByteMatcherDiff", ".java");
+		try {
+			for (int i = 0; i < fileCount; i++) {
+				String content = createFile(random);
+				FileOutputStream fos = new FileOutputStream(file);
+				try {
+					fos.write(content.getBytes(charset));
+				}
+				finally {
+					fos.close();
+				}
+
+				for (int[] window : windows) {
+					int expected = createChecker(window, false).checkFile(file);
+					int actual = createChecker(window, true).checkFile(file);
+					if (expected != actual)
+						reportMismatch("checkFile " + window[0] + " lines " + window[1] + " bytes", content, expected, actual);
+				}
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private static CopyrightChecker createChecker(int[] window, boolean byteMatching) {
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setHeaderWindowLines(window[0]);
+		checker.setHeaderWindowBytes(window[1]);
+		checker.setByteMatching(byteMatching);
+		return checker;
+	}
+
+	private static String createLine(Random random) {
+		StringBuilder sb = new StringBuilder();
+		int fragmentCount = random.nextInt(16);
+		for (int i = 0; i < fragmentCount; i++) {
+			sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+			if (random.nextBoolean())
+				sb.append(' ');
+		}
+		// a third of the lines wrap fragments around a cut up valid line
+		if (random.nextInt(3) == 0) {
+			String line = VALID_LINES[random.nextInt(VALID_LINES.length)];
+			int end = line.length() - random.nextInt(4);
+			int cut = random.nextInt(end + 1);
+			sb.insert(0, line.substring(0, cut)).append(line.substring(cut, end));
+		}
+		return sb.toString();
+	}
+
+	private static String createFile(Random random) {
+		StringBuilder sb = new StringBuilder();
+		if (random.nextInt(10) == 0)
+			sb.append('\uFEFF');
+		int lineCount = random.nextInt(12);
+		for (int i = 0; i < lineCount; i++) {
+			sb.append(createLine(random));
+			if ((i < lineCount - 1) || random.nextBoolean())
+				sb.append(LINE_TERMINATORS[random.nextInt(LINE_TERMINATORS.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static void reportMismatch(String what, String input, int expected, int actual) {
+		if (++mismatchCount <= MAX_REPORTED_MISMATCHES) {
+			System.out.println(what + ": regex " + expected + ", bytes " + actual + " for \"" + escape(input) + "\"");
+		}
+	}
+
+	private static String escape(String text) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if ((ch < ' ') || (ch > '~'))
+				sb.append(String.format("\\u%04X", (int) ch));
+			else
+				sb.append(ch);
+		}
+		return sb.toString();
+	}
+}
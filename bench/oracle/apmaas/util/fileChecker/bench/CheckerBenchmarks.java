@@ -0,0 +1,234 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker.bench;
+
+import oracle.apmaas.util.fileChecker.CopyrightChecker;
+import oracle.apmaas.util.fileChecker.CopyrightEditor;
+import oracle.apmaas.util.fileChecker.HeaderRules;
+import oracle.apmaas.util.fileChecker.Logger;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Microbenchmarks of the checker and editor hot paths: per-line header matching, per-file checking
+ * and copyright insertion at several file sizes, with allocation per operation.
+ *
+ * Usage: CheckerBenchmarks [-quick] [-filter <name-part>] [-json <file>]
+ */
+public class CheckerBenchmarks {
+
+	private final static String HEADER =
+			"/*\n" +
+			" *  +===========================================================================+\n" +
+			" *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |\n" +
+			" *  |                         All rights reserved.                              |\n" +
+			" *  +===========================================================================+\n" +
+			" */\n";
+	private final static String WRONG_FORMAT_HEADER =
+			"/*\n" +
+			" *  Copyright (c) 2016 Oracle Corporation, Redwood Shores\n" +
+			" */\n";
+	private final static String CODE_LINE = "    public static void main(String[] args) { System.out.println(args.length); }\n";
+
+	private final static int LINE_OPERATIONS_PER_INVOCATION = 1000;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		String filter = null;
+		String jsonFileName = null;
+		for (int i = 0; i < args.length; i++) {
+			if ("-quick".equals(args[i]))
+				quick = true;
+			else if ("-filter".equals(args[i]) && (i + 1 < args.length))
+				filter = args[++i];
+			else if ("-json".equals(args[i]) && (i + 1 < args.length))
+				jsonFileName = args[++i];
+		}
+
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		File workDir = createTempDir();
+		try {
+			BenchmarkRunner runner = quick ? new BenchmarkRunner(1, 3, 200) : new BenchmarkRunner(5, 10, 1000);
+			List<BenchmarkRunner.Result> results = runner.runAll(createBenchmarks(workDir), filter);
+			if (jsonFileName != null) {
+				Writer writer = new FileWriter(jsonFileName);
+				try {
+					writer.write(BenchmarkRunner.toJson(results));
+				}
+				finally {
+					writer.close();
+				}
+			}
+		}
+		finally {
+			deleteDir(workDir);
+		}
+	}
+
+	private static List<Benchmark> createBenchmarks(File workDir) {
+		List<Benchmark> benchmarks = new ArrayList<>();
+
+		benchmarks.add(new StartLineBenchmark("checkStartLine.header", " *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |"));
+		benchmarks.add(new StartLineBenchmark("checkStartLine.code", CODE_LINE));
+		benchmarks.add(new StartLineBenchmark("checkStartLine.wrongFormat", " *  Copyright (c) 2016 Oracle Corporation"));
+		benchmarks.add(new StartLineBytesBenchmark("checkStartLine.header.bytes", " *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |"));
+		benchmarks.add(new StartLineBytesBenchmark("checkStartLine.code.bytes", CODE_LINE));
+		benchmarks.add(new StartLineBytesBenchmark("checkStartLine.wrongFormat.bytes", " *  Copyright (c) 2016 Oracle Corporation"));
+		benchmarks.add(new Benchmark("checkFollowingLine", LINE_OPERATIONS_PER_INVOCATION) {
+			private final HeaderRules rules = HeaderRules.getDefaultRules();
+			private final String line = " *  |                         All rights reserved.                              |";
+
+			public void operation() {
+				long sum = 0;
+				for (int i = 0; i < LINE_OPERATIONS_PER_INVOCATION; i++) {
+					sum += rules.checkFollowingLine(line);
+				}
+				blackhole += sum;
+			}
+		});
+
+		benchmarks.add(new CheckFileBenchmark("checkFile.present", new File(workDir, "Present.java"), HEADER, 200));
+		benchmarks.add(new CheckFileBenchmark("checkFile.missing", new File(workDir, "Missing.java"), "", 200));
+		benchmarks.add(new CheckFileBenchmark("checkFile.wrongFormat", new File(workDir, "WrongFormat.java"), WRONG_FORMAT_HEADER, 200));
+		benchmarks.add(new CheckFileBenchmark("checkFile.missingLarge", new File(workDir, "MissingLarge.java"), "", 50000));
+
+		int[] insertSizes = { 1024, 64 * 1024, 1024 * 1024, 8 * 1024 * 1024 };
+		for (int size : insertSizes) {
+			benchmarks.add(new InsertBenchmark("editMissingFiles." + (size / 1024) + "K",
+					new File(workDir, "Insert" + size + ".java"), size));
+		}
+
+		return benchmarks;
+	}
+
+	private static class StartLineBenchmark extends Benchmark {
+		private final HeaderRules rules = HeaderRules.getDefaultRules();
+		private final String line;
+
+		StartLineBenchmark(String name, String line) {
+			super(name, LINE_OPERATIONS_PER_INVOCATION);
+			this.line = line;
+		}
+
+		public void operation() {
+			long sum = 0;
+			for (int i = 0; i < LINE_OPERATIONS_PER_INVOCATION; i++) {
+				sum += rules.checkStartLine(line);
+			}
+			blackhole += sum;
+		}
+	}
+
+	private static class StartLineBytesBenchmark extends Benchmark {
+		private final HeaderRules rules = HeaderRules.getDefaultRules();
+		private final byte[] line;
+
+		StartLineBytesBenchmark(String name, String line) {
+			super(name, LINE_OPERATIONS_PER_INVOCATION);
+			this.line = line.getBytes();
+		}
+
+		public void operation() {
+			long sum = 0;
+			for (int i = 0; i < LINE_OPERATIONS_PER_INVOCATION; i++) {
+				sum += rules.checkStartLine(line, 0, line.length);
+			}
+			blackhole += sum;
+		}
+	}
+
+	private static class CheckFileBenchmark extends Benchmark {
+		private final File file;
+		private final String header;
+		private final int codeLines;
+
+		CheckFileBenchmark(String name, File file, String header, int codeLines) {
+			super(name, 1);
+			this.file = file;
+			this.header = header;
+			this.codeLines = codeLines;
+		}
+
+		@Override
+		public void setUp() throws IOException {
+			writeFile(file, createContent(header, codeLines));
+		}
+
+		public void operation() {
+			// a new checker each time, so that the result lists do not grow
+			blackhole += new CopyrightChecker().checkFile(file);
+		}
+	}
+
+	private static class InsertBenchmark extends Benchmark {
+		private final File file;
+		private final int size;
+		private byte[] content;
+		private CopyrightEditor editor;
+
+		InsertBenchmark(String name, File file, int size) {
+			super(name, 1);
+			this.file = file;
+			this.size = size;
+		}
+
+		@Override
+		public void setUp() {
+			content = createContent("", size / CODE_LINE.length());
+			editor = new CopyrightEditor();
+		}
+
+		@Override
+		public void beforeOperation() throws IOException {
+			writeFile(file, content);
+		}
+
+		public void operation() {
+			blackhole += editor.editMissingFiles(Collections.singletonList(file.getPath())).size();
+		}
+	}
+
+	private static byte[] createContent(String header, int codeLines) {
+		StringBuilder sb = new StringBuilder(header);
+		sb.append("public class Benchmarked {\n");
+		for (int i = 0; i < codeLines; i++) {
+			sb.append(CODE_LINE);
+		}
+		sb.append("}\n");
+		return sb.toString().getBytes();
+	}
+
+	private static void writeFile(File file, byte[] content) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(content);
+		}
+		finally {
+			fos.close();
+		}
+	}
+
+	private static File createTempDir() throws IOException {
+		File dir = File.createTempFile("crBenchmark", "");
+		if ( ! dir.delete() || ! dir.mkdir())
+			throw new IOException("Failed creating directory " + dir);
+		return dir;
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker.bench;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Builds a synthetic source tree from a seed: nested package directories holding Java files with a mix of
+ * correct, missing and wrong format copyright blocks, plus the special apm-wldf properties files.
+ * The same seed and size always give the same tree.
+ *
+ * Usage: SourceTreeGenerator <directory> <file-count> [seed]
+ */
+public class SourceTreeGenerator {
+
+	private final static String HEADER =
+			"/*\n" +
+			" *  +===========================================================================+\n" +
+			" *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |\n" +
+			" *  |                         All rights reserved.                              |\n" +
+			" *  +===========================================================================+\n" +
+			" */\n";
+	private final static String[] WRONG_FORMAT_HEADERS = {
+			"/*\n * Copyright (c) 2016 Oracle Corporation\n */\n",
+			"/*\n * Copyright (c) 2016-2014 Oracle Corporation, Redwood Shores, CA, USA\n * All rights reserved.\n */\n",
+			"/*\n * Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA\n */\n" };
+	private final static String PROPERTIES_HEADER =
+			"#  +===========================================================================+\n" +
+			"#  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |\n" +
+			"#  |                         All rights reserved.                              |\n" +
+			"#  +===========================================================================+\n";
+	private final static String[] SPECIAL_FILE_NAMES = {
+			"apm-wldf-INTERNAL-RELEASE.properties", "apm-wldf-FUTURE.properties" };
+
+	private final static int MAX_DEPTH = 12;
+	private final static int MAX_SUB_DIRS = 6;
+	private final static int FILES_PER_DIR = 20;
+	// one directory in this many gets the special properties files
+	private final static int SPECIAL_FILE_DIR_RATE = 50;
+
+	// percentages of the files with a missing or wrong format copyright block; the rest are correct
+	private final int missingPercent;
+	private final int wrongFormatPercent;
+
+	private Random random;
+	private int remainingFiles;
+	private int dirCount;
+	private long byteCount;
+	private int fileCount;
+	private int missingCount;
+	private int wrongFormatCount;
+
+	public SourceTreeGenerator(int missingPercent, int wrongFormatPercent) {
+		this.missingPercent = missingPercent;
+		this.wrongFormatPercent = wrongFormatPercent;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: SourceTreeGenerator <directory> <file-count> [seed]");
+			return;
+		}
+		long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1;
+		SourceTreeGenerator generator = new SourceTreeGenerator(10, 5);
+		generator.generate(new File(args[0]), Integer.parseInt(args[1]), seed);
+		System.out.println(generator.getFileCount() + " files (" + generator.getMissingCount() + " missing, " +
+				generator.getWrongFormatCount() + " wrong format) in " + generator.getDirCount() + " directories, " +
+				generator.getByteCount() + " bytes");
+	}
+
+	public void generate(File root, int fileCount, long seed) throws IOException {
+		random = new Random(seed);
+		remainingFiles = fileCount;
+		dirCount = 0;
+		byteCount = 0;
+		this.fileCount = 0;
+		missingCount = 0;
+		wrongFormatCount = 0;
+
+		// keep adding top level packages until every file is placed
+		for (int i = 0; remainingFiles > 0; i++) {
+			generateDir(new File(root, "pkg" + i), 1, "pkg" + i);
+		}
+	}
+
+	private void generateDir(File dir, int depth, String packageName) throws IOException {
+		if ( ! dir.isDirectory() && ! dir.mkdirs())
+			throw new IOException("Failed creating directory " + dir);
+		dirCount++;
+
+		int files = Math.min(remainingFiles, random.nextInt(FILES_PER_DIR + 1));
+		for (int i = 0; i < files; i++) {
+			generateJavaFile(new File(dir, "Class" + i + ".java"), packageName, "Class" + i);
+		}
+		remainingFiles -= files;
+
+		if (random.nextInt(SPECIAL_FILE_DIR_RATE) == 0) {
+			for (String fileName : SPECIAL_FILE_NAMES) {
+				generatePropertiesFile(new File(dir, fileName));
+			}
+		}
+
+		if (depth < MAX_DEPTH) {
+			int subDirs = random.nextInt(MAX_SUB_DIRS);
+			for (int i = 0; (i < subDirs) && (remainingFiles > 0); i++) {
+				generateDir(new File(dir, "sub" + i), depth + 1, packageName + ".sub" + i);
+			}
+		}
+	}
+
+	private void generateJavaFile(File file, String packageName, String className) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int kind = random.nextInt(100);
+		if (kind < missingPercent) {
+			missingCount++;
+		}
+		else if (kind < missingPercent + wrongFormatPercent) {
+			sb.append(WRONG_FORMAT_HEADERS[random.nextInt(WRONG_FORMAT_HEADERS.length)]);
+			wrongFormatCount++;
+		}
+		else {
+			sb.append(HEADER);
+		}
+
+		sb.append("package ").append(packageName).append(";\n\n");
+		sb.append("public class ").append(className).append(" {\n");
+		// mostly small files with a long tail of large ones
+		int methods = (int) Math.min(2000, Math.exp(random.nextGaussian() * 1.2 + 2.5));
+		for (int i = 0; i < methods; i++) {
+			sb.append("\n    public int method").append(i).append("(int value) {\n");
+			sb.append("        return value * ").append(random.nextInt(1000)).append(" + ").append(i).append(";\n");
+			sb.append("    }\n");
+		}
+		sb.append("}\n");
+		writeFile(file, sb.toString());
+		fileCount++;
+	}
+
+	private void generatePropertiesFile(File file) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		if (random.nextInt(100) < missingPercent) {
+			missingCount++;
+		}
+		else {
+			sb.append(PROPERTIES_HEADER);
+		}
+		for (int i = 0; i < 20; i++) {
+			sb.append("apm.wldf.setting").append(i).append("=").append(random.nextInt()).append("\n");
+		}
+		writeFile(file, sb.toString());
+		fileCount++;
+	}
+
+	private void writeFile(File file, String content) throws IOException {
+		byte[] bytes = content.getBytes("US-ASCII");
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(bytes);
+		}
+		finally {
+			fos.close();
+		}
+		byteCount += bytes.length;
+	}
+
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	public int getDirCount() {
+		return dirCount;
+	}
+
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	public int getMissingCount() {
+		return missingCount;
+	}
+
+	public int getWrongFormatCount() {
+		return wrongFormatCount;
+	}
+}
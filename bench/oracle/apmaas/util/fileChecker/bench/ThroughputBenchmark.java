@@ -0,0 +1,179 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker.bench;
+
+import oracle.apmaas.util.fileChecker.CopyrightChecker;
+import oracle.apmaas.util.fileChecker.CopyrightEditor;
+import oracle.apmaas.util.fileChecker.Json;
+import oracle.apmaas.util.fileChecker.Logger;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * End-to-end throughput of a full run (checkDir, writeResultToFile, editMissingFiles) against
+ * synthetic trees of several sizes. Prints one JSON object per tree size with the wall time,
+ * files/sec, MB/sec and peak heap of every phase; "files" counts the files checked, written to
+ * the results or edited. Exits with 1 if the check phase is slower than -min-files-per-sec
+ * or did not find exactly the generated missing and wrong format files.
+ *
+ * Usage: ThroughputBenchmark [-dir <work-dir>] [-sizes 10000,100000,1000000] [-seed N]
+ *            [-threads N] [-edit-threads N] [-min-files-per-sec N] [-json <file>]
+ *
+ * The result files are written to the current directory, as by Main.
+ */
+public class ThroughputBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		File workDir = new File(System.getProperty("java.io.tmpdir"), "crThroughput");
+		String sizes = "10000,100000,1000000";
+		long seed = 1;
+		int threadCount = 1;
+		int editThreadCount = 1;
+		double minFilesPerSec = 0;
+		String jsonFileName = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if ("-dir".equals(args[i]))
+				workDir = new File(args[i + 1]);
+			else if ("-sizes".equals(args[i]))
+				sizes = args[i + 1];
+			else if ("-seed".equals(args[i]))
+				seed = Long.parseLong(args[i + 1]);
+			else if ("-threads".equals(args[i]))
+				threadCount = Integer.parseInt(args[i + 1]);
+			else if ("-edit-threads".equals(args[i]))
+				editThreadCount = Integer.parseInt(args[i + 1]);
+			else if ("-min-files-per-sec".equals(args[i]))
+				minFilesPerSec = Double.parseDouble(args[i + 1]);
+			else if ("-json".equals(args[i]))
+				jsonFileName = args[i + 1];
+		}
+
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		List<String> reports = new ArrayList<>();
+		boolean passed = true;
+		for (String size : sizes.split(",")) {
+			int fileCount = Integer.parseInt(size.trim());
+			File treeDir = new File(workDir, "tree" + fileCount);
+			deleteTree(treeDir);
+
+			SourceTreeGenerator generator = new SourceTreeGenerator(10, 5);
+			generator.generate(treeDir, fileCount, seed);
+
+			String report = runPhases(treeDir, generator, threadCount, editThreadCount, minFilesPerSec);
+			System.out.println(report);
+			reports.add(report);
+			if (report.contains("\"passed\":false"))
+				passed = false;
+
+			deleteTree(treeDir);
+		}
+
+		if (jsonFileName != null) {
+			Writer writer = new FileWriter(jsonFileName);
+			try {
+				for (String report : reports) {
+					writer.write(report);
+					writer.write("\n");
+				}
+			}
+			finally {
+				writer.close();
+			}
+		}
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static String runPhases(File treeDir, SourceTreeGenerator generator, int threadCount,
+									int editThreadCount, double minFilesPerSec) {
+		String path = treeDir.getPath();
+		int files = generator.getFileCount();
+		long bytes = generator.getByteCount();
+		System.gc();
+
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setThreadCount(threadCount);
+		resetPeakHeap();
+		long start = System.nanoTime();
+		checker.checkDir(path);
+		long checkNanos = System.nanoTime() - start;
+		long checkPeakHeap = getPeakHeap();
+
+		resetPeakHeap();
+		start = System.nanoTime();
+		checker.writeResultToFile(path);
+		long writeNanos = System.nanoTime() - start;
+		long writePeakHeap = getPeakHeap();
+
+		CopyrightEditor editor = new CopyrightEditor();
+		editor.setIoParallelism(editThreadCount);
+		resetPeakHeap();
+		start = System.nanoTime();
+		int edited = editor.editMissingFiles(checker.getMissingFilePaths()).size();
+		long editNanos = System.nanoTime() - start;
+		long editPeakHeap = getPeakHeap();
+
+		int findings = checker.getMissingFilePaths().size() + checker.getWrongFormatFilePaths().size();
+		double checkFilesPerSec = files / (checkNanos / 1e9);
+		boolean passed = (checkFilesPerSec >= minFilesPerSec) &&
+				(checker.getMissingFilePaths().size() == generator.getMissingCount()) &&
+				(checker.getWrongFormatFilePaths().size() == generator.getWrongFormatCount());
+
+		return "{\"files\":" + files + ",\"directories\":" + generator.getDirCount() + ",\"bytes\":" + bytes +
+				",\"threads\":" + threadCount + ",\"editThreads\":" + editThreadCount +
+				",\"missing\":{\"expected\":" + generator.getMissingCount() + ",\"found\":" + checker.getMissingFilePaths().size() + "}" +
+				",\"wrongFormat\":{\"expected\":" + generator.getWrongFormatCount() + ",\"found\":" + checker.getWrongFormatFilePaths().size() + "}" +
+				",\"phases\":[" +
+				formatPhase("checkDir", checkNanos, files, bytes, checkPeakHeap) + "," +
+				formatPhase("writeResultToFile", writeNanos, findings, -1, writePeakHeap) + "," +
+				formatPhase("editMissingFiles", editNanos, edited, -1, editPeakHeap) + "]" +
+				",\"minFilesPerSec\":" + minFilesPerSec + ",\"passed\":" + passed + "}";
+	}
+
+	// bytes is the size of the whole tree, so MB/sec is relative to the tree, not to the bytes actually read
+	private static String formatPhase(String name, long nanos, int files, long bytes, long peakHeap) {
+		double seconds = nanos / 1e9;
+		return "{\"phase\":" + Json.quote(name) +
+				",\"wallMillis\":" + String.format(Locale.ROOT, "%.1f", nanos / 1e6) +
+				",\"files\":" + files +
+				",\"filesPerSec\":" + String.format(Locale.ROOT, "%.1f", files / seconds) +
+				((bytes >= 0) ? ",\"mbPerSec\":" + String.format(Locale.ROOT, "%.2f", bytes / 1048576.0 / seconds) : "") +
+				",\"peakHeapBytes\":" + peakHeap + "}";
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+		}
+	}
+
+	// the sum of the peaks of the heap pools, which may have peaked at different times
+	private static long getPeakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ((pool.getType() == MemoryType.HEAP) && (pool.getPeakUsage() != null))
+				peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+
+	private static void deleteTree(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				deleteTree(child);
+			}
+		}
+		file.delete();
+	}
+}
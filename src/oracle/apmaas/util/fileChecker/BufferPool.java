@@ -0,0 +1,55 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A fixed set of direct buffers shared by the editing threads.
+ * Buffers are created on first use, so an idle pool costs no memory.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private int createdBuffers = 0;
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.freeBuffers = new LinkedBlockingQueue<>(maxBuffers);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns a cleared buffer, waiting for one to be released if all of them are in use.
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            synchronized (this) {
+                if (createdBuffers < maxBuffers) {
+                    createdBuffers++;
+                    return ByteBuffer.allocateDirect(bufferSize);
+                }
+            }
+            buffer = freeBuffers.take();
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        freeBuffers.offer(buffer);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of check results, keyed by canonical path and validated by file size and modification time.
+ * The whole cache is dropped when its fingerprint (rules, file types, ignore rules, archive scanning,
+ * header window and current year) changes.
+ *
+ * File layout: a header line "#crCheckCache <version> <fingerprint> <saved-millis>",
+ * then one line per file: "<size>\t<mtime>\t<hash>\t<case>\t<path>".
+ */
+public class CheckCache {
+
+	public final static long NO_HASH = -1;
+
+	private final static String CACHE_HEADER = "#crCheckCache";
+	private final static int CACHE_VERSION = 1;
+	private final static String FIELD_SEPARATOR = "\t";
+
+	// A file modified this close to the time the cache was saved may have changed again
+	// within the same time stamp, so its entry is not trusted without checking the content.
+	private final static long RACY_INTERVAL_MILLIS = 2000;
+
+	private final String cacheFileName;
+	private final String fingerprint;
+	private final boolean hashing;
+
+	private long savedMillis;
+	// entries loaded from the cache file, and the entries of files seen in this run
+	private final Map<String, Entry> previousEntries = new ConcurrentHashMap<>();
+	private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+
+	public CheckCache(String cacheFileName, String fingerprint, boolean hashing) {
+		this.cacheFileName = cacheFileName;
+		this.fingerprint = fingerprint;
+		this.hashing = hashing;
+	}
+
+	public boolean isHashing() {
+		return hashing;
+	}
+
+	public Entry get(String filePath) {
+		return previousEntries.get(filePath);
+	}
+
+	public void put(String filePath, Entry entry) {
+		if (entry.getCaseNum() != CopyrightChecker.COPYRIGHT_FAILED)
+			currentEntries.put(filePath, entry);
+	}
+
+	public boolean isUnchanged(Entry entry, long fileLength, long lastModified) {
+		return (entry.fileLength == fileLength) && (entry.lastModified == lastModified) &&
+				(lastModified + RACY_INTERVAL_MILLIS < savedMillis);
+	}
+
+	public static long hash(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		return crc.getValue();
+	}
+
+	public void load() {
+		File cacheFile = new File(cacheFileName);
+		if ( ! cacheFile.exists())
+			return;
+
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+			String[] header = splitLine(br.readLine(), 4);
+			if ((header == null) || ! CACHE_HEADER.equals(header[0]) ||
+					! String.valueOf(CACHE_VERSION).equals(header[1]) || ! fingerprint.equals(header[2])) {
+				Logger.writeInfo("Check cache " + cacheFileName + " is out of date, all files will be checked.");
+				return;
+			}
+			savedMillis = Long.parseLong(header[3]);
+
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split(FIELD_SEPARATOR, 5);
+				if (fields.length == 5) {
+					previousEntries.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+							Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+				}
+			}
+		}
+		catch (Exception e) {
+			// a damaged cache only costs a full check
+			Logger.writeException("Failed reading check cache " + cacheFileName + ": " + e.getMessage());
+			previousEntries.clear();
+		}
+		finally {
+			if (br != null) {
+				try {
+					br.close();
+				}
+				catch (Exception ignoreException) {
+					// nothing to do here
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the entries of this run, plus the previous entries outside the checked path, to the cache file.
+	 * After a complete walk of the checked path, the previous entries not seen inside it belong to files which
+	 * no longer exist; after a partial one, e.g. of a shard or of the files changed since a commit, they are
+	 * kept as long as their files exist.
+	 */
+	public void save(String canonicalPathChecked, boolean completeWalk) throws IOException {
+		String checkedDirPrefix = canonicalPathChecked.endsWith(File.separator) ?
+				canonicalPathChecked : canonicalPathChecked + File.separator;
+
+		File cacheFile = new File(cacheFileName);
+		File tempFile = new File(cacheFileName + ".tmp");
+		BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+		try {
+			bw.write(CACHE_HEADER + " " + CACHE_VERSION + " " + fingerprint + " " + System.currentTimeMillis());
+			bw.newLine();
+			for (Map.Entry<String, Entry> entry : previousEntries.entrySet()) {
+				String filePath = entry.getKey();
+				if (currentEntries.containsKey(filePath))
+					continue;
+				boolean checkedPath = filePath.equals(canonicalPathChecked) || filePath.startsWith(checkedDirPrefix);
+				if ( ! checkedPath || ( ! completeWalk && new File(filePath).isFile()))
+					writeEntry(bw, filePath, entry.getValue());
+			}
+			for (Map.Entry<String, Entry> entry : currentEntries.entrySet()) {
+				writeEntry(bw, entry.getKey(), entry.getValue());
+			}
+		}
+		finally {
+			bw.close();
+		}
+
+		if (cacheFile.exists() && ! cacheFile.delete())
+			throw new IOException("Failed replacing check cache " + cacheFileName);
+		if ( ! tempFile.renameTo(cacheFile))
+			throw new IOException("Failed writing check cache " + cacheFileName);
+	}
+
+	private void writeEntry(BufferedWriter bw, String filePath, Entry entry) throws IOException {
+		bw.write(entry.fileLength + FIELD_SEPARATOR + entry.lastModified + FIELD_SEPARATOR +
+				entry.contentHash + FIELD_SEPARATOR + entry.caseNum + FIELD_SEPARATOR + filePath);
+		bw.newLine();
+	}
+
+	private static String[] splitLine(String line, int fieldNum) {
+		if (line == null)
+			return null;
+		String[] fields = line.split(" ");
+		return (fields.length == fieldNum) ? fields : null;
+	}
+
+	public static class Entry {
+		private final long fileLength;
+		private final long lastModified;
+		private final long contentHash;
+		private final int caseNum;
+
+		public Entry(long fileLength, long lastModified, long contentHash, int caseNum) {
+			this.fileLength = fileLength;
+			this.lastModified = lastModified;
+			this.contentHash = contentHash;
+			this.caseNum = caseNum;
+		}
+
+		public int getCaseNum() {
+			return caseNum;
+		}
+
+		public boolean hasSameContent(long fileLength, long contentHash) {
+			return (contentHash != NO_HASH) && (this.contentHash == contentHash) && (this.fileLength == fileLength);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends paths to a CheckServer and hands the findings over to the result sinks of a local checker,
+ * so that the result files are written as if the paths had been checked in this process. The server checks
+ * them with the options of that checker: header window, matching, archives, file types and ignore rules.
+ * The token of the server is read from its file in the current directory, where the server must have been started.
+ */
+public class CheckClient {
+
+	// the server is local, so a server which does not accept at once is not running
+	private final static int CONNECT_TIMEOUT_MILLIS = 500;
+
+	private final int port;
+
+	public CheckClient(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Checks the paths on the server and writes the findings to the result sinks of checker.
+	 * Returns the outcomes of inserting the missing copyright blocks, or null if no server is running,
+	 * in which case nothing has been sent and the caller should check the paths itself.
+	 * Once the request is sent, the server may have edited files, so a failure is thrown instead.
+	 */
+	public List<EditOutcome> check(List<String> paths, CopyrightChecker checker, String pathChecked) throws IOException {
+		Map<String, Integer> results = new LinkedHashMap<>();
+		List<EditOutcome> outcomes = new ArrayList<>();
+
+		String token = readToken();
+		if (token == null)
+			return null;
+
+		Socket socket = new Socket();
+		try {
+			try {
+				socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+			}
+			catch (ConnectException e) {
+				// nothing listens on the port
+				return null;
+			}
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), CheckServer.CHARSET));
+			CheckServer.writeLine(writer, CheckServer.REQUEST_TOKEN + " " + token);
+			CheckServer.writeLine(writer, CheckServer.REQUEST_CWD + " " + new File(".").getAbsoluteFile().getParent());
+			for (String option : getOptions(checker)) {
+				CheckServer.writeLine(writer, CheckServer.REQUEST_OPTION + " " + option);
+			}
+			for (String path : paths) {
+				CheckServer.writeLine(writer, CheckServer.REQUEST_PATH + " " + path);
+			}
+			CheckServer.writeLine(writer, CheckServer.REQUEST_END);
+			writer.flush();
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), CheckServer.CHARSET));
+			String line;
+			while (((line = reader.readLine()) != null) && ! CheckServer.RESPONSE_DONE.equals(line)) {
+				String[] fields = line.split(" ", 3);
+				if (CheckServer.RESPONSE_RESULT.equals(fields[0]) && (fields.length == 3)) {
+					results.put(fields[2], Integer.parseInt(fields[1]));
+				}
+				else if (CheckServer.RESPONSE_EDIT.equals(fields[0]) && (fields.length == 3)) {
+					int tab = fields[2].lastIndexOf('\t');
+					String message = fields[2].substring(tab + 1);
+					outcomes.add(new EditOutcome(fields[2].substring(0, tab), Integer.parseInt(fields[1]),
+							message.isEmpty() ? null : message));
+				}
+				else if (CheckServer.RESPONSE_ERROR.equals(fields[0])) {
+					reportEditOutcomes(outcomes);
+					throw new IOException("Check server failed: " + line.substring(fields[0].length()).trim());
+				}
+			}
+			if (line == null) {
+				reportEditOutcomes(outcomes);
+				throw new IOException("Check server closed the connection before completing the check.");
+			}
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Check server sent a malformed response: " + e, e);
+		}
+		finally {
+			try {
+				socket.close();
+			}
+			catch (IOException ignoreException) {
+				// nothing to do here
+			}
+		}
+
+		checker.rewriteResults(pathChecked, results);
+		return outcomes;
+	}
+
+	/**
+	 * Returns the options of checker the server checks with, each "name value".
+	 */
+	private static List<String> getOptions(CopyrightChecker checker) {
+		List<String> options = new ArrayList<>();
+		options.add(CheckServer.OPTION_HEADER_LINES + " " + checker.getHeaderWindowLines());
+		options.add(CheckServer.OPTION_HEADER_BYTES + " " + checker.getHeaderWindowBytes());
+		options.add(CheckServer.OPTION_BYTE_MATCHING + " " + checker.isByteMatching());
+		options.add(CheckServer.OPTION_ARCHIVES + " " + checker.isArchiveScanning());
+		options.add(CheckServer.OPTION_TYPES + " " + checker.getFileTypes().getName());
+		if (checker.getIgnoreRules() != null) {
+			for (String line : checker.getIgnoreRules().getLines()) {
+				options.add(CheckServer.OPTION_IGNORE_RULE + " " + line);
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Logs the outcomes of the files the server edited before failing, which are not reported otherwise.
+	 */
+	private static void reportEditOutcomes(List<EditOutcome> outcomes) {
+		for (EditOutcome outcome : outcomes) {
+			Logger.writeInfo("Edited by the check server before failing: " + outcome);
+		}
+	}
+
+	/**
+	 * Returns the token of the server on port, or null if no server has written one to the current directory.
+	 */
+	private String readToken() {
+		File tokenFile = new File(CheckServer.generateTokenFileName(port));
+		if ( ! tokenFile.isFile())
+			return null;
+		try {
+			BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(tokenFile), CheckServer.CHARSET));
+			try {
+				return br.readLine();
+			}
+			finally {
+				br.close();
+			}
+		}
+		catch (IOException e) {
+			Logger.writeException("Cannot read the token of the check server from " + tokenFile.getPath() + ": " + e.getMessage());
+			return null;
+		}
+	}
+}
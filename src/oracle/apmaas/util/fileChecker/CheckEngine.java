@@ -0,0 +1,237 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A configured check for programs which run many checks in one JVM, e.g. a build tool checking its modules
+ * in parallel. The configuration is fixed once built, and every check gets its own checker, editor and metrics
+ * and logs at the level of the engine, so one engine may run any number of checks at the same time.
+ * <p>
+ * Results are returned as a CheckReport and, if a ResultSink is given, also passed to it while the check runs.
+ * Checks which edit files must not be given overlapping paths. No result, cache or shard file is written.
+ */
+public class CheckEngine {
+
+	private final int threadCount;
+	private final int headerWindowLines;
+	private final int headerWindowBytes;
+	private final boolean byteMatching;
+	private final boolean archiveScanning;
+	private final FileTypes fileTypes;
+	private final List<String> ignoreRules;
+	private final boolean editing;
+	private final int editThreadCount;
+	private final int logLevel;
+
+	private CheckEngine(Builder builder) {
+		threadCount = builder.threadCount;
+		headerWindowLines = builder.headerWindowLines;
+		headerWindowBytes = builder.headerWindowBytes;
+		byteMatching = builder.byteMatching;
+		archiveScanning = builder.archiveScanning;
+		fileTypes = builder.fileTypes;
+		ignoreRules = Collections.unmodifiableList(new ArrayList<>(builder.ignoreRules));
+		editing = builder.editing;
+		editThreadCount = builder.editThreadCount;
+		logLevel = builder.logLevel;
+	}
+
+	public CheckReport check(String path) {
+		return check(Collections.singletonList(path), null);
+	}
+
+	/**
+	 * Checks the files and directories, and inserts the missing copyright blocks if the engine edits.
+	 * The ignore rules are relative to the first path; resultSink may be null.
+	 */
+	public CheckReport check(List<String> paths, ResultSink resultSink) {
+		RunMetrics metrics = new RunMetrics();
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setMetrics(metrics);
+		checker.setLogLevel(logLevel);
+		checker.setThreadCount(threadCount);
+		checker.setHeaderWindowLines(headerWindowLines);
+		checker.setHeaderWindowBytes(headerWindowBytes);
+		checker.setByteMatching(byteMatching);
+		checker.setArchiveScanning(archiveScanning);
+		checker.setFileTypes(fileTypes);
+		if ( ! ignoreRules.isEmpty() && ! paths.isEmpty()) {
+			IgnoreRules rules = createIgnoreRules(paths.get(0));
+			if (rules != null)
+				checker.setIgnoreRules(rules);
+		}
+		if (resultSink != null)
+			checker.addResultSink(resultSink);
+
+		String pathChecked = join(paths);
+		checker.openResultSinks(pathChecked);
+		for (String path : paths) {
+			checker.checkDir(path);
+		}
+		checker.closeResultSinks(pathChecked);
+
+		List<EditOutcome> editOutcomes = new ArrayList<>();
+		if (editing) {
+			CopyrightEditor editor = new CopyrightEditor();
+			editor.setMetrics(metrics);
+			editor.setLogLevel(logLevel);
+			editor.setIoParallelism(editThreadCount);
+			editOutcomes = editor.editMissingFiles(checker.getMissingFilePaths());
+		}
+		// the checker is not used again, so its compact lists are handed over instead of copied
+		return new CheckReport(pathChecked, checker.getWrongFormatFilePaths(), checker.getMissingFilePaths(),
+				editOutcomes, metrics);
+	}
+
+	private IgnoreRules createIgnoreRules(String path) {
+		try {
+			File root = new File(path);
+			IgnoreRules rules = new IgnoreRules(root.isDirectory() ? root : root.getAbsoluteFile().getParentFile());
+			for (String rule : ignoreRules) {
+				rules.addRule(rule);
+			}
+			return rules;
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, "Cannot resolve ignore rules for " + path + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static String join(List<String> paths) {
+		StringBuilder sb = new StringBuilder();
+		for (String path : paths) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(path);
+		}
+		return sb.toString();
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public int getHeaderWindowLines() {
+		return headerWindowLines;
+	}
+
+	public int getHeaderWindowBytes() {
+		return headerWindowBytes;
+	}
+
+	public boolean isByteMatching() {
+		return byteMatching;
+	}
+
+	public boolean isArchiveScanning() {
+		return archiveScanning;
+	}
+
+	public FileTypes getFileTypes() {
+		return fileTypes;
+	}
+
+	public List<String> getIgnoreRules() {
+		return ignoreRules;
+	}
+
+	public boolean isEditing() {
+		return editing;
+	}
+
+	public int getEditThreadCount() {
+		return editThreadCount;
+	}
+
+	public int getLogLevel() {
+		return logLevel;
+	}
+
+	/**
+	 * Collects the configuration of a CheckEngine; the defaults are those of the command line, except that
+	 * nothing is logged and no file is edited.
+	 */
+	public static class Builder {
+		private int threadCount = 1;
+		private int headerWindowLines = CopyrightChecker.DEFAULT_HEADER_WINDOW_LINES;
+		private int headerWindowBytes = CopyrightChecker.DEFAULT_HEADER_WINDOW_BYTES;
+		private boolean byteMatching = true;
+		private boolean archiveScanning = false;
+		private FileTypes fileTypes = FileTypes.getDefaultTypes();
+		private final List<String> ignoreRules = new ArrayList<>();
+		private boolean editing = false;
+		private int editThreadCount = 1;
+		private int logLevel = Logger.LOG_LEVEL_Silent;
+
+		public Builder setThreadCount(int threadCount) {
+			this.threadCount = Math.max(1, threadCount);
+			return this;
+		}
+
+		public Builder setHeaderWindowLines(int headerWindowLines) {
+			this.headerWindowLines = Math.max(0, headerWindowLines);
+			return this;
+		}
+
+		public Builder setHeaderWindowBytes(int headerWindowBytes) {
+			this.headerWindowBytes = Math.max(0, headerWindowBytes);
+			return this;
+		}
+
+		public Builder setByteMatching(boolean byteMatching) {
+			this.byteMatching = byteMatching;
+			return this;
+		}
+
+		public Builder setArchiveScanning(boolean archiveScanning) {
+			this.archiveScanning = archiveScanning;
+			return this;
+		}
+
+		public Builder setFileTypes(FileTypes fileTypes) {
+			this.fileTypes = fileTypes;
+			return this;
+		}
+
+		/**
+		 * Adds a .gitignore style rule; later rules override earlier ones, as with -exclude and -include.
+		 */
+		public Builder addIgnoreRule(String rule) {
+			ignoreRules.add(rule);
+			return this;
+		}
+
+		public Builder setEditing(boolean editing) {
+			this.editing = editing;
+			return this;
+		}
+
+		public Builder setEditThreadCount(int editThreadCount) {
+			this.editThreadCount = Math.max(1, editThreadCount);
+			return this;
+		}
+
+		/**
+		 * Sets one of the Logger.LOG_LEVEL_* values; exceptions are written to the exception file at any level.
+		 */
+		public Builder setLogLevel(int logLevel) {
+			this.logLevel = logLevel;
+			return this;
+		}
+
+		public CheckEngine build() {
+			return new CheckEngine(this);
+		}
+	}
+}
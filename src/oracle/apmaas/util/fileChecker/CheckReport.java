@@ -0,0 +1,64 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of one check run by a CheckEngine. It does not change once returned.
+ */
+public class CheckReport {
+
+	private final String pathChecked;
+	private final List<String> wrongFormatFilePaths;
+	private final List<String> missingFilePaths;
+	private final List<EditOutcome> editOutcomes;
+	private final RunMetrics metrics;
+
+	CheckReport(String pathChecked, List<String> wrongFormatFilePaths, List<String> missingFilePaths,
+			List<EditOutcome> editOutcomes, RunMetrics metrics) {
+		this.pathChecked = pathChecked;
+		this.wrongFormatFilePaths = Collections.unmodifiableList(wrongFormatFilePaths);
+		this.missingFilePaths = Collections.unmodifiableList(missingFilePaths);
+		this.editOutcomes = Collections.unmodifiableList(editOutcomes);
+		this.metrics = metrics;
+	}
+
+	public String getPathChecked() {
+		return pathChecked;
+	}
+
+	/**
+	 * Returns the canonical paths of the files whose copyright is in wrong format, in the order of the serial walk.
+	 */
+	public List<String> getWrongFormatFilePaths() {
+		return wrongFormatFilePaths;
+	}
+
+	/**
+	 * Returns the canonical paths of the files without copyright, in the order of the serial walk.
+	 */
+	public List<String> getMissingFilePaths() {
+		return missingFilePaths;
+	}
+
+	/**
+	 * Returns what happened to each file without copyright, or an empty list if the engine does not edit.
+	 */
+	public List<EditOutcome> getEditOutcomes() {
+		return editOutcomes;
+	}
+
+	public boolean hasErrors() {
+		return ! wrongFormatFilePaths.isEmpty() || ! missingFilePaths.isEmpty();
+	}
+
+	public RunMetrics getMetrics() {
+		return metrics;
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps a warmed-up checker resident and checks the paths sent by a CheckClient over a loopback port,
+ * so that git hooks do not pay for JVM startup on every commit.
+ * <p>
+ * A request is a "token" line, a "cwd" line, one "option" line per check option of the client, one "path" line
+ * per path, relative ones being resolved against cwd, and an "end" line. Each request is checked with the options
+ * of its client, so that the results are those the client would get in its own process. The token is a random one the server writes to an owner-only file in its current directory,
+ * next to the result files, so that only the user running the server can have files checked and edited by it;
+ * a request without it is rejected.
+ * The response holds one "result" line per finding in the order of the serial walk, one "edit" line per file
+ * without copyright after inserting it, and a "done" line. Every request gets its own checker and editor;
+ * editing is serialized, so that two requests never edit the same file at the same time.
+ */
+public class CheckServer {
+
+	public final static int DEFAULT_PORT = 47100;
+
+	final static String REQUEST_TOKEN = "token";
+	final static String REQUEST_CWD = "cwd";
+	final static String REQUEST_OPTION = "option";
+	final static String REQUEST_PATH = "path";
+	final static String REQUEST_END = "end";
+	final static String RESPONSE_RESULT = "result";
+	final static String RESPONSE_EDIT = "edit";
+	final static String RESPONSE_DONE = "done";
+	final static String RESPONSE_ERROR = "error";
+
+	// the names of the options, each followed by its value
+	final static String OPTION_HEADER_LINES = "header-lines";
+	final static String OPTION_HEADER_BYTES = "header-bytes";
+	final static String OPTION_BYTE_MATCHING = "byte-matching";
+	final static String OPTION_ARCHIVES = "archives";
+	final static String OPTION_TYPES = "types";
+	final static String OPTION_IGNORE_RULE = "ignore-rule";
+
+	final static String CHARSET = "UTF-8";
+
+	// a client which sends nothing for this long is dropped
+	private final static int READ_TIMEOUT_MILLIS = 60 * 1000;
+
+	private final static String TOKEN_FILE_NAME = "crCheckServerToken";
+	private final static int TOKEN_BYTES = 32;
+
+	private final int port;
+	private int threadCount = 1;
+	private int editThreadCount = 1;
+
+	private final Object editLock = new Object();
+	private byte[] token = null;
+
+	public CheckServer(int port) {
+		this.port = port;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	public void setEditThreadCount(int editThreadCount) {
+		this.editThreadCount = Math.max(1, editThreadCount);
+	}
+
+	/**
+	 * Returns the name of the file holding the token of the server on port, relative to the current directory.
+	 */
+	static String generateTokenFileName(int port) {
+		return "." + File.separatorChar + TOKEN_FILE_NAME + "_" + port + ".txt";
+	}
+
+	/**
+	 * Serves requests, each on its own thread, until the process is stopped.
+	 */
+	public void serve() throws IOException {
+		ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		try {
+			token = writeToken(new File(generateTokenFileName(port)));
+		}
+		catch (IOException e) {
+			serverSocket.close();
+			throw e;
+		}
+		ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "CheckServer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		Logger.writeInfo("Check server listening on " + serverSocket.getLocalSocketAddress());
+		try {
+			while (true) {
+				final Socket socket = serverSocket.accept();
+				executor.execute(new Runnable() {
+					public void run() {
+						handle(socket);
+					}
+				});
+			}
+		}
+		finally {
+			serverSocket.close();
+			executor.shutdownNow();
+		}
+	}
+
+	private void handle(Socket socket) {
+		BufferedWriter writer = null;
+		try {
+			socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), CHARSET));
+			writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), CHARSET));
+
+			if ( ! isAuthorized(reader.readLine())) {
+				Logger.writeException("Check server rejected a request without a valid token.");
+				writeLine(writer, RESPONSE_ERROR + " request without a valid token");
+				writer.flush();
+				return;
+			}
+
+			String cwd = null;
+			List<String> options = new ArrayList<>();
+			List<String> paths = new ArrayList<>();
+			String line;
+			while (((line = reader.readLine()) != null) && ! REQUEST_END.equals(line)) {
+				int separator = line.indexOf(' ');
+				if (separator < 0)
+					continue;
+				String key = line.substring(0, separator);
+				String value = line.substring(separator + 1);
+				if (REQUEST_CWD.equals(key))
+					cwd = value;
+				else if (REQUEST_OPTION.equals(key))
+					options.add(value);
+				else if (REQUEST_PATH.equals(key))
+					paths.add(value);
+			}
+			if (line == null) {
+				// the client went away before completing its request
+				return;
+			}
+
+			try {
+				check(cwd, options, paths, writer);
+				writeLine(writer, RESPONSE_DONE);
+			}
+			catch (RuntimeException e) {
+				Logger.writeException(e.toString());
+				e.printStackTrace();
+				writeLine(writer, RESPONSE_ERROR + " " + e);
+			}
+			writer.flush();
+		}
+		catch (IOException e) {
+			Logger.writeException(e.getMessage());
+		}
+		finally {
+			try {
+				socket.close();
+			}
+			catch (IOException ignoreException) {
+				// nothing to do here
+			}
+		}
+	}
+
+	private void check(String cwd, List<String> options, List<String> paths, final BufferedWriter writer)
+			throws IOException {
+		CheckEngine engine = createEngine(options);
+
+		ResultSink resultSink = new ResultSink() {
+			public void open(String pathChecked) {
+				// nothing to open
+			}
+
+			public void addResult(int caseNum, String filePath) throws IOException {
+				writeLine(writer, RESPONSE_RESULT + " " + caseNum + " " + filePath);
+			}
+
+			public void close() {
+				// nothing to close
+			}
+		};
+
+		List<String> resolvedPaths = new ArrayList<>();
+		for (String path : paths) {
+			File file = new File(path);
+			if ( ! file.isAbsolute() && (cwd != null))
+				file = new File(cwd, path);
+			resolvedPaths.add(file.getPath());
+		}
+		CheckReport report = engine.check(resolvedPaths, resultSink);
+
+		List<EditOutcome> outcomes;
+		synchronized (editLock) {
+			CopyrightEditor editor = new CopyrightEditor();
+			editor.setIoParallelism(editThreadCount);
+			outcomes = editor.editMissingFiles(report.getMissingFilePaths());
+		}
+		for (EditOutcome outcome : outcomes) {
+			String message = (outcome.getMessage() != null) ? outcome.getMessage() : "";
+			writeLine(writer, RESPONSE_EDIT + " " + outcome.getStatus() + " " + outcome.getFilePath() + "\t" + message);
+		}
+	}
+
+	/**
+	 * Returns an engine checking with the options of a request, each "name value"; editing is left to the request,
+	 * so that it can be serialized. An unknown option or value throws an IllegalArgumentException.
+	 */
+	private CheckEngine createEngine(List<String> options) {
+		CheckEngine.Builder builder = new CheckEngine.Builder()
+				.setThreadCount(threadCount)
+				.setLogLevel(Logger.logLevel);
+		for (String option : options) {
+			int separator = option.indexOf(' ');
+			String name = (separator < 0) ? option : option.substring(0, separator);
+			String value = (separator < 0) ? "" : option.substring(separator + 1);
+			if (OPTION_HEADER_LINES.equals(name))
+				builder.setHeaderWindowLines(Integer.parseInt(value));
+			else if (OPTION_HEADER_BYTES.equals(name))
+				builder.setHeaderWindowBytes(Integer.parseInt(value));
+			else if (OPTION_BYTE_MATCHING.equals(name))
+				builder.setByteMatching(Boolean.parseBoolean(value));
+			else if (OPTION_ARCHIVES.equals(name))
+				builder.setArchiveScanning(Boolean.parseBoolean(value));
+			else if (OPTION_TYPES.equals(name)) {
+				FileTypes fileTypes = FileTypes.forNames(value);
+				if (fileTypes == null)
+					throw new IllegalArgumentException("Unknown file type in: " + value);
+				builder.setFileTypes(fileTypes);
+			}
+			else if (OPTION_IGNORE_RULE.equals(name))
+				builder.addIgnoreRule(value);
+			else
+				throw new IllegalArgumentException("Unknown option: " + name);
+		}
+		return builder.build();
+	}
+
+	private boolean isAuthorized(String firstLine) throws UnsupportedEncodingException {
+		String prefix = REQUEST_TOKEN + " ";
+		if ((firstLine == null) || ! firstLine.startsWith(prefix))
+			return false;
+		// compared in constant time, so that the token cannot be guessed from the time taken
+		return MessageDigest.isEqual(token, firstLine.substring(prefix.length()).getBytes(CHARSET));
+	}
+
+	/**
+	 * Writes a new random token to tokenFile, readable and writable by the owner only, and returns it.
+	 * An existing file is replaced; the file is deleted when the server exits.
+	 */
+	private static byte[] writeToken(File tokenFile) throws IOException {
+		byte[] random = new byte[TOKEN_BYTES];
+		new SecureRandom().nextBytes(random);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : random) {
+			sb.append(String.format("%02x", b & 0xFF));
+		}
+		byte[] token = sb.toString().getBytes(CHARSET);
+
+		Path path = tokenFile.toPath();
+		Files.deleteIfExists(path);
+		try {
+			// created with its permissions, so that it is never readable by others, even for a moment
+			Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		}
+		catch (UnsupportedOperationException e) {
+			// not a POSIX file system
+			Files.createFile(path);
+			tokenFile.setReadable(false, false);
+			tokenFile.setWritable(false, false);
+			tokenFile.setReadable(true, true);
+			tokenFile.setWritable(true, true);
+		}
+		tokenFile.deleteOnExit();
+		Files.write(path, token);
+		return token;
+	}
+
+	static void writeLine(BufferedWriter writer, String line) throws IOException {
+		writer.write(line);
+		writer.write('\n');
+	}
+}
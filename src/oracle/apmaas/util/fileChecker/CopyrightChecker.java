@@ -1,322 +1,1539 @@
-/*
- *  +===========================================================================+
- *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
- *  |                         All rights reserved.                              |
- *  +===========================================================================+
- */
-package oracle.apmaas.util.fileChecker;
-
-import java.io.*;
-import java.text.SimpleDateFormat;
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-/**
- * Created by yiyitan on 4/1/2016.
- */
-public class CopyrightChecker {
-
-	private final static String COPYRIGHT_FIRST_LINE_PATTERN =
-			"\\s*Copyright\\s*\\(c\\)\\s*([0-9]{4}|([0-9]{4})\\s*\\-\\s*([0-9]{4}))\\s*Oracle\\s*Corporation,\\s*Redwood\\s*Shores,\\s*CA,\\s*USA";
-	private final static String COPYRIGHT_SECOND_LINE_PATTERN =
-			"\\s*(a|A)ll\\s*(r|R)ights\\s*(r|R)eserved\\s*";
-
-	// Used to judge the wrong format of the first line
-	// if not match, but has these at least $threshold$ of these keywords, we take this as wrong format line
-	private final static int COPYRIGHT_START_LINE_KEYWORD_NUM_Threshold = 2;
-	private final static String COPYRIGHT_START_LINE_KEYWORD_1 = "copyright";
-	private final static String COPYRIGHT_START_LINE_KEYWORD_2 = "oracle";
-	private final static String COPYRIGHT_START_LINE_KEYWORD_3 = "corporation";
-	private final static String COPYRIGHT_START_LINE_KEYWORD_4 = "redwood";
-	private final static String COPYRIGHT_START_LINE_KEYWORD_5 = "shores";
-
-	private final static String APM_WLDF_INTERNAL_FILE_NAME = "apm-wldf-INTERNAL-RELEASE.properties";
-	private final static String APM_WLDF_FUTURE_FILE_NAME = "apm-wldf-FUTURE.properties";
-
-	public static int COPYRIGHT_OK = 0;
-	public static int COPYRIGHT_Not_Present = 0x0001;
-	public static int COPYRIGHT_Wrong_Format = 0x0002;
-
-	public static int COPYRIGHT_FAILED = -1;
-
-	private final static String RESULT_FILE_NAME_Prefix = "crCheckResult_";
-
-	private List<String> wrongFormatFilePaths;
-	private List<String> missingFilePaths;
-
-	private String[] copyrightPatterns;
-	private String[] startLineKeywords;
-
-	public CopyrightChecker() {
-		wrongFormatFilePaths = new ArrayList<>();
-		missingFilePaths = new ArrayList<>();
-
-		copyrightPatterns = new String[] {
-				COPYRIGHT_FIRST_LINE_PATTERN,
-				COPYRIGHT_SECOND_LINE_PATTERN };
-
-		startLineKeywords = new String[] {
-				COPYRIGHT_START_LINE_KEYWORD_1,
-				COPYRIGHT_START_LINE_KEYWORD_2,
-				COPYRIGHT_START_LINE_KEYWORD_3,
-				COPYRIGHT_START_LINE_KEYWORD_4,
-				COPYRIGHT_START_LINE_KEYWORD_5};
-	}
-
-	public List<String> getWrongFormatFilePaths() {
-		return wrongFormatFilePaths;
-	}
-
-	public List<String> getMissingFilePaths() {
-		return missingFilePaths;
-	}
-
-	public void checkDir(String path) {
-		File file = new File(path);
-		String canonicalPath = null;
-		try {
-			canonicalPath = file.getCanonicalPath();
-			if (file.exists()) {
-				if (file.isFile())
-					checkFile(file);
-				else if (file.isDirectory()) {
-					Logger.writeLog("Begin to check directory: " + path + " ......");
-					FileFilter filter = new FileExtNameFilter(Main.FILE_EXT_NAME_Java);
-					File[] files = file.listFiles(filter);
-					if (files != null) {
-						for (File curFile : files) {
-							checkDir(curFile.getCanonicalPath());
-						}
-					}
-					Logger.writeLog("End checking directory: " + path);
-				}
-			}
-			else {
-				Logger.writeException("File or path " + canonicalPath + " does not exist.");
-			}
-		}
-		catch (IOException e) {
-			Logger.writeException(e.getMessage());
-			e.printStackTrace();
-		}
-	}
-
-	public int checkFile(File file) {
-		int caseNum = COPYRIGHT_Not_Present;
-
-		String filePath = null;
-		BufferedReader bufferedReader = null;
-		try {
-			filePath = file.getCanonicalPath();
-			Logger.writeLog("Checking file: " + filePath + " ......");
-
-			bufferedReader = new BufferedReader(new FileReader(file));
-
-			String line;
-			while ((line = bufferedReader.readLine()) != null) {
-				caseNum = checkStartLine(line);
-				if (caseNum != COPYRIGHT_Not_Present) {
-					if (caseNum == COPYRIGHT_OK) {
-						line = bufferedReader.readLine();
-						if (line == null) caseNum = COPYRIGHT_Wrong_Format;
-						else caseNum = checkFollowingLine(line, 2);
-					}
-					break;
-				}
-			}
-		}
-		catch (Exception e) {
-			Logger.writeException(e.getMessage());
-			e.printStackTrace();
-			caseNum = COPYRIGHT_FAILED;
-		}
-		finally {
-			if (bufferedReader != null) {
-				try {
-					bufferedReader.close();
-				}
-				catch (Exception ignoreException) {
-					// nothing to do here
-				}
-				bufferedReader = null;
-			}
-		}
-
-		// Dump to list
-		if (caseNum != COPYRIGHT_OK) {
-			if (caseNum == COPYRIGHT_Wrong_Format) wrongFormatFilePaths.add(filePath);
-			else if (caseNum == COPYRIGHT_Not_Present) missingFilePaths.add(filePath);
-		}
-
-		return caseNum;
-	}
-
-	private int checkStartLine(String line) {
-		int caseNum = COPYRIGHT_Not_Present;
-
-		Pattern pattern = Pattern.compile(copyrightPatterns[0]);
-		Matcher matcher = pattern.matcher(line);
-		if (matcher.find()) {
-			// Found the start line of copyright block
-			caseNum = COPYRIGHT_OK;
-
-			// special case: Copyright (c) 2014-2013 Oracle Corporation, Redwood Shores, CA, USA
-			if ((matcher.group(2) != null) && (matcher.group(3) != null)) {
-				int fromYear = Integer.parseInt(matcher.group(2));
-				int toYear = Integer.parseInt(matcher.group(3));
-				if ((fromYear >= toYear) || (toYear > Main.getCurYear())) {
-					caseNum = COPYRIGHT_Wrong_Format;
-				}
-			}
-		}
-		else {
-			StringTokenizer st = new StringTokenizer(line.toLowerCase());
-			StringBuilder sb = new StringBuilder();
-			while (st.hasMoreTokens()) {
-				sb.append(st.nextToken());
-			}
-
-			int matchCount = 0;
-			for (int i = 0; i < startLineKeywords.length; i++) {
-				if (sb.indexOf(startLineKeywords[i]) >= 0) {
-					matchCount++;
-				}
-			}
-			if (matchCount >= COPYRIGHT_START_LINE_KEYWORD_NUM_Threshold) {
-				caseNum = COPYRIGHT_Wrong_Format;
-			}
-		}
-
-		return caseNum;
-	}
-
-	private int checkFollowingLine(String line, int lineNum) {
-		int caseNum = COPYRIGHT_Wrong_Format;
-
-		Pattern pattern = Pattern.compile(copyrightPatterns[lineNum - 1]);
-		Matcher matcher = pattern.matcher(line);
-		if (matcher.find()) {
-			caseNum = COPYRIGHT_OK;
-		}
-
-		return caseNum;
-	}
-
-	private String describeCase(int caseNum) {
-		String caseDesp = null;
-
-		if ((caseNum & COPYRIGHT_Not_Present) != 0)
-			caseDesp = "Copyright does not present";
-
-		if ((caseNum & COPYRIGHT_Wrong_Format) != 0)
-			caseDesp = "Copyright wrong format";
-
-		return caseDesp;
-	}
-
-	public void writeResultToFile(String pathChecked) {
-		BufferedWriter bw = null;
-		File resultFile = null;
-		// delete all old result files
-		for (String fileName : generateAllResultFileNames()) {
-			resultFile = new File(fileName);
-			if (resultFile.exists()) {
-				resultFile.delete();
-			}
-		}
-		if (missingFilePaths.isEmpty() && wrongFormatFilePaths.isEmpty()) {
-			Logger.writeInfo("File/Path checked: " + pathChecked);
-			Logger.writeInfo("No error found.");
-		}
-		else {
-			String completedTime = (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")).format(new Date());
-			// write wrong format file paths to result files
-			if (! wrongFormatFilePaths.isEmpty())
-				writeResultToFile(COPYRIGHT_Wrong_Format, resultFile, bw, pathChecked, completedTime);
-			// write missing file paths to result files
-			if (! missingFilePaths.isEmpty())
-				writeResultToFile(COPYRIGHT_Not_Present, resultFile, bw, pathChecked, completedTime);
-		}
-	}
-
-	private void writeResultToFile(int caseNum, File resultFile, BufferedWriter bw, String pathChecked, String completedTime) {
-		String caseDesp = describeCase(caseNum);
-		try {
-			if ( (caseDesp != null) && (resultFile != null ) ) {
-				resultFile = new File(generateResultFileName(caseNum));
-				resultFile.createNewFile();
-				FileWriter fw = new FileWriter(resultFile.getCanonicalFile());
-				bw = new BufferedWriter(fw);
-
-				bw.write("File/Path checked: " + pathChecked);
-				bw.newLine();
-				bw.write("Check completed at " + completedTime + ".");
-				bw.newLine();
-				bw.newLine();
-
-				bw.write("*************************** Error : " + caseDesp + " ***************************");
-				bw.newLine();
-				List<String> incorrectFilePaths = new ArrayList<>();
-				if (caseNum == COPYRIGHT_Wrong_Format)
-					incorrectFilePaths = wrongFormatFilePaths;
-				else if (caseNum == COPYRIGHT_Not_Present)
-					incorrectFilePaths = missingFilePaths;
-				for (String incorrectFilePath : incorrectFilePaths) {
-					bw.write(incorrectFilePath);
-					bw.newLine();
-				}
-			}
-		}
-		catch (java.io.IOException e) {
-			Logger.writeException(e.getMessage());
-			e.printStackTrace();
-		}
-		finally {
-			if (bw != null) {
-				try {
-					bw.close();
-				}
-				catch (Exception ignoreException) {
-					// nothing to do here
-				}
-			}
-		}
-	}
-
-	private String generateResultFileName(int caseNum) {
-		return "." + File.separatorChar + RESULT_FILE_NAME_Prefix + caseNum + ".txt";
-	}
-
-	private String[] generateAllResultFileNames() {
-		String[] fileNames = new String[2];
-
-		fileNames[0] = generateResultFileName(COPYRIGHT_Not_Present);
-		fileNames[1] = generateResultFileName(COPYRIGHT_Wrong_Format);
-
-		return fileNames;
-	}
-
-	static class FileExtNameFilter implements FileFilter {
-		private String ext;
-
-		public FileExtNameFilter(String ext) {
-			this.ext = ext;
-		}
-
-		public boolean accept(File file) {
-			if (file.isHidden())
-				return false;
-			else if (file.isDirectory())
-				return true;
-			else {
-				String fileName = file.getName();
-				if (fileName.equalsIgnoreCase(APM_WLDF_INTERNAL_FILE_NAME) ||
-						fileName.equalsIgnoreCase(APM_WLDF_FUTURE_FILE_NAME)) {
-					return true;
-				}
-				return fileName.endsWith(ext);
-			}
-		}
-	}
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Created by yiyitan on 4/1/2016.
+ */
+public class CopyrightChecker {
+
+	// archives whose entries are checked as a tree of their own, e.g. -sources.jar files
+	private final static String[] ARCHIVE_EXT_NAMES = { ".jar", ".zip" };
+	// separates the path of an archive from the name of an entry in the path of a finding
+	public final static String ARCHIVE_ENTRY_SEPARATOR = "!/";
+
+	public final static int COPYRIGHT_OK = 0;
+	public final static int COPYRIGHT_Not_Present = 0x0001;
+	public final static int COPYRIGHT_Wrong_Format = 0x0002;
+
+	public final static int COPYRIGHT_FAILED = -1;
+
+	private final static String CACHE_FILE_NAME = "crCheckCache.txt";
+	private final static String CHECKPOINT_FILE_NAME = "crCheckCheckpoint.txt";
+
+	// In parallel mode, consecutive files of a directory are checked in batches of this size
+	private final static int PARALLEL_FILE_BATCH_SIZE = 64;
+
+	private PathList wrongFormatFilePaths;
+	private PathList missingFilePaths;
+
+	// Only the head of a file is searched for the copyright block; 0 means no limit
+	public final static int DEFAULT_HEADER_WINDOW_LINES = 40;
+	public final static int DEFAULT_HEADER_WINDOW_BYTES = 8 * 1024; // 8K
+
+	// Raw bytes are matched when decoding them with the default charset cannot change an ASCII character
+	private final static boolean BYTE_MATCHING_SUPPORTED = HeaderRules.isAsciiCompatible(Charset.defaultCharset());
+
+	// Header windows are read into a buffer reused by each thread
+	private final static ThreadLocal<byte[]> HEADER_BUFFERS = new ThreadLocal<>();
+
+	private final static int UTF8_BOM_LENGTH = 3;
+
+	private int threadCount = 1;
+	private boolean byteMatching = true;
+	private boolean archiveScanning = false;
+	private int headerWindowLines = DEFAULT_HEADER_WINDOW_LINES;
+	private int headerWindowBytes = DEFAULT_HEADER_WINDOW_BYTES;
+
+	private final HeaderRules rules;
+	private FileTypes fileTypes = FileTypes.getDefaultTypes();
+	private CheckCache cache;
+	private ScanCheckpoint checkpoint;
+	// System.nanoTime() at which checking stops, if there is a time budget
+	private long deadlineNanos = 0;
+	private boolean hasDeadline = false;
+	private volatile boolean stopped = false;
+	private MissingFileListener missingFileListener;
+	private IgnoreRules ignoreRules;
+	// this checker checks the files of shard shardIndex of shardCount only
+	private int shardIndex = 0;
+	private int shardCount = 1;
+	// the position in the serial walk of each finding, for merging the results of all shards
+	private final Map<String, String> shardOrdinals = new ConcurrentHashMap<>();
+	// checkDir and checkFiles calls so far, the first component of the positions
+	private int rootCount = 0;
+	private RunMetrics metrics = new RunMetrics();
+	private int logLevel = Logger.logLevel;
+	private final List<ResultSink> resultSinks = new ArrayList<>();
+	private final ResultCollector resultCollector = new ResultCollector() {
+		public void addResult(int caseNum, String filePath) {
+			CopyrightChecker.this.addResult(caseNum, filePath);
+		}
+	};
+
+	public CopyrightChecker() {
+		wrongFormatFilePaths = new PathList();
+		missingFilePaths = new PathList();
+
+		rules = HeaderRules.getDefaultRules();
+	}
+
+	public PathList getWrongFormatFilePaths() {
+		return wrongFormatFilePaths;
+	}
+
+	public PathList getMissingFilePaths() {
+		return missingFilePaths;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Sets the number of threads used by checkDir; 1 (the default) walks the tree serially.
+	 */
+	public void setThreadCount(int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	public int getHeaderWindowLines() {
+		return headerWindowLines;
+	}
+
+	/**
+	 * Sets how many lines from the head of a file may hold the first copyright line; 0 means no limit.
+	 */
+	public void setHeaderWindowLines(int headerWindowLines) {
+		this.headerWindowLines = Math.max(0, headerWindowLines);
+	}
+
+	public int getHeaderWindowBytes() {
+		return headerWindowBytes;
+	}
+
+	/**
+	 * Sets how many bytes are read from the head of a file; 0 means the whole file is read.
+	 */
+	public void setHeaderWindowBytes(int headerWindowBytes) {
+		this.headerWindowBytes = Math.max(0, headerWindowBytes);
+	}
+
+	public boolean isByteMatching() {
+		return byteMatching && BYTE_MATCHING_SUPPORTED;
+	}
+
+	/**
+	 * Sets whether the header window is matched as raw bytes instead of as decoded lines; the results are the same.
+	 * Bytes are only matched if the default charset is ASCII compatible, and if headerWindowBytes is not 0.
+	 */
+	public void setByteMatching(boolean byteMatching) {
+		this.byteMatching = byteMatching;
+	}
+
+	public boolean isArchiveScanning() {
+		return archiveScanning;
+	}
+
+	/**
+	 * Sets whether the entries of jar and zip archives are checked, reading them from the archive without
+	 * extracting it; findings are reported as "archive!/entry". Archive entries are never edited or cached.
+	 */
+	public void setArchiveScanning(boolean archiveScanning) {
+		this.archiveScanning = archiveScanning;
+	}
+
+	public FileTypes getFileTypes() {
+		return fileTypes;
+	}
+
+	/**
+	 * Sets the types of the files checked, by default Java files and the apm-wldf properties files.
+	 * The files of all the types are checked in the same walk.
+	 */
+	public void setFileTypes(FileTypes fileTypes) {
+		this.fileTypes = fileTypes;
+	}
+
+	/**
+	 * Sets a listener told about every file without copyright as soon as it is checked,
+	 * together with the bytes read from its head.
+	 */
+	public void setMissingFileListener(MissingFileListener missingFileListener) {
+		this.missingFileListener = missingFileListener;
+	}
+
+	public IgnoreRules getIgnoreRules() {
+		return ignoreRules;
+	}
+
+	/**
+	 * Sets rules for files and directories not to check; ignored directories are not listed at all.
+	 */
+	public void setIgnoreRules(IgnoreRules ignoreRules) {
+		this.ignoreRules = ignoreRules;
+	}
+
+	public int getShardIndex() {
+		return shardIndex;
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * Makes this checker check only the files of shard shardIndex (from 0) of shardCount. All shards walk
+	 * the same directories; a file belongs to the shard given by the hash of its path relative to the checked path.
+	 */
+	public void setShard(int shardIndex, int shardCount) {
+		if ((shardCount < 1) || (shardIndex < 0) || (shardIndex >= shardCount))
+			throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + shardCount);
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+	}
+
+	public RunMetrics getMetrics() {
+		return metrics;
+	}
+
+	public int getLogLevel() {
+		return logLevel;
+	}
+
+	/**
+	 * Sets how much this checker logs, one of the Logger.LOG_LEVEL_* values; the default is Logger.logLevel.
+	 */
+	public void setLogLevel(int logLevel) {
+		this.logLevel = logLevel;
+	}
+
+	/**
+	 * Sets the metrics this checker counts files, bytes and phase latencies in, e.g. to share them with the editor.
+	 */
+	public void setMetrics(RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Adds a sink which receives every finding as soon as it is known, in the order of the serial walk.
+	 */
+	public void addResultSink(ResultSink resultSink) {
+		resultSinks.add(resultSink);
+	}
+
+	public void openResultSinks(String pathChecked) {
+		for (ResultSink resultSink : resultSinks) {
+			try {
+				resultSink.open(pathChecked);
+			}
+			catch (IOException e) {
+				Logger.writeException(logLevel, e.getMessage());
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public void closeResultSinks(String pathChecked) {
+		long startNanos = System.nanoTime();
+		for (ResultSink resultSink : resultSinks) {
+			try {
+				resultSink.close();
+			}
+			catch (IOException e) {
+				Logger.writeException(logLevel, e.getMessage());
+				e.printStackTrace();
+			}
+		}
+		metrics.recordPhase(RunMetrics.PHASE_WRITE_RESULTS, startNanos);
+		if (missingFilePaths.isEmpty() && wrongFormatFilePaths.isEmpty()) {
+			Logger.writeInfo(logLevel, "File/Path checked: " + pathChecked);
+			Logger.writeInfo(logLevel, "No error found.");
+		}
+	}
+
+	private void addResult(int caseNum, String filePath) {
+		if (caseNum == COPYRIGHT_Wrong_Format) wrongFormatFilePaths.add(filePath);
+		else if (caseNum == COPYRIGHT_Not_Present) missingFilePaths.add(filePath);
+		else return;
+
+		for (ResultSink resultSink : resultSinks) {
+			try {
+				resultSink.addResult(caseNum, filePath);
+			}
+			catch (IOException e) {
+				Logger.writeException(logLevel, e.getMessage());
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Loads the check cache kept beside the result files, so that unchanged files are not read again.
+	 * With hashing, files whose time stamp changed but whose header window did not are not checked again either.
+	 */
+	public void enableCache(boolean hashing) {
+		cache = new CheckCache(generateCacheFileName(), getCacheFingerprint(), hashing);
+		cache.load();
+	}
+
+	/**
+	 * Saves the check cache; completeWalk tells whether every file under pathChecked was visited by this check.
+	 */
+	public void saveCache(String pathChecked, boolean completeWalk) {
+		if (cache == null)
+			return;
+
+		try {
+			cache.save(new File(pathChecked).getCanonicalPath(), completeWalk);
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Saves the completed directories now and then, to resume from if this check is stopped or killed;
+	 * with resuming, the directories completed by the last check of pathChecked are not read again.
+	 */
+	public void enableCheckpoint(String pathChecked, boolean resume) {
+		String fingerprint = getCacheFingerprint() + "-" + (shardIndex + 1) + "of" + shardCount + "-" + fileTypes.getName();
+		checkpoint = new ScanCheckpoint(generateCheckpointFileName(), fingerprint, pathChecked);
+		if (resume)
+			checkpoint.load();
+	}
+
+	/**
+	 * Saves the checkpoint if the check was stopped, or removes it if the check has completed.
+	 */
+	public void finishCheckpoint() {
+		if (checkpoint == null)
+			return;
+
+		if (stopped) {
+			try {
+				checkpoint.save();
+				Logger.writeInfo(logLevel, "Checkpoint with " + checkpoint.getCompletedDirCount() +
+						" completed directories is written to " + generateCheckpointFileName());
+			}
+			catch (IOException e) {
+				Logger.writeException(logLevel, e.getMessage());
+				e.printStackTrace();
+			}
+		}
+		else
+			checkpoint.delete();
+	}
+
+	/**
+	 * Stops checking once timeBudgetMillis have passed from now; the files not checked by then are left out
+	 * of the results, and isStopped() tells whether that happened.
+	 */
+	public void setTimeBudget(long timeBudgetMillis) {
+		deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+		hasDeadline = true;
+	}
+
+	/**
+	 * Returns whether the check ran out of its time budget, so that its results are partial.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Called before each file or directory; returns true, from then on, once the time budget is used up.
+	 */
+	private boolean isOutOfTime() {
+		if ( ! stopped && hasDeadline && (System.nanoTime() - deadlineNanos >= 0))
+			stopped = true;
+		return stopped;
+	}
+
+	/**
+	 * Cached results are only valid for the same rules, file types, ignore rules, archive scanning, header window
+	 * and current year.
+	 */
+	private String getCacheFingerprint() {
+		String ignoreFingerprint = ((ignoreRules != null) && ! ignoreRules.isEmpty()) ? ignoreRules.getFingerprint() : "none";
+		return rules.getFingerprint() + "-" + fileTypes.getFingerprint() + "-" + ignoreFingerprint + "-" +
+				(archiveScanning ? "archives" : "files") + "-" + headerWindowLines + "-" + headerWindowBytes + "-" + Main.getCurYear();
+	}
+
+	public void checkDir(String path) {
+		ScanEntry root = resolve(new File(path), rootCount++);
+		if (root == null)
+			return;
+
+		if (root.attributes.isRegularFile()) {
+			if ( ! isInShard(root))
+				return;
+			if ((threadCount > 1) && isArchive(root))
+				runParallel(new CheckArchiveTask(root));
+			else
+				checkFile(root, resultCollector);
+		}
+		else if (root.attributes.isDirectory()) {
+			if (threadCount > 1)
+				checkDirParallel(root, path);
+			else
+				checkDir(root, path, resultCollector, null);
+		}
+	}
+
+	/**
+	 * Checks the subtree of dir, passing the findings to collector; with a checkpoint, the findings of dir are also
+	 * kept by a CheckpointCollector of its own, whose list is handed to parentCollector once dir completes.
+	 */
+	private void checkDir(ScanEntry dir, String path, ResultCollector collector, CheckpointCollector parentCollector) {
+		if (replayCheckpoint(dir, (parentCollector != null) ? parentCollector : collector))
+			return;
+
+		Logger.writeLog(logLevel, "Begin to check directory: " + path + " ......");
+		CheckpointCollector checkpointCollector = (checkpoint != null) ? new CheckpointCollector(collector) : null;
+		ResultCollector dirCollector = (checkpointCollector != null) ? checkpointCollector : collector;
+		List<String> subDirPaths = new ArrayList<>();
+		for (ScanEntry entry : listDir(dir)) {
+			if (isOutOfTime())
+				break;
+			if (entry.attributes.isDirectory()) {
+				subDirPaths.add(entry.canonicalPath);
+				checkDir(entry, entry.canonicalPath, collector, checkpointCollector);
+			}
+			else
+				checkFile(entry, dirCollector);
+		}
+		if ((checkpointCollector != null) && ! stopped) {
+			checkpoint.complete(dir.canonicalPath, checkpointCollector.findings, subDirPaths);
+			if (parentCollector != null)
+				parentCollector.addSubDirFindings(checkpointCollector);
+		}
+		Logger.writeLog(logLevel, "End checking directory: " + path);
+	}
+
+	/**
+	 * Passes the findings of a directory completed before the checkpoint to collector instead of checking it again.
+	 */
+	private boolean replayCheckpoint(ScanEntry dir, ResultCollector collector) {
+		if (checkpoint == null)
+			return false;
+		List<ScanCheckpoint.Finding> findings = checkpoint.getFindings(dir.canonicalPath);
+		if (findings == null)
+			return false;
+
+		Logger.writeLog(logLevel, "Directory checked before the checkpoint: " + dir.canonicalPath);
+		for (ScanCheckpoint.Finding finding : findings) {
+			if ((shardCount > 1) && ! finding.getOrdinal().isEmpty())
+				shardOrdinals.put(finding.getFilePath(), finding.getOrdinal());
+			collector.addResult(finding.getCaseNum(), finding.getFilePath());
+		}
+		return true;
+	}
+
+	private ScanCheckpoint.Finding createFinding(int caseNum, String filePath) {
+		String ordinal = (shardCount > 1) ? shardOrdinals.get(filePath) : null;
+		return new ScanCheckpoint.Finding(caseNum, (ordinal == null) ? "" : ordinal, filePath);
+	}
+
+	/**
+	 * Checks the given files only, e.g. the files changed since a git revision.
+	 */
+	public void checkFiles(List<File> files) {
+		List<ScanEntry> entries = new ArrayList<>();
+		int rootIndex = rootCount++;
+		for (int i = 0; i < files.size(); i++) {
+			ScanEntry entry = new ScanEntry(files.get(i), null, null, null, files.get(i).getPath(), rootIndex, i);
+			if (isInShard(entry))
+				entries.add(entry);
+		}
+
+		if (threadCount > 1)
+			runParallel(new CheckFileListTask(entries));
+		else {
+			for (ScanEntry entry : entries) {
+				if (isOutOfTime())
+					break;
+				checkFile(entry, resultCollector);
+			}
+		}
+	}
+
+	/**
+	 * Returns the filter deciding which files and sub directories checkDir visits.
+	 */
+	public FileFilter getFileFilter() {
+		return new FileExtNameFilter(fileTypes, ignoreRules);
+	}
+
+	/**
+	 * Returns the files and sub directories to check, in listing order. Each entry costs one lstat call;
+	 * only symbolic links need another stat call and the resolution of their canonical path.
+	 */
+	private List<ScanEntry> listDir(ScanEntry dir) {
+		long startNanos = System.nanoTime();
+		List<ScanEntry> entries = new ArrayList<>();
+		int shardSkipped = 0;
+		FileExtNameFilter fileFilter = new FileExtNameFilter(fileTypes, ignoreRules, archiveScanning);
+		try {
+			DirectoryStream<Path> stream = Files.newDirectoryStream(dir.file.toPath());
+			try {
+				for (Path child : stream) {
+					// the position among the entries to check is the same in every shard
+					ScanEntry entry = readEntry(dir, child.getFileName().toString(), entries.size() + shardSkipped, fileFilter);
+					if (entry == null)
+						continue;
+					if (entry.attributes.isDirectory() || isInShard(entry))
+						entries.add(entry);
+					else
+						shardSkipped++;
+				}
+			}
+			finally {
+				stream.close();
+			}
+		}
+		catch (IOException | DirectoryIteratorException e) {
+			Logger.writeException(logLevel, "Cannot list directory " + dir.canonicalPath + ": " + e.getMessage());
+		}
+		metrics.recordPhase(RunMetrics.PHASE_LIST_DIRECTORY, startNanos);
+		metrics.addDirectoryVisited();
+		return entries;
+	}
+
+	private ScanEntry readEntry(ScanEntry dir, String name, int index, FileExtNameFilter fileFilter) {
+		// the canonical path of an entry which is not a symbolic link is that of its directory and its name
+		File file = new File(dir.canonicalPath, name);
+		if (FileExtNameFilter.isHidden(file))
+			return null;
+
+		try {
+			Path path = file.toPath();
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			String canonicalPath = file.getPath();
+			if (attributes.isSymbolicLink()) {
+				long startNanos = System.nanoTime();
+				canonicalPath = file.getCanonicalPath();
+				metrics.recordPhase(RunMetrics.PHASE_CANONICAL_PATH, startNanos);
+				try {
+					attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				}
+				catch (NoSuchFileException e) {
+					// a dangling link is reported like a file which does not exist
+					if (fileFilter.accept(file, false))
+						Logger.writeException(logLevel, "File or path " + canonicalPath + " does not exist.");
+					return null;
+				}
+			}
+
+			if ( ! fileFilter.accept(file, attributes.isDirectory()))
+				return null;
+			if (attributes.isDirectory()) {
+				Object fileKey = attributes.fileKey();
+				if ((fileKey != null) && dir.isInside(fileKey)) {
+					Logger.writeInfo(logLevel, "Skipping " + file.getPath() + ", a link to " + canonicalPath + " which contains it.");
+					return null;
+				}
+				return new ScanEntry(new File(canonicalPath), canonicalPath, attributes, dir, name, index);
+			}
+			else if (attributes.isRegularFile()) {
+				return new ScanEntry(new File(canonicalPath), canonicalPath, attributes, dir, name, index);
+			}
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, e.getMessage());
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Resolves the canonical path and the attributes of a path given by the caller;
+	 * returns null after reporting it if it does not exist.
+	 */
+	private ScanEntry resolve(File file, int rootIndex) {
+		String canonicalPath = null;
+		try {
+			long startNanos = System.nanoTime();
+			canonicalPath = file.getCanonicalPath();
+			metrics.recordPhase(RunMetrics.PHASE_CANONICAL_PATH, startNanos);
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			return new ScanEntry(new File(canonicalPath), canonicalPath, attributes, null, file.getName(), rootIndex);
+		}
+		catch (NoSuchFileException e) {
+			Logger.writeException(logLevel, "File or path " + canonicalPath + " does not exist.");
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, e.getMessage());
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Checks the directory tree with a fork-join pool of threadCount threads.
+	 * Every task keeps its own findings, of both cases in one list, which are concatenated in listing order,
+	 * so the results, and the order they reach the result sinks in, are identical to those of the serial walk. The root task hands
+	 * the results of each top level sub directory over as soon as it and all before it are done.
+	 */
+	private void checkDirParallel(ScanEntry root, String path) {
+		runParallel(new CheckDirTask(root, path));
+	}
+
+	/**
+	 * Runs the task of a path given by the caller, which hands the findings to the result sinks in walk order.
+	 */
+	private void runParallel(ScanTask task) {
+		task.emitting = true;
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		try {
+			pool.invoke(task);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	public int checkFile(File file) {
+		return checkFile(new ScanEntry(file, null, null, null, file.getPath(), 0), resultCollector);
+	}
+
+	/**
+	 * Checks the file again without adding the result to the lists and sinks, e.g. after it changed in watch mode.
+	 */
+	public int recheckFile(File file) {
+		return checkFile(new ScanEntry(file, null, null, null, file.getPath(), 0), new ResultCollector() {
+			public void addResult(int caseNum, String filePath) {
+				// the caller keeps the result
+			}
+		});
+	}
+
+	/**
+	 * Replaces the collected results by the given ones, in their iteration order, and writes them to the result sinks.
+	 */
+	public void rewriteResults(String pathChecked, Map<String, Integer> results) {
+		wrongFormatFilePaths.clear();
+		missingFilePaths.clear();
+		openResultSinks(pathChecked);
+		for (Map.Entry<String, Integer> result : results.entrySet()) {
+			addResult(result.getValue(), result.getKey());
+		}
+		closeResultSinks(pathChecked);
+	}
+
+	/**
+	 * The canonical path and attributes of entry are those found while listing its directory,
+	 * or null if the file is given by the caller.
+	 */
+	private int checkFile(ScanEntry entry, ResultCollector resultCollector) {
+		if (isArchive(entry))
+			return checkArchive(entry, resultCollector);
+
+		int caseNum = COPYRIGHT_Not_Present;
+
+		File file = entry.file;
+		String filePath = entry.canonicalPath;
+		HeaderRules headerRules = getHeaderRules(file.getName());
+		BufferedReader bufferedReader = null;
+		boolean fromCache = false;
+		try {
+			long startNanos = System.nanoTime();
+			if (filePath == null) {
+				filePath = file.getCanonicalPath();
+				metrics.recordPhase(RunMetrics.PHASE_CANONICAL_PATH, startNanos);
+			}
+
+			long fileLength = 0;
+			long lastModified = 0;
+			CheckCache.Entry cachedEntry = null;
+			if (cache != null) {
+				if (entry.attributes != null) {
+					fileLength = entry.attributes.size();
+					lastModified = entry.attributes.lastModifiedTime().toMillis();
+				}
+				else {
+					fileLength = file.length();
+					lastModified = file.lastModified();
+				}
+				cachedEntry = cache.get(filePath);
+			}
+			else if (missingFileListener != null) {
+				lastModified = file.lastModified();
+			}
+
+			if ((cachedEntry != null) && cache.isUnchanged(cachedEntry, fileLength, lastModified)) {
+				Logger.writeLog(logLevel, "Unchanged file: " + filePath);
+				caseNum = cachedEntry.getCaseNum();
+				fromCache = true;
+				cache.put(filePath, cachedEntry);
+				if ((caseNum == COPYRIGHT_Not_Present) && (missingFileListener != null))
+					missingFileListener.missingFile(filePath, null, 0, fileLength, lastModified);
+			}
+			else {
+				Logger.writeLog(logLevel, "Checking file: " + filePath + " ......");
+
+				HeaderWindow headerWindow = null;
+				long contentHash = CheckCache.NO_HASH;
+				if (headerWindowBytes > 0) {
+					startNanos = System.nanoTime();
+					headerWindow = readHeaderWindow(file);
+					metrics.recordPhase(RunMetrics.PHASE_READ_FILE, startNanos);
+					metrics.addBytesRead(headerWindow.length);
+					if ((cache != null) && cache.isHashing())
+						contentHash = CheckCache.hash(ByteBuffer.wrap(headerWindow.bytes, 0, headerWindow.length));
+				}
+
+				if ((cachedEntry != null) && cachedEntry.hasSameContent(fileLength, contentHash)) {
+					caseNum = cachedEntry.getCaseNum();
+					fromCache = true;
+				}
+				else {
+					startNanos = System.nanoTime();
+					if (headerWindow != null) {
+						caseNum = checkHeaderWindow(headerRules, headerWindow);
+						if ((caseNum == COPYRIGHT_Wrong_Format) && headerWindow.isTruncated())
+							caseNum = checkHeaderWindow(headerRules, extendHeaderWindow(file, headerWindow));
+					}
+					else {
+						bufferedReader = new BufferedReader(new FileReader(file));
+						metrics.addBytesRead(file.length());
+					}
+					if (bufferedReader != null)
+						caseNum = checkHeaderLines(headerRules, bufferedReader);
+					// without a header window the file is read while it is matched
+					metrics.recordPhase(RunMetrics.PHASE_MATCH_HEADER, startNanos);
+				}
+
+				if (cache != null)
+					cache.put(filePath, new CheckCache.Entry(fileLength, lastModified, contentHash, caseNum));
+
+				// hand the bytes already read over, so that the file is not read again to fix it
+				if ((caseNum == COPYRIGHT_Not_Present) && (missingFileListener != null)) {
+					if (headerWindow != null)
+						missingFileListener.missingFile(filePath, headerWindow.bytes, headerWindow.length,
+								headerWindow.fileLength, lastModified);
+					else
+						missingFileListener.missingFile(filePath, null, 0, file.length(), lastModified);
+				}
+			}
+		}
+		catch (Exception e) {
+			Logger.writeException(logLevel, e.getMessage());
+			e.printStackTrace();
+			caseNum = COPYRIGHT_FAILED;
+		}
+		finally {
+			metrics.addFileChecked(caseNum, fromCache);
+			if (bufferedReader != null) {
+				try {
+					bufferedReader.close();
+				}
+				catch (Exception ignoreException) {
+					// nothing to do here
+				}
+				bufferedReader = null;
+			}
+		}
+
+		// Dump to list
+		if (caseNum != COPYRIGHT_OK) {
+			if ((shardCount > 1) && (filePath != null))
+				shardOrdinals.put(filePath, entry.getOrdinal());
+			resultCollector.addResult(caseNum, filePath);
+		}
+
+		return caseNum;
+	}
+
+	private boolean isArchive(ScanEntry entry) {
+		return archiveScanning && isArchiveName(entry.file.getName());
+	}
+
+	static boolean isArchiveName(String fileName) {
+		for (String archiveExtName : ARCHIVE_EXT_NAMES) {
+			if (fileName.regionMatches(true, fileName.length() - archiveExtName.length(), archiveExtName, 0, archiveExtName.length()))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether a path is that of an entry in an archive, as reported with archive scanning.
+	 */
+	static boolean isArchiveEntryPath(String path) {
+		int separator = path.indexOf(ARCHIVE_ENTRY_SEPARATOR);
+		return (separator > 0) && isArchiveName(path.substring(0, separator)) && new File(path.substring(0, separator)).isFile();
+	}
+
+	/**
+	 * Checks the entries of an archive one after the other; returns COPYRIGHT_OK, or the case of its first finding.
+	 */
+	private int checkArchive(ScanEntry archive, ResultCollector resultCollector) {
+		int archiveCaseNum = COPYRIGHT_OK;
+		ZipFile zipFile = openArchive(archive);
+		if (zipFile == null)
+			return COPYRIGHT_FAILED;
+
+		try {
+			List<ZipEntry> zipEntries = listArchive(archive, zipFile);
+			for (int i = 0; i < zipEntries.size(); i++) {
+				if (isOutOfTime())
+					break;
+				int caseNum = checkArchiveEntry(archive, zipFile, zipEntries.get(i), i, resultCollector);
+				if ((archiveCaseNum == COPYRIGHT_OK) && (caseNum != COPYRIGHT_OK))
+					archiveCaseNum = caseNum;
+			}
+		}
+		finally {
+			closeArchive(archive, zipFile);
+		}
+		return archiveCaseNum;
+	}
+
+	private ZipFile openArchive(ScanEntry archive) {
+		try {
+			long startNanos = System.nanoTime();
+			ZipFile zipFile = new ZipFile(archive.file);
+			metrics.recordPhase(RunMetrics.PHASE_LIST_DIRECTORY, startNanos);
+			return zipFile;
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, "Cannot open archive " + archive.file.getPath() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void closeArchive(ScanEntry archive, ZipFile zipFile) {
+		try {
+			zipFile.close();
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, "Cannot close archive " + archive.file.getPath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the entries of an archive to check, in the order of its central directory.
+	 */
+	private List<ZipEntry> listArchive(ScanEntry archive, ZipFile zipFile) {
+		Logger.writeLog(logLevel, "Begin to check archive: " + archive.file.getPath() + " ......");
+		List<ZipEntry> zipEntries = new ArrayList<>();
+		// the ignore rules are for the files on disk, not for the entries
+		FileExtNameFilter entryFilter = new FileExtNameFilter(fileTypes);
+		Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+		while (enumeration.hasMoreElements()) {
+			ZipEntry zipEntry = enumeration.nextElement();
+			if ( ! zipEntry.isDirectory() && ! isInHiddenDir(zipEntry.getName()) &&
+					entryFilter.accept(new File(zipEntry.getName()), false))
+				zipEntries.add(zipEntry);
+		}
+		metrics.addDirectoryVisited();
+		return zipEntries;
+	}
+
+	// like hidden directories on disk, hidden directories in an archive are not checked
+	private static boolean isInHiddenDir(String entryName) {
+		return entryName.startsWith(".") || entryName.contains("/.");
+	}
+
+	/**
+	 * Checks an entry of an archive, reading the header window from its compressed stream.
+	 */
+	private int checkArchiveEntry(ScanEntry archive, ZipFile zipFile, ZipEntry zipEntry, int index,
+			ResultCollector resultCollector) {
+		int caseNum = COPYRIGHT_Not_Present;
+		String filePath = archive.canonicalPath + ARCHIVE_ENTRY_SEPARATOR + zipEntry.getName();
+		HeaderRules headerRules = getHeaderRules(zipEntry.getName().substring(zipEntry.getName().lastIndexOf('/') + 1));
+		BufferedReader bufferedReader = null;
+		try {
+			Logger.writeLog(logLevel, "Checking file: " + filePath + " ......");
+			long startNanos = System.nanoTime();
+			InputStream in = zipFile.getInputStream(zipEntry);
+			try {
+				HeaderWindow headerWindow = null;
+				if (headerWindowBytes > 0) {
+					headerWindow = readHeaderWindow(in, zipEntry.getSize());
+					metrics.recordPhase(RunMetrics.PHASE_READ_FILE, startNanos);
+					metrics.addBytesRead(headerWindow.length);
+				}
+
+				startNanos = System.nanoTime();
+				if (headerWindow != null) {
+					caseNum = checkHeaderWindow(headerRules, headerWindow);
+					// the stream is still at the end of the window
+					if ((caseNum == COPYRIGHT_Wrong_Format) && headerWindow.isTruncated())
+						caseNum = checkHeaderWindow(headerRules, extendHeaderWindow(in, headerWindow));
+				}
+				else {
+					bufferedReader = new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()));
+					metrics.addBytesRead(zipEntry.getSize());
+				}
+				if (bufferedReader != null)
+					caseNum = checkHeaderLines(headerRules, bufferedReader);
+				metrics.recordPhase(RunMetrics.PHASE_MATCH_HEADER, startNanos);
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (Exception e) {
+			Logger.writeException(logLevel, filePath + ": " + e.getMessage());
+			e.printStackTrace();
+			caseNum = COPYRIGHT_FAILED;
+		}
+		finally {
+			metrics.addFileChecked(caseNum, false);
+		}
+
+		if (caseNum != COPYRIGHT_OK) {
+			if (shardCount > 1)
+				shardOrdinals.put(filePath, archive.getOrdinal() + "." + index);
+			resultCollector.addResult(caseNum, filePath);
+		}
+		return caseNum;
+	}
+
+	/**
+	 * Returns the rules of the type of a file by its name, or the default rules if it has no type.
+	 */
+	private HeaderRules getHeaderRules(String fileName) {
+		FileTypes.FileType fileType = fileTypes.getFileType(fileName);
+		return (fileType != null) ? fileType.getHeaderRules() : rules;
+	}
+
+	private int checkHeaderLines(HeaderRules headerRules, BufferedReader bufferedReader) throws IOException {
+		int caseNum = COPYRIGHT_Not_Present;
+
+		String line;
+		int lineCount = 0;
+		while (((headerWindowLines == 0) || (lineCount++ < headerWindowLines)) &&
+				((line = bufferedReader.readLine()) != null)) {
+			caseNum = headerRules.checkStartLine(line);
+			if (caseNum != COPYRIGHT_Not_Present) {
+				if (caseNum == COPYRIGHT_OK) {
+					line = bufferedReader.readLine();
+					if (line == null) caseNum = COPYRIGHT_Wrong_Format;
+					else caseNum = headerRules.checkFollowingLine(line);
+				}
+				break;
+			}
+		}
+
+		return caseNum;
+	}
+
+	/**
+	 * The same as checkHeaderLines(HeaderRules, BufferedReader) for the lines held by the first length bytes,
+	 * which end with \n, \r or \r\n like those of BufferedReader.readLine().
+	 */
+	private int checkHeaderLines(HeaderRules headerRules, byte[] bytes, int length) {
+		int caseNum = COPYRIGHT_Not_Present;
+
+		int lineStart = skipUtf8Bom(bytes, length);
+		int lineCount = 0;
+		while (((headerWindowLines == 0) || (lineCount++ < headerWindowLines)) && (lineStart < length)) {
+			int lineEnd = findLineEnd(bytes, lineStart, length);
+			caseNum = headerRules.checkStartLine(bytes, lineStart, lineEnd);
+			lineStart = nextLineStart(bytes, lineEnd, length);
+			if (caseNum != COPYRIGHT_Not_Present) {
+				if (caseNum == COPYRIGHT_OK) {
+					if (lineStart >= length) caseNum = COPYRIGHT_Wrong_Format;
+					else caseNum = headerRules.checkFollowingLine(bytes, lineStart, findLineEnd(bytes, lineStart, length));
+				}
+				break;
+			}
+		}
+
+		return caseNum;
+	}
+
+	/**
+	 * Checks the complete lines of headerWindow, matching their bytes or the lines they decode to.
+	 */
+	private int checkHeaderWindow(HeaderRules headerRules, HeaderWindow headerWindow) throws IOException {
+		int length = headerWindow.getCompleteLinesLength();
+		if (isByteMatching())
+			return checkHeaderLines(headerRules, headerWindow.bytes, length);
+		return checkHeaderLines(headerRules, new BufferedReader(new StringReader(
+				new String(headerWindow.bytes, 0, length, Charset.defaultCharset()))));
+	}
+
+	/**
+	 * Returns where the first line starts, after the UTF-8 byte order mark if there is one.
+	 */
+	static int skipUtf8Bom(byte[] bytes, int length) {
+		if ((length >= UTF8_BOM_LENGTH) && (bytes[0] == (byte) 0xEF) && (bytes[1] == (byte) 0xBB) && (bytes[2] == (byte) 0xBF))
+			return UTF8_BOM_LENGTH;
+		return 0;
+	}
+
+	static int findLineEnd(byte[] bytes, int start, int length) {
+		int end = start;
+		while ((end < length) && (bytes[end] != '\n') && (bytes[end] != '\r'))
+			end++;
+		return end;
+	}
+
+	static int nextLineStart(byte[] bytes, int lineEnd, int length) {
+		if (lineEnd >= length)
+			return length;
+		if ((bytes[lineEnd] == '\r') && (lineEnd + 1 < length) && (bytes[lineEnd + 1] == '\n'))
+			return lineEnd + 2;
+		return lineEnd + 1;
+	}
+
+	/**
+	 * Reads at most headerWindowBytes from the head of the file with one positioned read, into the buffer of this thread.
+	 */
+	private HeaderWindow readHeaderWindow(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel channel = fis.getChannel();
+			long fileLength = channel.size();
+			byte[] bytes = getHeaderBuffer();
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) Math.min(fileLength, headerWindowBytes));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, buffer.position()) < 0)
+					break;
+			}
+			return new HeaderWindow(bytes, buffer.position(), fileLength);
+		}
+		finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * The same as readHeaderWindow(File) for a stream of fileLength bytes, or of unknown length if fileLength is -1.
+	 */
+	private HeaderWindow readHeaderWindow(InputStream in, long fileLength) throws IOException {
+		byte[] bytes = getHeaderBuffer();
+		int limit = (fileLength >= 0) ? (int) Math.min(fileLength, headerWindowBytes) : headerWindowBytes;
+		int length = 0;
+		int cBytesRead;
+		while ((length < limit) && ((cBytesRead = in.read(bytes, length, limit - length)) >= 0)) {
+			length += cBytesRead;
+		}
+		// a full window of unknown length may end in an incomplete line
+		if (fileLength < 0)
+			fileLength = (length < headerWindowBytes) ? length : Long.MAX_VALUE;
+		return new HeaderWindow(bytes, length, fileLength);
+	}
+
+	/**
+	 * The same as extendHeaderWindow(InputStream, HeaderWindow), reading the file again from the end of the window.
+	 */
+	private HeaderWindow extendHeaderWindow(File file, HeaderWindow headerWindow) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			fis.getChannel().position(headerWindow.length);
+			return extendHeaderWindow(new BufferedInputStream(fis), headerWindow);
+		}
+		finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Returns a copy of headerWindow which goes on, from in, up to the end of the line cut by the window, so that
+	 * a start line whose following line is cut is not taken for a wrong format. The line is read up to another
+	 * headerWindowBytes at most.
+	 */
+	private HeaderWindow extendHeaderWindow(InputStream in, HeaderWindow headerWindow) throws IOException {
+		byte[] bytes = Arrays.copyOf(headerWindow.bytes, headerWindow.length + headerWindowBytes);
+		int length = headerWindow.length;
+		long fileLength = headerWindow.fileLength;
+		// a \n right after a \r ending the window ends the line before
+		boolean endsWithCr = (length > 0) && (bytes[length - 1] == '\r');
+		while (length < bytes.length) {
+			int b = in.read();
+			if (b < 0) {
+				fileLength = length;
+				break;
+			}
+			bytes[length++] = (byte) b;
+			if (((b == '\n') && ! (endsWithCr && (length == headerWindow.length + 1))) || (b == '\r'))
+				break;
+		}
+		metrics.addBytesRead(length - headerWindow.length);
+		return new HeaderWindow(bytes, length, fileLength);
+	}
+
+	private byte[] getHeaderBuffer() {
+		byte[] bytes = HEADER_BUFFERS.get();
+		if ((bytes == null) || (bytes.length < headerWindowBytes)) {
+			bytes = new byte[headerWindowBytes];
+			HEADER_BUFFERS.set(bytes);
+		}
+		return bytes;
+	}
+
+	private static class HeaderWindow {
+		final byte[] bytes;
+		final int length;
+		final long fileLength;
+
+		HeaderWindow(byte[] bytes, int length, long fileLength) {
+			this.bytes = bytes;
+			this.length = length;
+			this.fileLength = fileLength;
+		}
+
+		/**
+		 * Returns whether the file goes on after the window.
+		 */
+		boolean isTruncated() {
+			return length < fileLength;
+		}
+
+		/**
+		 * If the file is longer than the window, its incomplete last line is not checked.
+		 */
+		int getCompleteLinesLength() {
+			int completeLength = length;
+			if (completeLength < fileLength) {
+				while ((completeLength > 0) && (bytes[completeLength - 1] != '\n') && (bytes[completeLength - 1] != '\r'))
+					completeLength--;
+			}
+			return completeLength;
+		}
+	}
+
+	static String describeCase(int caseNum) {
+		String caseDesp = null;
+
+		if ((caseNum & COPYRIGHT_Not_Present) != 0)
+			caseDesp = "Copyright does not present";
+
+		if ((caseNum & COPYRIGHT_Wrong_Format) != 0)
+			caseDesp = "Copyright wrong format";
+
+		return caseDesp;
+	}
+
+	/**
+	 * Writes the collected results to the result files in one go, for callers which did not stream them.
+	 */
+	public void writeResultToFile(String pathChecked) {
+		long startNanos = System.nanoTime();
+		ResultSink resultSink = new TextResultSink();
+		try {
+			resultSink.open(pathChecked);
+			for (String wrongFormatFilePath : wrongFormatFilePaths) {
+				resultSink.addResult(COPYRIGHT_Wrong_Format, wrongFormatFilePath);
+			}
+			for (String missingFilePath : missingFilePaths) {
+				resultSink.addResult(COPYRIGHT_Not_Present, missingFilePath);
+			}
+			resultSink.close();
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, e.getMessage());
+			e.printStackTrace();
+		}
+		metrics.recordPhase(RunMetrics.PHASE_WRITE_RESULTS, startNanos);
+		if (missingFilePaths.isEmpty() && wrongFormatFilePaths.isEmpty()) {
+			Logger.writeInfo(logLevel, "File/Path checked: " + pathChecked);
+			Logger.writeInfo(logLevel, "No error found.");
+		}
+	}
+
+	private String generateCacheFileName() {
+		return "." + File.separatorChar + CACHE_FILE_NAME;
+	}
+
+	private String generateCheckpointFileName() {
+		return "." + File.separatorChar + CHECKPOINT_FILE_NAME;
+	}
+
+	private interface ResultCollector {
+		void addResult(int caseNum, String filePath);
+	}
+
+	/**
+	 * Keeps the findings of one directory's subtree for the checkpoint, passing each on to the collector of the walk.
+	 * The findings of a sub directory are only added once it completes, so each finding is held by one list
+	 * of a directory being checked, whatever the depth.
+	 */
+	private class CheckpointCollector implements ResultCollector {
+		private final ResultCollector target;
+		private final List<ScanCheckpoint.Finding> findings = new ArrayList<>();
+
+		CheckpointCollector(ResultCollector target) {
+			this.target = target;
+		}
+
+		public void addResult(int caseNum, String filePath) {
+			if ((caseNum == COPYRIGHT_Wrong_Format) || (caseNum == COPYRIGHT_Not_Present))
+				findings.add(createFinding(caseNum, filePath));
+			target.addResult(caseNum, filePath);
+		}
+
+		/**
+		 * Adds the findings of a completed sub directory, which were passed on when they were found.
+		 */
+		void addSubDirFindings(CheckpointCollector subDirCollector) {
+			findings.addAll(subDirCollector.findings);
+		}
+	}
+
+	private abstract class ScanTask extends RecursiveAction implements ResultCollector {
+		private final static long serialVersionUID = 1L;
+
+		// the findings in walk order, whatever their case, as the serial walk passes them to the result sinks;
+		// the bit of a finding is set if it is of the wrong format, and clear if the copyright is not present
+		protected final PathList findingPaths = new PathList();
+		protected final BitSet wrongFormatFindings = new BitSet();
+		// the root task hands the results of its sub tasks to the checker instead of collecting them
+		protected boolean emitting = false;
+
+		public void addResult(int caseNum, String filePath) {
+			if (caseNum == COPYRIGHT_Wrong_Format)
+				wrongFormatFindings.set(findingPaths.size());
+			else if (caseNum != COPYRIGHT_Not_Present)
+				return;
+			findingPaths.add(filePath);
+		}
+
+		protected int getFindingCase(int index) {
+			return wrongFormatFindings.get(index) ? COPYRIGHT_Wrong_Format : COPYRIGHT_Not_Present;
+		}
+
+		protected void runSubTasks(List<ScanTask> tasks) {
+			if ( ! emitting) {
+				invokeAll(tasks);
+				for (ScanTask task : tasks) {
+					for (int i = 0; i < task.findingPaths.size(); i++) {
+						addResult(task.getFindingCase(i), task.findingPaths.get(i));
+					}
+				}
+			}
+			else {
+				for (ScanTask task : tasks) {
+					task.fork();
+				}
+				for (ScanTask task : tasks) {
+					task.join();
+					for (int i = 0; i < task.findingPaths.size(); i++) {
+						CopyrightChecker.this.addResult(task.getFindingCase(i), task.findingPaths.get(i));
+					}
+				}
+			}
+		}
+	}
+
+	private class CheckDirTask extends ScanTask {
+		private final static long serialVersionUID = 1L;
+
+		private final ScanEntry dir;
+		private final String path;
+
+		CheckDirTask(ScanEntry dir, String path) {
+			this.dir = dir;
+			this.path = path;
+		}
+
+		@Override
+		protected void compute() {
+			if (replayCheckpoint(dir, emitting ? resultCollector : this))
+				return;
+
+			Logger.writeLog(logLevel, "Begin to check directory: " + path + " ......");
+			// split the listing into sub directories and runs of files, keeping the listing order
+			List<ScanTask> tasks = new ArrayList<>();
+			List<ScanEntry> fileBatch = new ArrayList<>();
+			List<String> subDirPaths = new ArrayList<>();
+			for (ScanEntry entry : listDir(dir)) {
+				if (isOutOfTime())
+					break;
+				if (entry.attributes.isDirectory()) {
+					if ( ! fileBatch.isEmpty()) {
+						tasks.add(new CheckFilesTask(fileBatch));
+						fileBatch = new ArrayList<>();
+					}
+					tasks.add(new CheckDirTask(entry, entry.canonicalPath));
+					subDirPaths.add(entry.canonicalPath);
+				}
+				else if (isArchive(entry)) {
+					if ( ! fileBatch.isEmpty()) {
+						tasks.add(new CheckFilesTask(fileBatch));
+						fileBatch = new ArrayList<>();
+					}
+					tasks.add(new CheckArchiveTask(entry));
+				}
+				else {
+					fileBatch.add(entry);
+					if (fileBatch.size() >= PARALLEL_FILE_BATCH_SIZE) {
+						tasks.add(new CheckFilesTask(fileBatch));
+						fileBatch = new ArrayList<>();
+					}
+				}
+			}
+			if ( ! fileBatch.isEmpty())
+				tasks.add(new CheckFilesTask(fileBatch));
+
+			runSubTasks(tasks);
+			// the root task has emitted its findings; its completion is that of the whole check
+			if ((checkpoint != null) && ! emitting && ! stopped) {
+				List<ScanCheckpoint.Finding> findings = new ArrayList<>();
+				for (int i = 0; i < findingPaths.size(); i++) {
+					findings.add(createFinding(getFindingCase(i), findingPaths.get(i)));
+				}
+				checkpoint.complete(dir.canonicalPath, findings, subDirPaths);
+			}
+			Logger.writeLog(logLevel, "End checking directory: " + path);
+		}
+	}
+
+	private class CheckFileListTask extends ScanTask {
+		private final static long serialVersionUID = 1L;
+
+		private final List<ScanEntry> entries;
+
+		CheckFileListTask(List<ScanEntry> entries) {
+			this.entries = entries;
+		}
+
+		@Override
+		protected void compute() {
+			List<ScanTask> tasks = new ArrayList<>();
+			for (int i = 0; i < entries.size(); i += PARALLEL_FILE_BATCH_SIZE) {
+				tasks.add(new CheckFilesTask(entries.subList(i, Math.min(entries.size(), i + PARALLEL_FILE_BATCH_SIZE))));
+			}
+			runSubTasks(tasks);
+		}
+	}
+
+	private class CheckArchiveTask extends ScanTask {
+		private final static long serialVersionUID = 1L;
+
+		private final ScanEntry archive;
+
+		CheckArchiveTask(ScanEntry archive) {
+			this.archive = archive;
+		}
+
+		@Override
+		protected void compute() {
+			ZipFile zipFile = openArchive(archive);
+			if (zipFile == null)
+				return;
+
+			try {
+				List<ZipEntry> zipEntries = listArchive(archive, zipFile);
+				List<ScanTask> tasks = new ArrayList<>();
+				for (int i = 0; i < zipEntries.size(); i += PARALLEL_FILE_BATCH_SIZE) {
+					tasks.add(new CheckArchiveEntriesTask(archive, zipFile,
+							zipEntries.subList(i, Math.min(zipEntries.size(), i + PARALLEL_FILE_BATCH_SIZE)), i));
+				}
+				runSubTasks(tasks);
+			}
+			finally {
+				closeArchive(archive, zipFile);
+			}
+		}
+	}
+
+	private class CheckArchiveEntriesTask extends ScanTask {
+		private final static long serialVersionUID = 1L;
+
+		private final ScanEntry archive;
+		private final ZipFile zipFile;
+		private final List<ZipEntry> zipEntries;
+		// the index of the first entry among those of the archive to check
+		private final int startIndex;
+
+		CheckArchiveEntriesTask(ScanEntry archive, ZipFile zipFile, List<ZipEntry> zipEntries, int startIndex) {
+			this.archive = archive;
+			this.zipFile = zipFile;
+			this.zipEntries = zipEntries;
+			this.startIndex = startIndex;
+		}
+
+		@Override
+		protected void compute() {
+			for (int i = 0; i < zipEntries.size(); i++) {
+				if (isOutOfTime())
+					break;
+				checkArchiveEntry(archive, zipFile, zipEntries.get(i), startIndex + i, this);
+			}
+		}
+	}
+
+	private class CheckFilesTask extends ScanTask {
+		private final static long serialVersionUID = 1L;
+
+		private final List<ScanEntry> entries;
+
+		CheckFilesTask(List<ScanEntry> entries) {
+			this.entries = entries;
+		}
+
+		@Override
+		protected void compute() {
+			for (ScanEntry entry : entries) {
+				if (isOutOfTime())
+					break;
+				checkFile(entry, this);
+			}
+		}
+	}
+
+	private boolean isInShard(ScanEntry entry) {
+		return (shardCount == 1) || (ShardResults.getShard(entry.getRelativePath(), shardCount) == shardIndex);
+	}
+
+	/**
+	 * Writes the findings of this shard with their positions in the serial walk, for ShardResults to merge.
+	 */
+	public void writeShardResults(String pathChecked) {
+		String fileName = ShardResults.generateShardFileName(shardIndex, shardCount);
+		try {
+			ShardResults.write(fileName, shardIndex, shardCount, pathChecked,
+					wrongFormatFilePaths, missingFilePaths, shardOrdinals);
+			Logger.writeInfo(logLevel, "Shard results are written to " + fileName);
+		}
+		catch (IOException e) {
+			Logger.writeException(logLevel, e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A file or directory to check, with what is already known about it.
+	 */
+	private static class ScanEntry {
+		final File file;
+		final String canonicalPath;
+		final BasicFileAttributes attributes;
+		// the directory this entry was found in, null for a path given by the caller
+		final ScanEntry parent;
+		// the name in the parent directory, or the path given by the caller
+		final String name;
+		// for a file of a list given by the caller, the position of the list among the paths checked; -1 otherwise
+		final int listIndex;
+		// the position among the entries of the parent directory, or among the paths given by the caller
+		final int index;
+
+		ScanEntry(File file, String canonicalPath, BasicFileAttributes attributes, ScanEntry parent, String name, int index) {
+			this(file, canonicalPath, attributes, parent, name, -1, index);
+		}
+
+		ScanEntry(File file, String canonicalPath, BasicFileAttributes attributes, ScanEntry parent, String name,
+				int listIndex, int index) {
+			this.file = file;
+			this.canonicalPath = canonicalPath;
+			this.attributes = attributes;
+			this.parent = parent;
+			this.name = name;
+			this.listIndex = listIndex;
+			this.index = index;
+		}
+
+		/**
+		 * Returns the path relative to the path given by the caller, with "/" as separator.
+		 */
+		String getRelativePath() {
+			if (parent == null)
+				return name;
+			StringBuilder sb = new StringBuilder(name);
+			for (ScanEntry dir = parent; dir.parent != null; dir = dir.parent) {
+				sb.insert(0, '/').insert(0, dir.name);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Returns the position in the serial walk as dot separated indexes, e.g. "0.3.12".
+		 */
+		String getOrdinal() {
+			StringBuilder sb = new StringBuilder(Integer.toString(index));
+			ScanEntry entry = this;
+			for (; entry.parent != null; entry = entry.parent) {
+				sb.insert(0, '.').insert(0, entry.parent.index);
+			}
+			if (entry.listIndex >= 0)
+				sb.insert(0, '.').insert(0, entry.listIndex);
+			return sb.toString();
+		}
+
+		/**
+		 * Returns whether this directory, or one it was found in, has the file key.
+		 */
+		boolean isInside(Object fileKey) {
+			for (ScanEntry dir = this; dir != null; dir = dir.parent) {
+				if (fileKey.equals(dir.attributes.fileKey()))
+					return true;
+			}
+			return false;
+		}
+	}
+
+	static class FileExtNameFilter implements FileFilter {
+		private FileTypes fileTypes;
+		private IgnoreRules ignoreRules;
+		private boolean acceptingArchives;
+
+		public FileExtNameFilter(FileTypes fileTypes) {
+			this(fileTypes, null);
+		}
+
+		public FileExtNameFilter(FileTypes fileTypes, IgnoreRules ignoreRules) {
+			this(fileTypes, ignoreRules, false);
+		}
+
+		public FileExtNameFilter(FileTypes fileTypes, IgnoreRules ignoreRules, boolean acceptingArchives) {
+			this.fileTypes = fileTypes;
+			this.ignoreRules = ((ignoreRules != null) && ! ignoreRules.isEmpty()) ? ignoreRules : null;
+			this.acceptingArchives = acceptingArchives;
+		}
+
+		public boolean accept(File file) {
+			return accept(file, file.isDirectory());
+		}
+
+		/**
+		 * The same as accept(File), for a file known to be a directory or not.
+		 */
+		boolean accept(File file, boolean isDirectory) {
+			if (isHidden(file))
+				return false;
+			else if ((ignoreRules != null) && ignoreRules.isIgnored(file, isDirectory))
+				return false;
+			else if (isDirectory)
+				return true;
+			else {
+				String fileName = file.getName();
+				return (fileTypes.getFileType(fileName) != null) || (acceptingArchives && isArchiveName(fileName));
+			}
+		}
+
+		/**
+		 * On Unix, hidden files are those whose name starts with a dot, which File.isHidden() finds out with a stat call.
+		 */
+		static boolean isHidden(File file) {
+			if (File.separatorChar == '/')
+				return file.getName().startsWith(".");
+			return file.isHidden();
+		}
+	}
 }
\ No newline at end of file
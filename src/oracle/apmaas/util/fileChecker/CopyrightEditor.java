@@ -1,168 +1,606 @@
-/*
- *  +===========================================================================+
- *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
- *  |                         All rights reserved.                              |
- *  +===========================================================================+
- */
-package oracle.apmaas.util.fileChecker;
-
-import java.io.*;
-import java.util.List;
-
-/**
- * Created by yiyitan on 4/4/2016.
- */
-public class CopyrightEditor {
-
-    private static String COPYRIGHT_STANDARD_BLOCK_Java = null;
-    private static String COPYRIGHT_STANDARD_BLOCK_Properties = null;
-
-    private static final int FILE_READ_BUFFER_SIZE = 1024 * 1024;	// 1M
-    private static final int FILE_WRITE_BUFFER_SIZE = 1024 * 1024;	// 1M
-    private static final int MAX_FILE_SIZE = 32 * 1024 * 1024; // 32M
-
-    private static final int FILE_IO_BLOCK_SIZE = 4 * 1024 * 1024; // 4M
-
-    public CopyrightEditor() {
-        int curYear = Main.getCurYear();
-
-        COPYRIGHT_STANDARD_BLOCK_Java =
-                "/*\n" +
-                        " *  +===========================================================================+\n" +
-                        " *  |      Copyright (c) "+ curYear +" Oracle Corporation, Redwood Shores, CA, USA       |\n" +
-                        " *  |                         All rights reserved.                              |\n" +
-                        " *  +===========================================================================+\n" +
-                        " */\n";
-
-        COPYRIGHT_STANDARD_BLOCK_Properties =
-                "#  +===========================================================================+\n" +
-                        "#  |      Copyright (c) " + curYear + " Oracle Corporation, Redwood Shores, CA, USA       |\n" +
-                        "#  |                         All rights reserved.                              |\n" +
-                        "#  +===========================================================================+\n";
-    }
-
-    public void editMissingFiles(List<String> missingFilePaths) {
-        if ( (missingFilePaths == null) || (missingFilePaths.isEmpty()) ) {
-            return;
-        }
-
-        try {
-            for (String path : missingFilePaths) {
-                if (path.endsWith(Main.FILE_EXT_NAME_Java))
-                    addCopyright2MissingFiles(COPYRIGHT_STANDARD_BLOCK_Java, path);
-                else if (path.endsWith(Main.FILE_EXT_NAME_PROPERTIES))
-                    addCopyright2MissingFiles(COPYRIGHT_STANDARD_BLOCK_Properties, path);
-            }
-        }
-        catch (Exception e) {
-            Logger.writeException(e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    private void addCopyright2MissingFiles(String copyrightBlock, String filePath)
-            throws Exception {
-
-        byte[] fileContent = null;
-        BufferedInputStream bis = null;
-        BufferedOutputStream bos = null;
-        try {
-            Logger.writeLog("Begin to insert copyright block to file: " + filePath);
-
-            File file = new File(filePath);
-
-            long fileLength = file.length();
-            if (fileLength <= MAX_FILE_SIZE) {
-                if (fileLength > 0) {
-                    fileContent = new byte[(int) fileLength];
-                    bis = new BufferedInputStream(new FileInputStream(file), FILE_READ_BUFFER_SIZE);
-                    int cBytesRead = bis.read(fileContent);
-                    if (cBytesRead != fileLength) {
-                        throw new IOException("Failed reading file: " + filePath + ", " +
-                                fileLength + " bytes expected, but only " + cBytesRead + " bytes read.");
-                    }
-
-                    bis.close();
-                    bis = null;
-                }
-
-                bos = new BufferedOutputStream(new FileOutputStream(file), FILE_WRITE_BUFFER_SIZE);
-                bos.write(copyrightBlock.getBytes());
-                if (fileContent != null) {
-                    bos.write(fileContent);
-                }
-                bos.flush();
-                bos.close();
-                bos = null;
-            }
-            else {
-                /*
-    			insertHeadToFile_InPlace(copyrightBlock.getBytes(), file, FILE_IO_BLOCK_SIZE);
-    			//*/
-                throw new IOException("Too large file: " + filePath + "; file size is " +
-                        fileLength + "; The maximum allowable file size is " + MAX_FILE_SIZE + ".");
-            }
-
-            Logger.writeLog("End inserting copyright block in file: " + filePath);
-        }
-        catch (Exception e) {
-            throw new Exception("Exception in edition : [filePath=" + filePath + "]", e);
-        }
-        finally {
-            fileContent = null; // release the memory occupied by fileContent
-            if (bis != null) bis.close();
-            if (bos != null) bos.close();
-        }
-    }
-
-    private static void insertHeadToFile_InPlace(byte[] head, File file, int blockSize)
-            throws IOException {
-
-        RandomAccessFile raFile = null;
-        byte[] buffer = null;
-        try {
-            int cBytesOfHead = head.length;
-            long fileLength = file.length();
-            raFile = new RandomAccessFile(file, "rw");
-
-            buffer = new byte[blockSize];
-            // fileReadPointer read from the last line
-            long fileReadPointer = fileLength;
-            int cBytesToRead, cBytesRead;
-            while (true) {
-                // move one block each time
-                fileReadPointer -= blockSize;
-                if (fileReadPointer >= 0) {
-                    cBytesToRead = blockSize;
-                }
-                // the rest head part's size is smaller than blockSize
-                else {
-                    cBytesToRead = (int) (blockSize + fileReadPointer);
-                    fileReadPointer = 0;
-                }
-
-                //find the start point to read file, read to buffer
-                raFile.seek(fileReadPointer);
-                cBytesRead = raFile.read(buffer, 0, cBytesToRead);
-                if (cBytesRead < cBytesToRead) {
-                    throw new IOException("Unexpected EOF while reading file: " + file.getCanonicalPath());
-                }
-
-                // pointer move one copyRightbBlock
-                raFile.seek(fileReadPointer + cBytesOfHead);
-                // write buffer
-                raFile.write(buffer, 0, cBytesRead);
-
-                // finally write copyRightBlock to the head of file
-                if (fileReadPointer <= 0) {
-                    raFile.seek(0);
-                    raFile.write(head);
-                    break;
-                }
-            }
-        } finally {
-            buffer = null;
-            if (raFile != null) raFile.close();
-        }
-    }
-}
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by yiyitan on 4/4/2016.
+ */
+public class CopyrightEditor {
+
+    // Files up to this size are edited through a pooled buffer; larger files are streamed into a temporary file
+    private static final int FILE_BUFFER_SIZE = 1024 * 1024;	// 1M
+
+    private static final String TEMP_FILE_SUFFIX = ".crtmp";
+
+    // where the first line of a copyright block is looked for when updating its years, as in CopyrightChecker
+    private static final int HEADER_WINDOW_BYTES = CopyrightChecker.DEFAULT_HEADER_WINDOW_BYTES;
+    private static final int HEADER_WINDOW_LINES = CopyrightChecker.DEFAULT_HEADER_WINDOW_LINES;
+
+    // Files found by the checker wait here for an editing thread; when it is full, the checker edits itself
+    private static final int PIPELINE_QUEUE_CAPACITY = 1024;
+
+    private int ioParallelism = 1;
+    private BufferPool bufferPool = new BufferPool(FILE_BUFFER_SIZE, ioParallelism);
+
+    private ThreadPoolExecutor pipelineExecutor = null;
+    private final List<Future<EditOutcome>> pipelineFutures = new ArrayList<>();
+    // pipelineFilePaths.get(i) is the file edited by pipelineFutures.get(i)
+    private final List<String> pipelineFilePaths = new ArrayList<>();
+
+    // the checker decides which files are edited, so the block of every known type can be inserted
+    private static final FileTypes FILE_TYPES = FileTypes.getAllTypes();
+
+    // the year of the blocks to insert; editors of other years may run at the same time
+    private final int curYear;
+
+    private RunMetrics metrics = new RunMetrics();
+    private int logLevel = Logger.logLevel;
+
+    public CopyrightEditor() {
+        this(Main.getCurYear());
+    }
+
+    public CopyrightEditor(int curYear) {
+        this.curYear = curYear;
+    }
+
+    public int getIoParallelism() {
+        return ioParallelism;
+    }
+
+    /**
+     * Sets how many files are edited at the same time; each of them holds one pooled buffer.
+     */
+    public void setIoParallelism(int ioParallelism) {
+        this.ioParallelism = Math.max(1, ioParallelism);
+        bufferPool = new BufferPool(FILE_BUFFER_SIZE, this.ioParallelism);
+    }
+
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Sets how much this editor logs, one of the Logger.LOG_LEVEL_* values; the default is Logger.logLevel.
+     */
+    public void setLogLevel(int logLevel) {
+        this.logLevel = logLevel;
+    }
+
+    /**
+     * Inserts the copyright block into every file, up to ioParallelism files at a time.
+     * A failure only affects its own file; the outcomes are returned in the order of missingFilePaths.
+     */
+    public List<EditOutcome> editMissingFiles(List<String> missingFilePaths) {
+        List<EditOutcome> outcomes = new ArrayList<>();
+        if ( (missingFilePaths == null) || (missingFilePaths.isEmpty()) ) {
+            return outcomes;
+        }
+
+        if ((ioParallelism == 1) || (missingFilePaths.size() == 1)) {
+            for (String path : missingFilePaths) {
+                outcomes.add(editMissingFile(path));
+            }
+            return outcomes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(ioParallelism);
+        try {
+            List<Future<EditOutcome>> futures = new ArrayList<>();
+            for (final String path : missingFilePaths) {
+                futures.add(executor.submit(new Callable<EditOutcome>() {
+                    public EditOutcome call() {
+                        return editMissingFile(path);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    outcomes.add(futures.get(i).get());
+                }
+                catch (ExecutionException e) {
+                    outcomes.add(new EditOutcome(missingFilePaths.get(i), EditOutcome.FAILED, String.valueOf(e.getCause())));
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    /**
+     * Extends the years in the first line of the copyright block of each file to the year it was last modified,
+     * e.g. "2016" to "2016-2019" or "2016-2018" to "2016-2019". Files without a valid copyright block, and files
+     * whose block already covers that year, are left alone. A year of the same length is overwritten in place,
+     * otherwise the file is streamed into a temporary file. Up to ioParallelism files are updated at a time;
+     * the outcomes of the files updated or failed are returned in the order of lastModifiedYears.
+     */
+    public List<EditOutcome> updateYears(Map<String, Integer> lastModifiedYears) {
+        List<EditOutcome> outcomes = new ArrayList<>();
+        if (ioParallelism == 1) {
+            for (Map.Entry<String, Integer> entry : lastModifiedYears.entrySet()) {
+                EditOutcome outcome = updateYear(entry.getKey(), entry.getValue());
+                if (outcome != null)
+                    outcomes.add(outcome);
+            }
+            return outcomes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(ioParallelism);
+        try {
+            List<String> paths = new ArrayList<>();
+            List<Future<EditOutcome>> futures = new ArrayList<>();
+            for (final Map.Entry<String, Integer> entry : lastModifiedYears.entrySet()) {
+                paths.add(entry.getKey());
+                futures.add(executor.submit(new Callable<EditOutcome>() {
+                    public EditOutcome call() {
+                        return updateYear(entry.getKey(), entry.getValue());
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    EditOutcome outcome = futures.get(i).get();
+                    if (outcome != null)
+                        outcomes.add(outcome);
+                }
+                catch (ExecutionException e) {
+                    outcomes.add(new EditOutcome(paths.get(i), EditOutcome.FAILED, String.valueOf(e.getCause())));
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    /**
+     * Returns the outcome of updating the years of one file, or null if they are left alone.
+     */
+    private EditOutcome updateYear(String path, int lastModifiedYear) {
+        long startNanos = System.nanoTime();
+        try {
+            File file = new File(path);
+            byte[] head = new byte[HEADER_WINDOW_BYTES];
+            int headLength = readHead(file, head);
+            FileTypes.FileType fileType = FILE_TYPES.getFileType(file.getName());
+            HeaderRules rules = (fileType != null) ? fileType.getHeaderRules() : HeaderRules.getDefaultRules();
+            int[] years = findStartLineYears(rules, head, headLength);
+            if (years == null)
+                return null;
+
+            int fromYear = years[HeaderRules.YEARS_FROM_YEAR];
+            int toYear = years[HeaderRules.YEARS_TO_YEAR];
+            if (lastModifiedYear <= Math.max(fromYear, toYear))
+                return null;
+
+            Logger.writeLog(logLevel, "Begin to update copyright years of file: " + path);
+            byte[] year = String.valueOf(lastModifiedYear).getBytes("US-ASCII");
+            if ((toYear >= 0) && (year.length == 4)) {
+                overwriteBytes(file, years[HeaderRules.YEARS_TO_YEAR_POS], year);
+            }
+            else {
+                // the years are replaced by the range up to the new year, the rest of the file is copied
+                int yearsStart = years[HeaderRules.YEARS_FROM_YEAR_POS];
+                int yearsEnd = (toYear >= 0) ? years[HeaderRules.YEARS_TO_YEAR_POS] + 4 : yearsStart + 4;
+                byte[] newHead = (new String(head, 0, yearsStart + 4, "ISO-8859-1") + "-" + lastModifiedYear)
+                        .getBytes("ISO-8859-1");
+                replaceHeadOfFile_Streaming(newHead, yearsEnd, file);
+            }
+            Logger.writeLog(logLevel, "End updating copyright years of file: " + path);
+
+            EditOutcome outcome = new EditOutcome(path, EditOutcome.EDITED, null);
+            metrics.recordPhase(RunMetrics.PHASE_EDIT_FILE, startNanos);
+            metrics.addEditOutcome(outcome);
+            return outcome;
+        }
+        catch (IOException e) {
+            Logger.writeException(logLevel, "Exception in updating years : [filePath=" + path + "]: " + e.getMessage());
+            EditOutcome outcome = new EditOutcome(path, EditOutcome.FAILED, e.getMessage());
+            metrics.addEditOutcome(outcome);
+            return outcome;
+        }
+    }
+
+    private static int readHead(File file, byte[] head) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(head);
+            while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+                // keep reading until the buffer is full or the end of file
+            }
+            return buffer.position();
+        }
+        finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Returns the years of the first line of the copyright block, as found by HeaderRules.findYears(),
+     * or null if the file has no copyright block or its first line is in wrong format.
+     */
+    private static int[] findStartLineYears(HeaderRules rules, byte[] bytes, int length) {
+        int lineStart = CopyrightChecker.skipUtf8Bom(bytes, length);
+        for (int lineCount = 0; (lineCount < HEADER_WINDOW_LINES) && (lineStart < length); lineCount++) {
+            int lineEnd = CopyrightChecker.findLineEnd(bytes, lineStart, length);
+            int caseNum = rules.checkStartLine(bytes, lineStart, lineEnd);
+            if (caseNum == CopyrightChecker.COPYRIGHT_OK)
+                return rules.findYears(bytes, lineStart, lineEnd);
+            if (caseNum != CopyrightChecker.COPYRIGHT_Not_Present)
+                return null;
+            lineStart = CopyrightChecker.nextLineStart(bytes, lineEnd, length);
+        }
+        return null;
+    }
+
+    private static void overwriteBytes(File file, long position, byte[] bytes) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Starts fixing files while they are being checked: the returned listener, set on a CopyrightChecker,
+     * queues each file without copyright for the editing threads, reusing the bytes the checker read.
+     * Call finishPipeline() once checking is done.
+     */
+    public MissingFileListener startPipeline() {
+        pipelineExecutor = new ThreadPoolExecutor(ioParallelism, ioParallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(PIPELINE_QUEUE_CAPACITY), new ThreadPoolExecutor.CallerRunsPolicy());
+        pipelineFutures.clear();
+        pipelineFilePaths.clear();
+
+        return new MissingFileListener() {
+            public void missingFile(final String filePath, byte[] head, final int headLength, final long fileLength,
+                    final long lastModified) {
+                final byte[] headCopy = (head != null) ? Arrays.copyOf(head, headLength) : null;
+                Future<EditOutcome> future = pipelineExecutor.submit(new Callable<EditOutcome>() {
+                    public EditOutcome call() {
+                        return editMissingFile(filePath, headCopy, fileLength, lastModified);
+                    }
+                });
+                synchronized (pipelineFutures) {
+                    pipelineFutures.add(future);
+                    pipelineFilePaths.add(filePath);
+                }
+            }
+        };
+    }
+
+    /**
+     * Waits for the files queued since startPipeline() and returns their outcomes in the order they were found.
+     */
+    public List<EditOutcome> finishPipeline() {
+        List<EditOutcome> outcomes = new ArrayList<>();
+        if (pipelineExecutor == null)
+            return outcomes;
+
+        try {
+            synchronized (pipelineFutures) {
+                for (int i = 0; i < pipelineFutures.size(); i++) {
+                    try {
+                        outcomes.add(pipelineFutures.get(i).get());
+                    }
+                    catch (ExecutionException e) {
+                        outcomes.add(new EditOutcome(pipelineFilePaths.get(i), EditOutcome.FAILED, String.valueOf(e.getCause())));
+                    }
+                }
+                pipelineFutures.clear();
+                pipelineFilePaths.clear();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            pipelineExecutor.shutdownNow();
+            pipelineExecutor = null;
+        }
+        return outcomes;
+    }
+
+    private EditOutcome editMissingFile(String path) {
+        return editMissingFile(path, null, -1, 0);
+    }
+
+    /**
+     * head, if not null, holds the first bytes of the file as read while checking, when it was fileLength bytes long
+     * and last modified at lastModified.
+     */
+    private EditOutcome editMissingFile(String path, byte[] head, long fileLength, long lastModified) {
+        long startNanos = System.nanoTime();
+        EditOutcome outcome = insertCopyright(path, head, fileLength, lastModified);
+        metrics.recordPhase(RunMetrics.PHASE_EDIT_FILE, startNanos);
+        metrics.addEditOutcome(outcome);
+        return outcome;
+    }
+
+    private EditOutcome insertCopyright(String path, byte[] head, long fileLength, long lastModified) {
+        if (CopyrightChecker.isArchiveEntryPath(path))
+            return new EditOutcome(path, EditOutcome.SKIPPED, "inside an archive");
+        File file = new File(path);
+        FileTypes.FileType fileType = FILE_TYPES.getFileType(file.getName());
+        if (fileType == null)
+            return new EditOutcome(path, EditOutcome.SKIPPED, "unknown file type");
+
+        try {
+            if ((head != null) && ((file.length() != fileLength) || (file.lastModified() != lastModified))) {
+                // changed since it was checked, the head read then may be stale
+                Logger.writeLog(logLevel, "File changed since it was checked, reading it again: " + path);
+                head = null;
+            }
+            if (head != null)
+                addCopyright2MissingFiles(fileType, path, head, fileLength);
+            else
+                addCopyright2MissingFiles(fileType, path);
+            return new EditOutcome(path, EditOutcome.EDITED, null);
+        }
+        catch (Exception e) {
+            Logger.writeException(logLevel, e.getMessage() + ": " + e.getCause());
+            e.printStackTrace();
+            return new EditOutcome(path, EditOutcome.FAILED, String.valueOf(e.getCause()));
+        }
+    }
+
+    private void addCopyright2MissingFiles(FileTypes.FileType fileType, String filePath)
+            throws Exception {
+
+        ByteBuffer fileContent = null;
+        FileInputStream fis = null;
+        FileOutputStream fos = null;
+        try {
+            Logger.writeLog(logLevel, "Begin to insert copyright block to file: " + filePath);
+
+            File file = new File(filePath);
+            byte[] copyrightBlock = fileType.getCopyrightBlock(curYear).getBytes();
+
+            long fileLength = file.length();
+            if (fileLength <= bufferPool.getBufferSize()) {
+                fileContent = bufferPool.acquire();
+                if (fileLength > 0) {
+                    fis = new FileInputStream(file);
+                    FileChannel inChannel = fis.getChannel();
+                    while (fileContent.hasRemaining() && (inChannel.read(fileContent) >= 0)) {
+                        // keep reading until the buffer is full or the end of file
+                    }
+                    if (fileContent.position() != fileLength) {
+                        throw new IOException("Failed reading file: " + filePath + ", " +
+                                fileLength + " bytes expected, but " + fileContent.position() + " bytes read.");
+                    }
+
+                    fis.close();
+                    fis = null;
+                }
+                fileContent.flip();
+
+                int position = 0;
+                if (fileType.keepsFirstLine()) {
+                    byte[] head = new byte[Math.min(HEADER_WINDOW_BYTES, fileContent.remaining())];
+                    fileContent.duplicate().get(head);
+                    position = getInsertPosition(fileType, filePath, head, head.length);
+                }
+                ByteBuffer firstLine = fileContent.duplicate();
+                firstLine.limit(position);
+                fileContent.position(position);
+
+                fos = new FileOutputStream(file);
+                writeFully(fos.getChannel(), new ByteBuffer[] { firstLine, ByteBuffer.wrap(copyrightBlock), fileContent });
+                fos.close();
+                fos = null;
+            }
+            else if (fileType.keepsFirstLine()) {
+                byte[] head = new byte[HEADER_WINDOW_BYTES];
+                int position = getInsertPosition(fileType, filePath, head, readHead(file, head));
+                replaceHeadOfFile_Streaming(insertAt(head, position, position, copyrightBlock), position, file);
+            }
+            else {
+                insertHeadToFile_Streaming(copyrightBlock, null, file);
+            }
+
+            Logger.writeLog(logLevel, "End inserting copyright block in file: " + filePath);
+        }
+        catch (Exception e) {
+            throw new Exception("Exception in edition : [filePath=" + filePath + "]", e);
+        }
+        finally {
+            if (fileContent != null) bufferPool.release(fileContent);
+            if (fis != null) fis.close();
+            if (fos != null) fos.close();
+        }
+    }
+
+    /**
+     * Inserts the copyright block in front of a file whose first bytes were already read by the checker,
+     * so that only the rest of the file is read. The file must not have changed since.
+     */
+    private void addCopyright2MissingFiles(FileTypes.FileType fileType, String filePath, byte[] fileHead, long fileLength)
+            throws Exception {
+
+        FileOutputStream fos = null;
+        try {
+            Logger.writeLog(logLevel, "Begin to insert copyright block to file: " + filePath);
+
+            File file = new File(filePath);
+            byte[] copyrightBlock = fileType.getCopyrightBlock(curYear).getBytes();
+            int position = getInsertPosition(fileType, filePath, fileHead, fileHead.length);
+            if (fileHead.length == fileLength) {
+                fos = new FileOutputStream(file);
+                writeFully(fos.getChannel(), new ByteBuffer[] { ByteBuffer.wrap(fileHead, 0, position),
+                        ByteBuffer.wrap(copyrightBlock), ByteBuffer.wrap(fileHead, position, fileHead.length - position) });
+                fos.close();
+                fos = null;
+            }
+            else if (position > 0) {
+                replaceHeadOfFile_Streaming(insertAt(fileHead, fileHead.length, position, copyrightBlock),
+                        fileHead.length, file);
+            }
+            else {
+                insertHeadToFile_Streaming(copyrightBlock, fileHead, file);
+            }
+
+            Logger.writeLog(logLevel, "End inserting copyright block in file: " + filePath);
+        }
+        catch (Exception e) {
+            throw new Exception("Exception in edition : [filePath=" + filePath + "]", e);
+        }
+        finally {
+            if (fos != null) fos.close();
+        }
+    }
+
+    /**
+     * Returns where the copyright block goes into a file starting with head, after a first line which has to stay first.
+     */
+    private static int getInsertPosition(FileTypes.FileType fileType, String filePath, byte[] head, int length)
+            throws IOException {
+        int position = fileType.getInsertPosition(head, length);
+        if (position < 0) {
+            throw new IOException("The first line of file " + filePath + ", which has to stay first, does not end within " +
+                    length + " bytes.");
+        }
+        return position;
+    }
+
+    /**
+     * Returns the first length bytes of head with block inserted at position.
+     */
+    private static byte[] insertAt(byte[] head, int length, int position, byte[] block) {
+        byte[] bytes = new byte[length + block.length];
+        System.arraycopy(head, 0, bytes, 0, position);
+        System.arraycopy(block, 0, bytes, position, block.length);
+        System.arraycopy(head, position, bytes, position + block.length, length - position);
+        return bytes;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+    }
+
+    /**
+     * Writes head followed by the content of file into a temporary file in the same directory,
+     * then renames it over file. Memory use does not depend on the file size, and file is
+     * either left untouched or replaced as a whole.
+     * If fileHead is not null, it holds the first bytes of file, which are not read again.
+     */
+    private static void insertHeadToFile_Streaming(byte[] head, byte[] fileHead, File file)
+            throws IOException {
+        writeHeadToFile_Streaming(head, fileHead, 0, file);
+    }
+
+    /**
+     * The same as insertHeadToFile_Streaming(), but head replaces the first replacedLength bytes of file.
+     */
+    private static void replaceHeadOfFile_Streaming(byte[] head, long replacedLength, File file)
+            throws IOException {
+        writeHeadToFile_Streaming(head, null, replacedLength, file);
+    }
+
+    private static void writeHeadToFile_Streaming(byte[] head, byte[] fileHead, long skippedLength, File file)
+            throws IOException {
+
+        File tempFile = File.createTempFile(file.getName() + ".", TEMP_FILE_SUFFIX, file.getAbsoluteFile().getParentFile());
+        boolean replaced = false;
+        FileInputStream fis = null;
+        FileOutputStream fos = null;
+        try {
+            fis = new FileInputStream(file);
+            fos = new FileOutputStream(tempFile);
+            FileChannel inChannel = fis.getChannel();
+            FileChannel outChannel = fos.getChannel();
+
+            ByteBuffer[] headBuffers = new ByteBuffer[] {
+                    ByteBuffer.wrap(head), ByteBuffer.wrap((fileHead != null) ? fileHead : new byte[0]) };
+            while (headBuffers[0].hasRemaining() || headBuffers[1].hasRemaining()) {
+                outChannel.write(headBuffers);
+            }
+
+            long fileLength = inChannel.size();
+            long position = (fileHead != null) ? fileHead.length : skippedLength;
+            while (position < fileLength) {
+                position += inChannel.transferTo(position, fileLength - position, outChannel);
+            }
+            outChannel.force(true);
+
+            fis.close();
+            fis = null;
+            fos.close();
+            fos = null;
+
+            copyPermissions(file, tempFile);
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            replaced = true;
+        } finally {
+            if (fis != null) fis.close();
+            if (fos != null) fos.close();
+            if ( ! replaced) tempFile.delete();
+        }
+    }
+
+    private static void copyPermissions(File from, File to) throws IOException {
+        try {
+            Files.setPosixFilePermissions(to.toPath(), Files.getPosixFilePermissions(from.toPath()));
+        }
+        catch (UnsupportedOperationException ignoreException) {
+            // not a POSIX file system
+        }
+    }
+}
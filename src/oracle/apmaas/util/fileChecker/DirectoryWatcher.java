@@ -0,0 +1,262 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the results of checked directory trees up to date: every directory is watched, and once the file system
+ * has been quiet for the debounce interval, only the files created, modified or deleted since are checked again.
+ * The results are kept in memory, so the result sinks are rewritten without walking the trees; they are written
+ * tree by tree, in the order the trees were checked, and sorted by path within a tree, so that they do not
+ * depend on the order in which the changes came in.
+ */
+public class DirectoryWatcher {
+
+	public final static long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	private final CopyrightChecker checker;
+	private final String pathChecked;
+	private final List<String> rootPaths;
+	private final FileFilter fileFilter;
+
+	// results of the files without valid copyright, by canonical path
+	private final Map<String, Integer> results = new HashMap<>();
+	private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+	// canonical paths of watchedDirs; a directory link which loops back into the tree resolves to one of them
+	private final Set<Path> watchedPaths = new HashSet<>();
+	private WatchService watchService;
+	private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+
+	/**
+	 * The checker must have checked the directories of rootPaths already, as pathChecked; its results are
+	 * the initial state.
+	 */
+	public DirectoryWatcher(CopyrightChecker checker, String pathChecked, List<String> rootPaths) {
+		this.checker = checker;
+		this.pathChecked = pathChecked;
+		this.rootPaths = rootPaths;
+		this.fileFilter = checker.getFileFilter();
+
+		for (String filePath : checker.getWrongFormatFilePaths()) {
+			results.put(filePath, CopyrightChecker.COPYRIGHT_Wrong_Format);
+		}
+		for (String filePath : checker.getMissingFilePaths()) {
+			results.put(filePath, CopyrightChecker.COPYRIGHT_Not_Present);
+		}
+	}
+
+	public long getDebounceMillis() {
+		return debounceMillis;
+	}
+
+	public void setDebounceMillis(long debounceMillis) {
+		this.debounceMillis = Math.max(0, debounceMillis);
+	}
+
+	/**
+	 * Watches the trees until the thread is interrupted.
+	 */
+	public void watch() throws IOException, InterruptedException {
+		List<File> roots = new ArrayList<>();
+		for (String rootPath : rootPaths) {
+			File root = new File(rootPath).getCanonicalFile();
+			if ( ! root.isDirectory())
+				throw new IOException("Watch mode needs a directory: " + rootPath);
+			roots.add(root);
+		}
+
+		watchService = FileSystems.getDefault().newWatchService();
+		try {
+			for (File root : roots) {
+				registerTree(root);
+				Logger.writeInfo("Watching " + root.getPath() + " for changes ......");
+			}
+
+			while (true) {
+				WatchKey key = watchService.take();
+				Set<Path> changedPaths = new LinkedHashSet<>();
+				boolean overflow = false;
+				// debounce: keep collecting until no event arrived for debounceMillis
+				do {
+					overflow |= collectEvents(key, changedPaths);
+					key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+				} while (key != null);
+
+				boolean changed;
+				if (overflow) {
+					Logger.writeInfo("Too many changes, checking " + pathChecked + " again.");
+					results.clear();
+					changed = true;
+					Set<String> checkedDirs = new HashSet<>();
+					for (File root : roots) {
+						checkTree(root, checkedDirs);
+					}
+				}
+				else {
+					changed = recheck(changedPaths);
+				}
+				if (changed)
+					checker.rewriteResults(pathChecked, getOrderedResults(roots));
+			}
+		}
+		finally {
+			watchService.close();
+			watchService = null;
+		}
+	}
+
+	/**
+	 * Returns the results of the trees in the order of roots, each sorted by path; a file below several roots
+	 * belongs to the first.
+	 */
+	private Map<String, Integer> getOrderedResults(List<File> roots) {
+		List<PathList> rootFilePaths = new ArrayList<>();
+		List<String> rootPrefixes = new ArrayList<>();
+		for (File root : roots) {
+			rootFilePaths.add(new PathList());
+			rootPrefixes.add(root.getPath().endsWith(File.separator) ? root.getPath() : root.getPath() + File.separator);
+		}
+		for (String filePath : results.keySet()) {
+			int index = 0;
+			while ((index < rootPrefixes.size() - 1) && ! filePath.startsWith(rootPrefixes.get(index)))
+				index++;
+			rootFilePaths.get(index).add(filePath);
+		}
+
+		Map<String, Integer> orderedResults = new LinkedHashMap<>();
+		for (PathList filePaths : rootFilePaths) {
+			for (String filePath : filePaths.sorted()) {
+				orderedResults.put(filePath, results.get(filePath));
+			}
+		}
+		return orderedResults;
+	}
+
+	private boolean collectEvents(WatchKey key, Set<Path> changedPaths) {
+		boolean overflow = false;
+		Path dir = watchedDirs.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+				overflow = true;
+			else if (dir != null)
+				changedPaths.add(dir.resolve((Path) event.context()));
+		}
+		if ( ! key.reset())
+			watchedPaths.remove(watchedDirs.remove(key));
+		return overflow;
+	}
+
+	/**
+	 * Returns whether any result changed.
+	 */
+	private boolean recheck(Set<Path> changedPaths) throws IOException {
+		boolean changed = false;
+		for (Path path : changedPaths) {
+			File file = path.toFile();
+			if (file.isDirectory()) {
+				// a directory created or moved into the tree
+				if (fileFilter.accept(file) && ! watchedPaths.contains(file.getCanonicalFile().toPath())) {
+					registerTree(file);
+					changed |= checkTree(file, new HashSet<String>());
+				}
+			}
+			else if (file.isFile()) {
+				if (fileFilter.accept(file))
+					changed |= checkFile(file);
+			}
+			else {
+				changed |= removeResults(path.toString());
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks the files below dir, entering every directory once: checkedDirs collects their canonical paths, so
+	 * a directory link which loops back to a directory containing it is skipped.
+	 */
+	private boolean checkTree(File dir, Set<String> checkedDirs) throws IOException {
+		boolean changed = false;
+		if ( ! checkedDirs.add(dir.getCanonicalPath()))
+			return changed;
+		File[] files = dir.listFiles(fileFilter);
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory())
+					changed |= checkTree(file, checkedDirs);
+				else
+					changed |= checkFile(file);
+			}
+		}
+		return changed;
+	}
+
+	private boolean checkFile(File file) throws IOException {
+		String filePath = file.getCanonicalPath();
+		int caseNum = checker.recheckFile(file);
+		Integer oldCaseNum = results.get(filePath);
+		if (caseNum == CopyrightChecker.COPYRIGHT_OK) {
+			if (oldCaseNum == null)
+				return false;
+			results.remove(filePath);
+			Logger.writeInfo("Copyright fixed: " + filePath);
+		}
+		else {
+			if ((oldCaseNum != null) && (oldCaseNum == caseNum))
+				return false;
+			results.put(filePath, caseNum);
+			String caseDesp = CopyrightChecker.describeCase(caseNum);
+			Logger.writeInfo(((caseDesp != null) ? caseDesp : "Copyright check failed") + ": " + filePath);
+		}
+		return true;
+	}
+
+	/**
+	 * Drops the results of a deleted file, or of every file below a deleted directory.
+	 */
+	private boolean removeResults(String deletedPath) {
+		boolean changed = false;
+		String dirPrefix = deletedPath + File.separator;
+		Iterator<String> iterator = results.keySet().iterator();
+		while (iterator.hasNext()) {
+			String filePath = iterator.next();
+			if (filePath.equals(deletedPath) || filePath.startsWith(dirPrefix)) {
+				iterator.remove();
+				Logger.writeInfo("Deleted: " + filePath);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Watches dir and the directories below it by their canonical paths, skipping the ones watched already,
+	 * such as the target of a directory link back to a directory containing it.
+	 */
+	private void registerTree(File dir) throws IOException {
+		Path path = dir.getCanonicalFile().toPath();
+		if ( ! watchedPaths.add(path)) {
+			Logger.writeLog("Skipping " + dir.getPath() + ", " + path + " is watched already.");
+			return;
+		}
+		WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watchedDirs.put(key, path);
+
+		File[] files = path.toFile().listFiles(fileFilter);
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory())
+					registerTree(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+/**
+ * What happened to one file handed to CopyrightEditor.
+ */
+public class EditOutcome {
+
+    public static final int EDITED = 0;
+    public static final int SKIPPED = 1;
+    public static final int FAILED = 2;
+
+    private final String filePath;
+    private final int status;
+    private final String message;
+
+    public EditOutcome(String filePath, int status, String message) {
+        this.filePath = filePath;
+        this.status = status;
+        this.message = message;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns why the file was skipped or could not be edited, or null if it was edited.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        String statusName = (status == EDITED) ? "edited" : (status == SKIPPED) ? "skipped" : "failed";
+        return (message == null) ? filePath + ": " + statusName : filePath + ": " + statusName + ", " + message;
+    }
+}
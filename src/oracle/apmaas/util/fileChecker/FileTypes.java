@@ -0,0 +1,253 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The registry of the types of files to check, each with the comment syntax of its copyright block.
+ * A file is of the type registered for its name, ignoring case, or else for its extension, the part of
+ * its name from the last dot; files of no type are not checked. Both are looked up in constant time,
+ * so one walk checks the files of every type.
+ * <p>
+ * The type of a file decides whether it is checked, the HeaderRules it is checked with, and how
+ * CopyrightEditor inserts a missing block. The block of a type with line comments must be commented out
+ * with its prefix; that of a type with block comments, or of the apm-wldf files checked by default, may be
+ * on any line, as inside the comment.
+ */
+public class FileTypes {
+
+	public final static String ALL_TYPES = "all";
+
+	private final static String APM_WLDF_INTERNAL_FILE_NAME = "apm-wldf-INTERNAL-RELEASE.properties";
+	private final static String APM_WLDF_FUTURE_FILE_NAME = "apm-wldf-FUTURE.properties";
+
+	private final static String[] NONE = new String[0];
+
+	public final static FileType JAVA = new FileType("java", new String[] { Main.FILE_EXT_NAME_Java }, NONE,
+			"/*", " *", " */", null);
+	// only these two properties files are checked by default, with the rules they were always checked with,
+	// which take the block on any line, e.g. commented out with "!"
+	public final static FileType WLDF_PROPERTIES = new FileType("wldf", NONE,
+			new String[] { APM_WLDF_INTERNAL_FILE_NAME, APM_WLDF_FUTURE_FILE_NAME }, null, "#", null, null,
+			HeaderRules.getDefaultRules());
+	public final static FileType PROPERTIES = new FileType("properties", new String[] { Main.FILE_EXT_NAME_PROPERTIES }, NONE,
+			null, "#", null, null);
+	public final static FileType XML = new FileType("xml", new String[] { ".xml", ".xsd", ".xsl" }, NONE,
+			"<!--", "", "-->", "<?xml");
+	public final static FileType SQL = new FileType("sql", new String[] { ".sql" }, NONE,
+			null, "--", null, null);
+	public final static FileType SHELL = new FileType("sh", new String[] { ".sh" }, NONE,
+			null, "#", null, "#!");
+	public final static FileType JAVASCRIPT = new FileType("js", new String[] { ".js" }, NONE,
+			"/*", " *", " */", null);
+
+	private final static List<FileType> BUILT_IN_TYPES = Collections.unmodifiableList(Arrays.asList(
+			JAVA, WLDF_PROPERTIES, PROPERTIES, XML, SQL, SHELL, JAVASCRIPT));
+
+	private final static FileTypes DEFAULT_TYPES = new FileTypes(Arrays.asList(JAVA, WLDF_PROPERTIES));
+	private final static FileTypes ALL_BUILT_IN_TYPES = new FileTypes(BUILT_IN_TYPES);
+
+	private final List<FileType> types;
+	// the file names in lower case
+	private final Map<String, FileType> typesByFileName = new HashMap<>();
+	private final Map<String, FileType> typesByExtension = new HashMap<>();
+	// the lengths of the file names, so that most names are not lower cased to be looked up
+	private final BitSet fileNameLengths = new BitSet();
+	private final String name;
+	private final String fingerprint;
+
+	/**
+	 * The types are looked up in order: a file name or extension belongs to the first type registering it.
+	 */
+	public FileTypes(List<FileType> types) {
+		this.types = Collections.unmodifiableList(new ArrayList<>(types));
+		StringBuilder sb = new StringBuilder();
+		CRC32 crc = new CRC32();
+		for (FileType type : this.types) {
+			crc.update((type.name + "\n" + type.headerRules.getFingerprint() + "\n").getBytes());
+			for (String fileName : type.fileNames) {
+				String key = fileName.toLowerCase(Locale.ROOT);
+				if ( ! typesByFileName.containsKey(key))
+					typesByFileName.put(key, type);
+				fileNameLengths.set(key.length());
+			}
+			for (String extension : type.extensions) {
+				if ( ! typesByExtension.containsKey(extension))
+					typesByExtension.put(extension, type);
+			}
+			sb.append((sb.length() == 0) ? "" : ",").append(type.name);
+		}
+		name = sb.toString();
+		fingerprint = Long.toHexString(crc.getValue());
+	}
+
+	/**
+	 * Returns the types checked unless others are chosen: Java files and the apm-wldf properties files.
+	 */
+	public static FileTypes getDefaultTypes() {
+		return DEFAULT_TYPES;
+	}
+
+	public static FileTypes getAllTypes() {
+		return ALL_BUILT_IN_TYPES;
+	}
+
+	public static List<FileType> getBuiltInTypes() {
+		return BUILT_IN_TYPES;
+	}
+
+	/**
+	 * Returns the built-in types named in a comma separated list, e.g. "java,xml,sql", or all of them
+	 * for "all"; null if a name is unknown.
+	 */
+	public static FileTypes forNames(String names) {
+		if (ALL_TYPES.equalsIgnoreCase(names.trim()))
+			return ALL_BUILT_IN_TYPES;
+
+		List<FileType> types = new ArrayList<>();
+		for (String typeName : names.split(",")) {
+			FileType type = null;
+			for (FileType builtInType : BUILT_IN_TYPES) {
+				if (builtInType.name.equalsIgnoreCase(typeName.trim()))
+					type = builtInType;
+			}
+			if (type == null)
+				return null;
+			if ( ! types.contains(type))
+				types.add(type);
+		}
+		return new FileTypes(types);
+	}
+
+	public List<FileType> getTypes() {
+		return types;
+	}
+
+	/**
+	 * Returns the names of the types separated by commas, e.g. "java,wldf".
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns a short digest of the types and of their rules, which changes whenever a type or its rules change.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the type of a file by its name, without its directory, or null if it is not checked.
+	 */
+	public FileType getFileType(String fileName) {
+		if (fileNameLengths.get(fileName.length())) {
+			FileType type = typesByFileName.get(fileName.toLowerCase(Locale.ROOT));
+			if (type != null)
+				return type;
+		}
+
+		int dot = fileName.lastIndexOf('.');
+		return (dot < 0) ? null : typesByExtension.get(fileName.substring(dot));
+	}
+
+	/**
+	 * A type of file: the names and extensions it is detected by, and the comment syntax of its copyright block.
+	 */
+	public static class FileType {
+		private final String name;
+		// the extensions with their dot, matched case-sensitively
+		private final String[] extensions;
+		private final String[] fileNames;
+		// the block is the line commentStart, the lines of the copyright box after linePrefix, then the line
+		// commentEnd; commentStart and commentEnd are null for line comments
+		private final String commentStart;
+		private final String linePrefix;
+		private final String commentEnd;
+		// a first line starting with this, e.g. "#!" or "<?xml", has to stay the first line; null if there is none
+		private final String firstLineMarker;
+		private final HeaderRules headerRules;
+
+		/**
+		 * The files of a type with line comments are checked with rules taking only lines commented out with
+		 * linePrefix, those of a type with block comments with the default rules.
+		 */
+		public FileType(String name, String[] extensions, String[] fileNames,
+				String commentStart, String linePrefix, String commentEnd, String firstLineMarker) {
+			this(name, extensions, fileNames, commentStart, linePrefix, commentEnd, firstLineMarker,
+					(commentStart == null) ? HeaderRules.forLineComments(linePrefix) : HeaderRules.getDefaultRules());
+		}
+
+		public FileType(String name, String[] extensions, String[] fileNames, String commentStart,
+				String linePrefix, String commentEnd, String firstLineMarker, HeaderRules headerRules) {
+			this.name = name;
+			this.extensions = extensions.clone();
+			this.fileNames = fileNames.clone();
+			this.commentStart = commentStart;
+			this.linePrefix = linePrefix;
+			this.commentEnd = commentEnd;
+			this.firstLineMarker = firstLineMarker;
+			this.headerRules = headerRules;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the rules the files of this type are checked with.
+		 */
+		public HeaderRules getHeaderRules() {
+			return headerRules;
+		}
+
+		/**
+		 * Returns the copyright block to insert into a file of this type, ending with a line break.
+		 */
+		public String getCopyrightBlock(int year) {
+			return ((commentStart != null) ? commentStart + "\n" : "") +
+					linePrefix + "  +===========================================================================+\n" +
+					linePrefix + "  |      Copyright (c) " + year + " Oracle Corporation, Redwood Shores, CA, USA       |\n" +
+					linePrefix + "  |                         All rights reserved.                              |\n" +
+					linePrefix + "  +===========================================================================+\n" +
+					((commentEnd != null) ? commentEnd + "\n" : "");
+		}
+
+		public boolean keepsFirstLine() {
+			return firstLineMarker != null;
+		}
+
+		/**
+		 * Returns where the copyright block is inserted into a file whose first bytes are head: after the
+		 * first line if it has to stay first, 0 otherwise, and -1 if that line does not end within head.
+		 */
+		public int getInsertPosition(byte[] head, int length) {
+			if (firstLineMarker == null)
+				return 0;
+
+			int lineStart = CopyrightChecker.skipUtf8Bom(head, length);
+			if ((length - lineStart < firstLineMarker.length()) ||
+					! new String(head, lineStart, firstLineMarker.length(), Charset.forName("ISO-8859-1")).equals(firstLineMarker))
+				return 0;
+
+			int lineEnd = CopyrightChecker.findLineEnd(head, lineStart, length);
+			if (lineEnd >= length)
+				return -1;
+			return CopyrightChecker.nextLineStart(head, lineEnd, length);
+		}
+	}
+}
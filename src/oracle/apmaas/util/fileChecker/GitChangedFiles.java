@@ -0,0 +1,273 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Lists the files added or modified since a revision, and the year each file was last modified in,
+ * using only the local git repository.
+ */
+public class GitChangedFiles {
+
+	private final static String GIT_COMMAND = "git";
+
+	// starts each commit in the output of git log, followed by its author time in seconds
+	private final static char COMMIT_MARKER = '\u0001';
+
+	/**
+	 * Returns the changed files under dir accepted by the filter, sorted by path,
+	 * including untracked files which are not ignored. Returns null if dir is not in a git work tree
+	 * or git fails, so that the caller can fall back to a full scan.
+	 */
+	public static List<File> listChangedFiles(File dir, String revision, FileFilter filter) {
+		try {
+			File canonicalDir = dir.getCanonicalFile();
+			String topLevel = runGit(canonicalDir, "rev-parse", "--show-toplevel");
+			if (topLevel == null)
+				return null;
+			File topLevelDir = new File(topLevel.trim()).getCanonicalFile();
+
+			// both commands print paths relative to the top level directory, separated by NUL
+			String changed = runGit(canonicalDir, "diff", "--name-only", "-z", "--diff-filter=ACMR", revision, "--", ".");
+			if (changed == null)
+				return null;
+			String untracked = runGit(canonicalDir, "ls-files", "--others", "--exclude-standard", "--full-name", "-z", "--", ".");
+			if (untracked == null)
+				return null;
+
+			TreeSet<String> relativePaths = new TreeSet<>();
+			addPaths(relativePaths, changed);
+			addPaths(relativePaths, untracked);
+
+			List<File> files = new ArrayList<>();
+			for (String relativePath : relativePaths) {
+				File file = new File(topLevelDir, relativePath);
+				if (file.isFile() && isAccepted(file, canonicalDir, filter))
+					files.add(file);
+			}
+			return files;
+		}
+		catch (IOException e) {
+			Logger.writeException(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the year of the last commit changing each file under dir accepted by the filter, by author date,
+	 * sorted by path. The history is read in one pass as git prints it, newest commit first, so the first year
+	 * seen for a path is the one kept. Files which no longer exist or were never committed are left out.
+	 * Returns null if dir is not in a git work tree or git fails.
+	 */
+	public static Map<String, Integer> listLastModifiedYears(File dir, FileFilter filter) {
+		try {
+			File canonicalDir = dir.getCanonicalFile();
+			String topLevel = runGit(canonicalDir, "rev-parse", "--show-toplevel");
+			if (topLevel == null)
+				return null;
+			File topLevelDir = new File(topLevel.trim()).getCanonicalFile();
+
+			// prints for each commit the marker and author time, then the paths it changed relative to
+			// the top level directory, all separated by NUL
+			GitProcess process = startGit(canonicalDir, "log", "--format=" + COMMIT_MARKER + "%at", "--name-only", "-z",
+					"--no-renames", "--", ".");
+			if (process == null)
+				return null;
+
+			Map<String, Integer> years = new HashMap<>();
+			Calendar calendar = Calendar.getInstance();
+			int year = -1;
+			Reader reader = new BufferedReader(new InputStreamReader(process.process.getInputStream(), "UTF-8"));
+			try {
+				StringBuilder token = new StringBuilder();
+				int c;
+				while ((c = reader.read()) >= 0) {
+					if (c != '\0') {
+						// the paths of a commit start on the line after its author time
+						if ((c != '\n') || (token.length() > 0))
+							token.append((char) c);
+						continue;
+					}
+
+					if ((token.length() > 0) && (token.charAt(0) == COMMIT_MARKER)) {
+						calendar.setTimeInMillis(Long.parseLong(token.substring(1).trim()) * 1000);
+						year = calendar.get(Calendar.YEAR);
+					}
+					else if ((token.length() > 0) && (year > 0)) {
+						String relativePath = token.toString();
+						if ( ! years.containsKey(relativePath))
+							years.put(relativePath, year);
+					}
+					token.setLength(0);
+				}
+			}
+			catch (NumberFormatException e) {
+				Logger.writeException("Unexpected output of git log: " + e.getMessage());
+				process.process.destroy();
+				return null;
+			}
+			finally {
+				reader.close();
+			}
+			if ( ! waitForGit(process, "log"))
+				return null;
+
+			Map<String, Integer> fileYears = new TreeMap<>();
+			for (Map.Entry<String, Integer> entry : years.entrySet()) {
+				File file = new File(topLevelDir, entry.getKey());
+				if (file.isFile() && isAccepted(file, canonicalDir, filter))
+					fileYears.put(file.getPath(), entry.getValue());
+			}
+			return fileYears;
+		}
+		catch (IOException e) {
+			Logger.writeException(e.getMessage());
+			return null;
+		}
+	}
+
+	// the file and every directory between it and the checked directory must pass the filter
+	private static boolean isAccepted(File file, File dir, FileFilter filter) {
+		for (File cur = file; (cur != null) && ! cur.equals(dir); cur = cur.getParentFile()) {
+			if ( ! filter.accept(cur))
+				return false;
+		}
+		return true;
+	}
+
+	private static void addPaths(TreeSet<String> paths, String output) {
+		for (String path : output.split("\0")) {
+			if ( ! path.isEmpty())
+				paths.add(path);
+		}
+	}
+
+	/**
+	 * Runs a git command in dir and returns its output, or null if it does not exit successfully.
+	 */
+	private static String runGit(File dir, String... args) throws IOException {
+		GitProcess process = startGit(dir, args);
+		if (process == null)
+			return null;
+
+		StringBuilder output = new StringBuilder();
+		Reader reader = new InputStreamReader(process.process.getInputStream(), "UTF-8");
+		try {
+			char[] buffer = new char[8192];
+			int cCharsRead;
+			while ((cCharsRead = reader.read(buffer)) >= 0) {
+				output.append(buffer, 0, cCharsRead);
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		if ( ! waitForGit(process, args[0]))
+			return null;
+		return output.toString();
+	}
+
+	/**
+	 * Starts a git command in dir, its error output being read apart from its output; returns null if git
+	 * cannot be run.
+	 */
+	private static GitProcess startGit(File dir, String... args) {
+		List<String> command = new ArrayList<>();
+		command.add(GIT_COMMAND);
+		for (String arg : args) {
+			command.add(arg);
+		}
+
+		ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.directory(dir);
+		try {
+			return new GitProcess(processBuilder.start());
+		}
+		catch (IOException e) {
+			Logger.writeException("Failed running git: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Waits until the output of process has been read and it exits; returns whether it succeeded.
+	 */
+	private static boolean waitForGit(GitProcess process, String subCommand) {
+		try {
+			int exitValue = process.process.waitFor();
+			process.errorReader.join();
+			if (exitValue != 0) {
+				Logger.writeLog("git " + subCommand + " failed: " + process.getErrorOutput().trim());
+				return false;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * A running git command; its error output is read by a thread of its own, so that git does not block
+	 * on a full pipe and the messages do not mix with the output being parsed.
+	 */
+	private static class GitProcess {
+
+		private final Process process;
+		private final StringBuilder errorOutput = new StringBuilder();
+		private final Thread errorReader;
+
+		GitProcess(Process process) {
+			this.process = process;
+			errorReader = new Thread("git errors") {
+				@Override
+				public void run() {
+					readErrorOutput();
+				}
+			};
+			errorReader.setDaemon(true);
+			errorReader.start();
+		}
+
+		private void readErrorOutput() {
+			try {
+				Reader reader = new InputStreamReader(process.getErrorStream(), "UTF-8");
+				try {
+					char[] buffer = new char[1024];
+					int cCharsRead;
+					while ((cCharsRead = reader.read(buffer)) >= 0) {
+						synchronized (errorOutput) {
+							errorOutput.append(buffer, 0, cCharsRead);
+						}
+					}
+				}
+				finally {
+					reader.close();
+				}
+			}
+			catch (IOException e) {
+				// the process ended; whatever was read is kept
+			}
+		}
+
+		String getErrorOutput() {
+			synchronized (errorOutput) {
+				return errorOutput.toString();
+			}
+		}
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * The compiled rules recognizing the copyright block, shared by all checkers.
+ * A keyword prefilter runs first, so the regular expression only sees candidate lines.
+ * <p>
+ * The default rules find the block on any line, as inside a block comment. The rules of a file type with line
+ * comments, e.g. "#" or "--", only take lines starting with that prefix, after white space: the block must be
+ * commented out, and copyright text outside of comments is no header.
+ * <p>
+ * The byte[] variants match the patterns by hand on undecoded lines, without allocating. As the patterns
+ * only contain ASCII, they give the same results as decoding the bytes with an ASCII compatible charset first.
+ */
+public class HeaderRules {
+
+	private final static String COPYRIGHT_FIRST_LINE_PATTERN =
+			"\\s*Copyright\\s*\\(c\\)\\s*([0-9]{4}|([0-9]{4})\\s*\\-\\s*([0-9]{4}))\\s*Oracle\\s*Corporation,\\s*Redwood\\s*Shores,\\s*CA,\\s*USA";
+	private final static String COPYRIGHT_SECOND_LINE_PATTERN =
+			"\\s*(a|A)ll\\s*(r|R)ights\\s*(r|R)eserved\\s*";
+
+	// Used to judge the wrong format of the first line
+	// if not match, but has these at least $threshold$ of these keywords, we take this as wrong format line.
+	// Every line matching the first line pattern contains all of them, so lines below the threshold
+	// can skip the pattern.
+	private final static int COPYRIGHT_START_LINE_KEYWORD_NUM_Threshold = 2;
+	private final static String COPYRIGHT_START_LINE_KEYWORD_1 = "copyright";
+	private final static String COPYRIGHT_START_LINE_KEYWORD_2 = "oracle";
+	private final static String COPYRIGHT_START_LINE_KEYWORD_3 = "corporation";
+	private final static String COPYRIGHT_START_LINE_KEYWORD_4 = "redwood";
+	private final static String COPYRIGHT_START_LINE_KEYWORD_5 = "shores";
+
+	// the literals of COPYRIGHT_FIRST_LINE_PATTERN, for matching bytes
+	private final static byte[] FIRST_LINE_KEYWORD = ascii("Copyright");
+	private final static byte[] FIRST_LINE_C = ascii("(c)");
+	private final static byte[][] FIRST_LINE_TAIL = {
+			ascii("Oracle"), ascii("Corporation,"), ascii("Redwood"), ascii("Shores,"), ascii("CA,"), ascii("USA") };
+	// the literals of COPYRIGHT_SECOND_LINE_PATTERN after their first letter, which may be upper case
+	private final static byte[] SECOND_LINE_ALL = ascii("ll");
+	private final static byte[] SECOND_LINE_RIGHTS = ascii("ights");
+	private final static byte[] SECOND_LINE_RESERVED = ascii("eserved");
+
+	// the fields of the years found by findYears()
+	public final static int YEARS_FROM_YEAR = 0;
+	public final static int YEARS_FROM_YEAR_POS = 1;
+	public final static int YEARS_TO_YEAR = 2;
+	public final static int YEARS_TO_YEAR_POS = 3;
+	private final static int YEARS_FIELD_NUM = 4;
+
+	private final static HeaderRules DEFAULT_RULES = new HeaderRules(null);
+
+	// the comment prefix each line of the block starts with; null if the block may be on any line
+	private final String linePrefix;
+	private final byte[] linePrefixBytes;
+	private final Pattern firstLinePattern;
+	private final Pattern secondLinePattern;
+	private final KeywordMatcher startLineKeywordMatcher;
+	private final int startLineKeywordThreshold;
+	private final String fingerprint;
+
+	private HeaderRules(String linePrefix) {
+		this.linePrefix = linePrefix;
+		linePrefixBytes = (linePrefix != null) ? ascii(linePrefix) : null;
+		// the prefix, then anything up to the pattern, e.g. the frame of the box
+		String prefixPattern = (linePrefix != null) ? "^\\s*" + Pattern.quote(linePrefix) + ".*?" : "";
+		firstLinePattern = Pattern.compile(prefixPattern + COPYRIGHT_FIRST_LINE_PATTERN);
+		secondLinePattern = Pattern.compile(prefixPattern + COPYRIGHT_SECOND_LINE_PATTERN);
+		startLineKeywordMatcher = new KeywordMatcher(new String[] {
+				COPYRIGHT_START_LINE_KEYWORD_1,
+				COPYRIGHT_START_LINE_KEYWORD_2,
+				COPYRIGHT_START_LINE_KEYWORD_3,
+				COPYRIGHT_START_LINE_KEYWORD_4,
+				COPYRIGHT_START_LINE_KEYWORD_5});
+		startLineKeywordThreshold = COPYRIGHT_START_LINE_KEYWORD_NUM_Threshold;
+
+		CRC32 crc = new CRC32();
+		crc.update((COPYRIGHT_FIRST_LINE_PATTERN + "\n" + COPYRIGHT_SECOND_LINE_PATTERN + "\n" +
+				COPYRIGHT_START_LINE_KEYWORD_1 + "," + COPYRIGHT_START_LINE_KEYWORD_2 + "," +
+				COPYRIGHT_START_LINE_KEYWORD_3 + "," + COPYRIGHT_START_LINE_KEYWORD_4 + "," +
+				COPYRIGHT_START_LINE_KEYWORD_5 + "\n" + startLineKeywordThreshold +
+				((linePrefix != null) ? "\n" + linePrefix : "")).getBytes());
+		fingerprint = Long.toHexString(crc.getValue());
+	}
+
+	public static HeaderRules getDefaultRules() {
+		return DEFAULT_RULES;
+	}
+
+	/**
+	 * Returns rules only taking lines commented out with linePrefix, which must be ASCII.
+	 */
+	public static HeaderRules forLineComments(String linePrefix) {
+		return new HeaderRules(linePrefix);
+	}
+
+	/**
+	 * Returns the comment prefix of the lines of the block, or null if the block may be on any line.
+	 */
+	public String getLinePrefix() {
+		return linePrefix;
+	}
+
+	/**
+	 * Returns a short digest of the rules, which changes whenever a pattern, keyword or threshold changes.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public int checkStartLine(String line) {
+		if (startLineKeywordMatcher.countMatches(line, startLineKeywordThreshold) < startLineKeywordThreshold)
+			return CopyrightChecker.COPYRIGHT_Not_Present;
+		if ( ! isCommentLine(line))
+			return CopyrightChecker.COPYRIGHT_Not_Present;
+
+		int caseNum = CopyrightChecker.COPYRIGHT_Wrong_Format;
+
+		Matcher matcher = firstLinePattern.matcher(line);
+		if (matcher.find()) {
+			// Found the start line of copyright block
+			caseNum = CopyrightChecker.COPYRIGHT_OK;
+
+			// special case: Copyright (c) 2014-2013 Oracle Corporation, Redwood Shores, CA, USA
+			if ((matcher.group(2) != null) && (matcher.group(3) != null)) {
+				int fromYear = Integer.parseInt(matcher.group(2));
+				int toYear = Integer.parseInt(matcher.group(3));
+				if ((fromYear >= toYear) || (toYear > Main.getCurYear())) {
+					caseNum = CopyrightChecker.COPYRIGHT_Wrong_Format;
+				}
+			}
+		}
+
+		return caseNum;
+	}
+
+	public int checkFollowingLine(String line) {
+		int caseNum = CopyrightChecker.COPYRIGHT_Wrong_Format;
+		if ( ! isCommentLine(line))
+			return caseNum;
+
+		if (secondLinePattern.matcher(line).find()) {
+			caseNum = CopyrightChecker.COPYRIGHT_OK;
+		}
+
+		return caseNum;
+	}
+
+	/**
+	 * The same as checkStartLine(String) for the line held by bytes from start to end, without its terminator.
+	 */
+	public int checkStartLine(byte[] bytes, int start, int end) {
+		if (startLineKeywordMatcher.countMatches(bytes, start, end, startLineKeywordThreshold) < startLineKeywordThreshold)
+			return CopyrightChecker.COPYRIGHT_Not_Present;
+		start = skipLinePrefix(bytes, start, end);
+		if (start < 0)
+			return CopyrightChecker.COPYRIGHT_Not_Present;
+
+		int[] years = findYears(bytes, start, end);
+		if (years == null)
+			return CopyrightChecker.COPYRIGHT_Wrong_Format;
+
+		// special case: Copyright (c) 2014-2013 Oracle Corporation, Redwood Shores, CA, USA
+		int fromYear = years[YEARS_FROM_YEAR];
+		int toYear = years[YEARS_TO_YEAR];
+		if ((toYear >= 0) && ((fromYear >= toYear) || (toYear > Main.getCurYear())))
+			return CopyrightChecker.COPYRIGHT_Wrong_Format;
+		return CopyrightChecker.COPYRIGHT_OK;
+	}
+
+	/**
+	 * Returns the years of the line held by bytes from start to end if it matches the first line pattern,
+	 * null otherwise: the year and its position, then the year after "-" and its position, both -1 without a range.
+	 * The fields are indexed by the YEARS_* constants; the years are not checked.
+	 */
+	public int[] findYears(byte[] bytes, int start, int end) {
+		// like Matcher.find(), the first occurrence of "Copyright" followed by the rest of the pattern counts
+		for (int i = indexOf(bytes, start, end, FIRST_LINE_KEYWORD); i >= 0;
+				i = indexOf(bytes, i + 1, end, FIRST_LINE_KEYWORD)) {
+			int[] years = matchFirstLine(bytes, i + FIRST_LINE_KEYWORD.length, end);
+			if (years != null)
+				return years;
+		}
+
+		return null;
+	}
+
+	/**
+	 * The same as checkFollowingLine(String) for the line held by bytes from start to end, without its terminator.
+	 */
+	public int checkFollowingLine(byte[] bytes, int start, int end) {
+		start = skipLinePrefix(bytes, start, end);
+		if (start < 0)
+			return CopyrightChecker.COPYRIGHT_Wrong_Format;
+
+		for (int i = start; i < end; i++) {
+			if ((bytes[i] != 'a') && (bytes[i] != 'A'))
+				continue;
+			int pos = matchLiteral(bytes, i + 1, end, SECOND_LINE_ALL);
+			if (pos < 0)
+				continue;
+			pos = skipWhitespace(bytes, pos, end);
+			if ((pos >= end) || ((bytes[pos] != 'r') && (bytes[pos] != 'R')))
+				continue;
+			pos = matchLiteral(bytes, pos + 1, end, SECOND_LINE_RIGHTS);
+			if (pos < 0)
+				continue;
+			pos = skipWhitespace(bytes, pos, end);
+			if ((pos >= end) || ((bytes[pos] != 'r') && (bytes[pos] != 'R')))
+				continue;
+			if (matchLiteral(bytes, pos + 1, end, SECOND_LINE_RESERVED) >= 0)
+				return CopyrightChecker.COPYRIGHT_OK;
+		}
+
+		return CopyrightChecker.COPYRIGHT_Wrong_Format;
+	}
+
+	/**
+	 * Returns whether every ASCII character is encoded as its own single byte, and no other character
+	 * is encoded with bytes below 0x80, so that the byte[] variants may be used instead of decoding.
+	 */
+	public static boolean isAsciiCompatible(Charset charset) {
+		String name = charset.name();
+		return name.equals("US-ASCII") || name.equals("UTF-8") ||
+				name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+	}
+
+	private boolean isCommentLine(String line) {
+		if (linePrefix == null)
+			return true;
+		int pos = 0;
+		while ((pos < line.length()) && ((line.charAt(pos) == ' ') || ((line.charAt(pos) >= '\t') && (line.charAt(pos) <= '\r'))))
+			pos++;
+		return line.startsWith(linePrefix, pos);
+	}
+
+	/**
+	 * Returns the position after the white space and comment prefix starting the line, start without a prefix
+	 * to match, or -1 if the line is not commented out.
+	 */
+	private int skipLinePrefix(byte[] bytes, int start, int end) {
+		if (linePrefixBytes == null)
+			return start;
+		return matchLiteral(bytes, skipWhitespace(bytes, start, end), end, linePrefixBytes);
+	}
+
+	/**
+	 * Matches the pattern after "Copyright": returns null, or the years as returned by findYears().
+	 */
+	private static int[] matchFirstLine(byte[] bytes, int pos, int end) {
+		pos = matchLiteral(bytes, skipWhitespace(bytes, pos, end), end, FIRST_LINE_C);
+		if (pos < 0)
+			return null;
+		int[] years = new int[YEARS_FIELD_NUM];
+		pos = skipWhitespace(bytes, pos, end);
+		years[YEARS_FROM_YEAR] = parseYear(bytes, pos, end);
+		years[YEARS_FROM_YEAR_POS] = pos;
+		if (years[YEARS_FROM_YEAR] < 0)
+			return null;
+		pos = skipWhitespace(bytes, pos + 4, end);
+
+		years[YEARS_TO_YEAR] = -1;
+		years[YEARS_TO_YEAR_POS] = -1;
+		if ((pos < end) && (bytes[pos] == '-')) {
+			pos = skipWhitespace(bytes, pos + 1, end);
+			years[YEARS_TO_YEAR] = parseYear(bytes, pos, end);
+			years[YEARS_TO_YEAR_POS] = pos;
+			if (years[YEARS_TO_YEAR] < 0)
+				return null;
+			pos = skipWhitespace(bytes, pos + 4, end);
+		}
+
+		for (int i = 0; i < FIRST_LINE_TAIL.length; i++) {
+			if (i > 0)
+				pos = skipWhitespace(bytes, pos, end);
+			pos = matchLiteral(bytes, pos, end, FIRST_LINE_TAIL[i]);
+			if (pos < 0)
+				return null;
+		}
+
+		return years;
+	}
+
+	private static int parseYear(byte[] bytes, int pos, int end) {
+		if (pos + 4 > end)
+			return -1;
+		int year = 0;
+		for (int i = pos; i < pos + 4; i++) {
+			if ((bytes[i] < '0') || (bytes[i] > '9'))
+				return -1;
+			year = year * 10 + (bytes[i] - '0');
+		}
+		return year;
+	}
+
+	/**
+	 * Returns the position after literal if it is found at pos, -1 otherwise.
+	 */
+	private static int matchLiteral(byte[] bytes, int pos, int end, byte[] literal) {
+		if (pos + literal.length > end)
+			return -1;
+		for (int i = 0; i < literal.length; i++) {
+			if (bytes[pos + i] != literal[i])
+				return -1;
+		}
+		return pos + literal.length;
+	}
+
+	private static int indexOf(byte[] bytes, int start, int end, byte[] literal) {
+		for (int i = start; i + literal.length <= end; i++) {
+			if ((bytes[i] == literal[0]) && (matchLiteral(bytes, i, end, literal) >= 0))
+				return i;
+		}
+		return -1;
+	}
+
+	// the characters of \s in a regular expression
+	private static int skipWhitespace(byte[] bytes, int pos, int end) {
+		while ((pos < end) && ((bytes[pos] == ' ') || ((bytes[pos] >= '\t') && (bytes[pos] <= '\r'))))
+			pos++;
+		return pos;
+	}
+
+	private static byte[] ascii(String literal) {
+		byte[] bytes = new byte[literal.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) literal.charAt(i);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,382 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * .gitignore style rules deciding which files and directories below a root directory are not checked.
+ * The rules are compiled into a trie of path segments, so a path is matched in one pass over its segments;
+ * as with git, the last matching rule wins, and nothing below an ignored directory is visited again.
+ * <p>
+ * Supported: "#" comments, "!" to include again, a trailing "/" for directories only, a "/" at the start
+ * or in the middle to anchor a rule at the root, "*", "?" and "[...]" within a segment, and "**" for any
+ * number of segments.
+ */
+public class IgnoreRules {
+
+	private final static String ANY_SEGMENTS = "**";
+
+	private final String canonicalRoot;
+	private final String absoluteRoot;
+	private final Node root = new Node(null);
+	// negated.get(i) tells whether rule i includes files again
+	private final List<Boolean> negated = new ArrayList<>();
+	// the lines added, for handing the same rules to another process
+	private final List<String> lines = new ArrayList<>();
+	// the states after the directory of the path matched last by each thread, as the paths of a directory
+	// are matched one after another
+	private final ThreadLocal<DirStates> lastDirStates = new ThreadLocal<>();
+
+	public IgnoreRules(File rootDir) throws IOException {
+		canonicalRoot = rootDir.getCanonicalPath();
+		absoluteRoot = rootDir.getAbsolutePath();
+	}
+
+	public boolean isEmpty() {
+		return negated.isEmpty();
+	}
+
+	/**
+	 * Adds one rule, written like a line of a .gitignore file; blank lines and comments are skipped.
+	 */
+	public void addRule(String rule) {
+		lines.add(rule);
+		String pattern = trimTrailingSpaces(rule);
+		if (pattern.isEmpty() || pattern.startsWith("#"))
+			return;
+
+		boolean negate = false;
+		if (pattern.startsWith("!")) {
+			negate = true;
+			pattern = pattern.substring(1);
+		}
+		else if (pattern.startsWith("\\#") || pattern.startsWith("\\!")) {
+			pattern = pattern.substring(1);
+		}
+
+		boolean dirOnly = false;
+		if (pattern.endsWith("/")) {
+			dirOnly = true;
+			pattern = pattern.substring(0, pattern.length() - 1);
+		}
+		boolean anchored = pattern.contains("/");
+		if (pattern.startsWith("/"))
+			pattern = pattern.substring(1);
+		if (pattern.isEmpty())
+			return;
+
+		List<String> segments = new ArrayList<>();
+		if ( ! anchored)
+			segments.add(ANY_SEGMENTS);
+		for (String segment : pattern.split("/")) {
+			// "a//b" is the same as "a/b"; "**/**" is the same as "**"
+			if (segment.isEmpty() || (segment.equals(ANY_SEGMENTS) && ! segments.isEmpty() &&
+					segments.get(segments.size() - 1).equals(ANY_SEGMENTS)))
+				continue;
+			segments.add(segment);
+		}
+		// a trailing "**" matches everything inside, but not the directory itself
+		if (segments.get(segments.size() - 1).equals(ANY_SEGMENTS))
+			segments.add(segments.size() - 1, "*");
+
+		Node node = root;
+		for (String segment : segments) {
+			node = node.getOrAddChild(segment);
+		}
+		int ruleIndex = negated.size();
+		negated.add(negate);
+		node.dirRule = ruleIndex;
+		if ( ! dirOnly)
+			node.fileRule = ruleIndex;
+	}
+
+	/**
+	 * Returns every line added so far, in order; adding them to rules of the same root gives the same rules.
+	 */
+	public List<String> getLines() {
+		return Collections.unmodifiableList(lines);
+	}
+
+	/**
+	 * Returns a checksum of the root and the lines added, which differs whenever other files would be ignored.
+	 */
+	public String getFingerprint() {
+		CRC32 crc = new CRC32();
+		crc.update((canonicalRoot + "\n").getBytes());
+		for (String line : lines)
+			crc.update((line + "\n").getBytes());
+		return Long.toHexString(crc.getValue());
+	}
+
+	/**
+	 * Adds the rules of a file written like a .gitignore file.
+	 */
+	public void addRules(File ignoreFile) throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(ignoreFile));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				addRule(line);
+			}
+		}
+		finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * Returns whether the rules ignore the file, which is not ignored if it is not below the root directory.
+	 */
+	public boolean isIgnored(File file, boolean isDirectory) {
+		String path = file.getAbsolutePath();
+		String relativePath = getRelativePath(path, canonicalRoot);
+		if (relativePath == null)
+			relativePath = getRelativePath(path, absoluteRoot);
+		if ((relativePath == null) || relativePath.isEmpty())
+			return false;
+		return isIgnored(relativePath, isDirectory);
+	}
+
+	/**
+	 * Returns whether the rules ignore the path relative to the root directory.
+	 */
+	public boolean isIgnored(String relativePath, boolean isDirectory) {
+		int nameStart = relativePath.lastIndexOf(File.separatorChar) + 1;
+		DirStates dirStates = getDirStates(relativePath, nameStart);
+		StateSet states = dirStates.nameStates;
+		states.clear();
+		if (dirStates.states.size > 0)
+			step(dirStates.states, relativePath.substring(nameStart), states);
+
+		int lastRule = -1;
+		for (int i = 0; i < states.size; i++) {
+			Node node = states.nodes[i];
+			lastRule = Math.max(lastRule, isDirectory ? node.dirRule : node.fileRule);
+		}
+		return (lastRule >= 0) && ! negated.get(lastRule);
+	}
+
+	/**
+	 * Returns the states of this thread after the directory segments of relativePath, those before nameStart;
+	 * they are only matched again when the directory differs from that of the path matched before.
+	 */
+	private DirStates getDirStates(String relativePath, int nameStart) {
+		DirStates dirStates = lastDirStates.get();
+		if (dirStates == null) {
+			dirStates = new DirStates();
+			lastDirStates.set(dirStates);
+		}
+		else if ((dirStates.ruleCount == negated.size()) && (dirStates.dirPath.length() == nameStart) &&
+				relativePath.startsWith(dirStates.dirPath))
+			return dirStates;
+
+		StateSet states = dirStates.states;
+		StateSet nextStates = dirStates.nameStates;
+		states.clear();
+		states.add(root);
+		addAnySegmentsChildren(states);
+		int start = 0;
+		while ((start < nameStart) && (states.size > 0)) {
+			int end = relativePath.indexOf(File.separatorChar, start);
+			nextStates.clear();
+			step(states, relativePath.substring(start, end), nextStates);
+			StateSet swap = states;
+			states = nextStates;
+			nextStates = swap;
+			start = end + 1;
+		}
+		dirStates.states = states;
+		dirStates.nameStates = nextStates;
+		dirStates.dirPath = relativePath.substring(0, nameStart);
+		dirStates.ruleCount = negated.size();
+		return dirStates;
+	}
+
+	private static void step(StateSet states, String segment, StateSet nextStates) {
+		for (int i = 0; i < states.size; i++) {
+			states.nodes[i].addMatchingChildren(segment, nextStates);
+		}
+		addAnySegmentsChildren(nextStates);
+	}
+
+	/**
+	 * A "**" node matches no segment too, so it is active wherever its parent is.
+	 */
+	private static void addAnySegmentsChildren(StateSet states) {
+		for (int i = 0; i < states.size; i++) {
+			Node anySegmentsChild = states.nodes[i].anySegmentsChild;
+			if (anySegmentsChild != null)
+				states.add(anySegmentsChild);
+		}
+	}
+
+	private static String getRelativePath(String path, String rootPath) {
+		if (path.equals(rootPath))
+			return "";
+		String prefix = rootPath.endsWith(File.separator) ? rootPath : rootPath + File.separator;
+		return path.startsWith(prefix) ? path.substring(prefix.length()) : null;
+	}
+
+	private static String trimTrailingSpaces(String rule) {
+		int end = rule.length();
+		while ((end > 0) && (rule.charAt(end - 1) == ' ') && ! ((end > 1) && (rule.charAt(end - 2) == '\\')))
+			end--;
+		return rule.substring(0, end);
+	}
+
+	private static boolean isGlob(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			char ch = segment.charAt(i);
+			if ((ch == '*') || (ch == '?') || (ch == '[') || (ch == '\\'))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Matches a segment against a glob with "*", "?", "[...]", "[!...]" and "\" escapes.
+	 */
+	static boolean matchGlob(String glob, int g, String text, int t) {
+		while (g < glob.length()) {
+			char ch = glob.charAt(g);
+			if (ch == '*') {
+				while ((g < glob.length()) && (glob.charAt(g) == '*'))
+					g++;
+				if (g == glob.length())
+					return true;
+				for (int i = t; i <= text.length(); i++) {
+					if (matchGlob(glob, g, text, i))
+						return true;
+				}
+				return false;
+			}
+			if (t >= text.length())
+				return false;
+			if (ch == '?') {
+				g++;
+			}
+			else if ((ch == '[') && (glob.indexOf(']', g + 2) > 0)) {
+				int close = glob.indexOf(']', g + 2);
+				boolean negate = (glob.charAt(g + 1) == '!') || (glob.charAt(g + 1) == '^');
+				int i = negate ? g + 2 : g + 1;
+				boolean found = false;
+				for (; i < close; i++) {
+					if ((i + 2 < close) && (glob.charAt(i + 1) == '-')) {
+						found |= (text.charAt(t) >= glob.charAt(i)) && (text.charAt(t) <= glob.charAt(i + 2));
+						i += 2;
+					}
+					else {
+						found |= (text.charAt(t) == glob.charAt(i));
+					}
+				}
+				if (found == negate)
+					return false;
+				g = close + 1;
+			}
+			else {
+				if ((ch == '\\') && (g + 1 < glob.length()))
+					ch = glob.charAt(++g);
+				if (ch != text.charAt(t))
+					return false;
+				g++;
+			}
+			t++;
+		}
+		return t == text.length();
+	}
+
+	private static class Node {
+		// null for the root, the segment pattern otherwise
+		final String segment;
+		final boolean anySegments;
+		final Map<String, Node> literalChildren = new HashMap<>();
+		final List<Node> globChildren = new ArrayList<>();
+		Node anySegmentsChild;
+
+		// the last rule ending here, for files and for directories; -1 if none
+		int fileRule = -1;
+		int dirRule = -1;
+
+		Node(String segment) {
+			this.segment = segment;
+			this.anySegments = ANY_SEGMENTS.equals(segment);
+		}
+
+		Node getOrAddChild(String childSegment) {
+			if (ANY_SEGMENTS.equals(childSegment)) {
+				if (anySegmentsChild == null)
+					anySegmentsChild = new Node(childSegment);
+				return anySegmentsChild;
+			}
+			if (isGlob(childSegment)) {
+				for (Node child : globChildren) {
+					if (child.segment.equals(childSegment))
+						return child;
+				}
+				Node child = new Node(childSegment);
+				globChildren.add(child);
+				return child;
+			}
+			Node child = literalChildren.get(childSegment);
+			if (child == null) {
+				child = new Node(childSegment);
+				literalChildren.put(childSegment, child);
+			}
+			return child;
+		}
+
+		void addMatchingChildren(String pathSegment, StateSet states) {
+			// "**" goes on matching any segment
+			if (anySegments)
+				states.add(this);
+			Node literalChild = literalChildren.get(pathSegment);
+			if (literalChild != null)
+				states.add(literalChild);
+			for (int i = 0; i < globChildren.size(); i++) {
+				Node child = globChildren.get(i);
+				if (matchGlob(child.segment, 0, pathSegment, 0))
+					states.add(child);
+			}
+		}
+	}
+
+	/**
+	 * The nodes a path has reached so far, each once; there are only a few, so they are kept in an array
+	 * which is reused from path to path.
+	 */
+	private static class StateSet {
+		Node[] nodes = new Node[8];
+		int size = 0;
+
+		void clear() {
+			size = 0;
+		}
+
+		void add(Node node) {
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == node)
+					return;
+			}
+			if (size == nodes.length)
+				nodes = Arrays.copyOf(nodes, size * 2);
+			nodes[size++] = node;
+		}
+	}
+
+	private static class DirStates {
+		// the relative path of the directory, ending with a separator unless it is the root
+		String dirPath;
+		// the number of rules when the states were matched, since adding a rule adds nodes
+		int ruleCount;
+		StateSet states = new StateSet();
+		// the states after the name of a path, or after the next directory segment while matching a directory
+		StateSet nameStates = new StateSet();
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+/**
+ * Minimal helpers for writing JSON by hand.
+ */
+public class Json {
+
+	/**
+	 * Returns the string as a quoted JSON string literal.
+	 */
+	public static String quote(String value) {
+		if (value == null)
+			return "null";
+
+		StringBuilder sb = new StringBuilder(value.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			switch (ch) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (ch < 0x20) {
+						sb.append(String.format("\\u%04x", (int) ch));
+					}
+					else {
+						sb.append(ch);
+					}
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+}
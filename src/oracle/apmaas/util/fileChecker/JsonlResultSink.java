@@ -0,0 +1,47 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+
+/**
+ * Writes one JSON object per finding to crCheckResult.jsonl, e.g.
+ * {"path":"/src/A.java","case":1,"result":"missing","message":"Copyright does not present"}
+ */
+public class JsonlResultSink implements ResultSink {
+
+	private final static String RESULT_FILE_NAME = "crCheckResult.jsonl";
+
+	private BufferedWriter bw;
+
+	public synchronized void open(String pathChecked) throws IOException {
+		bw = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(generateResultFileName()), "UTF-8"));
+	}
+
+	public synchronized void addResult(int caseNum, String filePath) throws IOException {
+		bw.write("{\"path\":" + Json.quote(filePath) + ",\"case\":" + caseNum +
+				",\"result\":" + Json.quote(getResultName(caseNum)) +
+				",\"message\":" + Json.quote(CopyrightChecker.describeCase(caseNum)) + "}");
+		bw.newLine();
+	}
+
+	public synchronized void close() throws IOException {
+		if (bw != null) {
+			bw.close();
+			bw = null;
+		}
+	}
+
+	static String getResultName(int caseNum) {
+		return (caseNum == CopyrightChecker.COPYRIGHT_Wrong_Format) ? "wrong-format" : "missing";
+	}
+
+	private static String generateResultFileName() {
+		return "." + File.separatorChar + RESULT_FILE_NAME;
+	}
+}
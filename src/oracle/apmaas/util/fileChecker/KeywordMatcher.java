@@ -0,0 +1,150 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton counting how many distinct keywords occur in a line, in a single pass.
+ * Keywords must be lower case ASCII letters. The line is matched case-insensitively
+ * with whitespace removed, the same as lowercasing it and joining its StringTokenizer tokens.
+ */
+public class KeywordMatcher {
+
+	private final static int ALPHABET_SIZE = 26;
+	private final static int MAX_KEYWORD_NUM = 32;
+
+	// transitions[state][letter] is the next state; any other character goes back to state 0
+	private final int[][] transitions;
+	// bit i is set if keyword i ends in this state
+	private final int[] outputs;
+
+	public KeywordMatcher(String[] keywords) {
+		if (keywords.length > MAX_KEYWORD_NUM)
+			throw new IllegalArgumentException("At most " + MAX_KEYWORD_NUM + " keywords are supported.");
+
+		int maxStates = 1;
+		for (String keyword : keywords) {
+			maxStates += keyword.length();
+		}
+		int[][] gotos = new int[maxStates][ALPHABET_SIZE];
+		int[] outs = new int[maxStates];
+		int stateCount = 1;
+
+		// build the keyword trie; -1 means no transition yet
+		for (int[] row : gotos) {
+			java.util.Arrays.fill(row, -1);
+		}
+		for (int i = 0; i < keywords.length; i++) {
+			int state = 0;
+			for (int j = 0; j < keywords[i].length(); j++) {
+				int letter = letterIndex(keywords[i].charAt(j));
+				if (letter < 0)
+					throw new IllegalArgumentException("Keyword is not lower case ASCII: " + keywords[i]);
+				if (gotos[state][letter] < 0)
+					gotos[state][letter] = stateCount++;
+				state = gotos[state][letter];
+			}
+			outs[state] |= 1 << i;
+		}
+
+		// turn the trie into a DFA by following the failure links breadth first
+		int[] fail = new int[stateCount];
+		Queue<Integer> queue = new ArrayDeque<>();
+		for (int letter = 0; letter < ALPHABET_SIZE; letter++) {
+			if (gotos[0][letter] < 0) {
+				gotos[0][letter] = 0;
+			}
+			else {
+				fail[gotos[0][letter]] = 0;
+				queue.add(gotos[0][letter]);
+			}
+		}
+		while ( ! queue.isEmpty()) {
+			int state = queue.remove();
+			outs[state] |= outs[fail[state]];
+			for (int letter = 0; letter < ALPHABET_SIZE; letter++) {
+				int next = gotos[state][letter];
+				if (next < 0) {
+					gotos[state][letter] = gotos[fail[state]][letter];
+				}
+				else {
+					fail[next] = gotos[fail[state]][letter];
+					queue.add(next);
+				}
+			}
+		}
+
+		transitions = new int[stateCount][];
+		System.arraycopy(gotos, 0, transitions, 0, stateCount);
+		outputs = new int[stateCount];
+		System.arraycopy(outs, 0, outputs, 0, stateCount);
+	}
+
+	/**
+	 * Returns the number of distinct keywords found in the line, counting no further than limit.
+	 */
+	public int countMatches(CharSequence line, int limit) {
+		int found = 0;
+		int count = 0;
+		int state = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char ch = line.charAt(i);
+			if (isWhitespace(ch))
+				continue;
+			int letter = letterIndex(toLowerCase(ch));
+			state = (letter < 0) ? 0 : transitions[state][letter];
+			int newFound = outputs[state] & ~found;
+			if (newFound != 0) {
+				found |= newFound;
+				count = Integer.bitCount(found);
+				if (count >= limit)
+					break;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The same as countMatches(CharSequence, int) for the ASCII bytes from start to end;
+	 * any other byte is a character which is neither whitespace nor a letter.
+	 */
+	public int countMatches(byte[] bytes, int start, int end, int limit) {
+		int found = 0;
+		int count = 0;
+		int state = 0;
+		for (int i = start; i < end; i++) {
+			int ch = bytes[i];
+			if (isWhitespace(ch))
+				continue;
+			int letter = letterIndex(toLowerCase(ch));
+			state = (letter < 0) ? 0 : transitions[state][letter];
+			int newFound = outputs[state] & ~found;
+			if (newFound != 0) {
+				found |= newFound;
+				count = Integer.bitCount(found);
+				if (count >= limit)
+					break;
+			}
+		}
+		return count;
+	}
+
+	// the default delimiters of StringTokenizer
+	static boolean isWhitespace(int ch) {
+		return (ch == ' ') || (ch == '\t') || (ch == '\n') || (ch == '\r') || (ch == '\f');
+	}
+
+	static int toLowerCase(int ch) {
+		return ((ch >= 'A') && (ch <= 'Z')) ? (ch + ('a' - 'A')) : ch;
+	}
+
+	private static int letterIndex(int ch) {
+		return ((ch >= 'a') && (ch <= 'z')) ? (ch - 'a') : -1;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency histogram with power-of-two buckets in nanoseconds.
+ * Bucket i counts the samples from 2^(i-1) up to 2^i - 1 nanoseconds.
+ */
+public class LatencyHistogram {
+
+	private final static int BUCKET_NUM = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_NUM);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		// the number of significant bits; 0 for 0, at most 63 for a non negative long
+		buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get())) {
+			if (maxNanos.compareAndSet(max, nanos))
+				break;
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Returns the upper bound of the bucket holding the given percentile (0 to 100), in nanoseconds.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long total = count.get();
+		if (total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_NUM; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank)
+				return Math.min((i == 0) ? 0 : (1L << i) - 1, maxNanos.get());
+		}
+		return maxNanos.get();
+	}
+
+	public String toJson() {
+		long total = count.get();
+		return "{\"count\":" + total +
+				",\"totalMillis\":" + String.format(Locale.ROOT, "%.3f", totalNanos.get() / 1e6) +
+				",\"meanMicros\":" + String.format(Locale.ROOT, "%.3f", (total == 0) ? 0.0 : totalNanos.get() / 1e3 / total) +
+				",\"p50Micros\":" + String.format(Locale.ROOT, "%.3f", getPercentileNanos(50) / 1e3) +
+				",\"p90Micros\":" + String.format(Locale.ROOT, "%.3f", getPercentileNanos(90) / 1e3) +
+				",\"p99Micros\":" + String.format(Locale.ROOT, "%.3f", getPercentileNanos(99) / 1e3) +
+				",\"maxMicros\":" + String.format(Locale.ROOT, "%.3f", maxNanos.get() / 1e3) + "}";
+	}
+}
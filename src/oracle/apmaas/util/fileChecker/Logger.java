@@ -1,72 +1,217 @@
-/*
- *  +===========================================================================+
- *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
- *  |                         All rights reserved.                              |
- *  +===========================================================================+
- */
-
-package oracle.apmaas.util.fileChecker;
-
-import java.io.*;
-
-public class Logger {
-
-	public static final int LOG_LEVEL_Silent = 0;
-	public static final int LOG_LEVEL_Exception = 1;
-	public static final int LOG_LEVEL_Info = 2;
-	public static final int LOG_LEVEL_Log = 3;
-
-	private final static String EXCEPTION_FILE_NAME_Prefix = "crException_";
-
-	public static int logLevel = LOG_LEVEL_Log; // how much output
-
-	public static void writeLog(String log) {
-		if (logLevel >= LOG_LEVEL_Log)
-			System.out.println("[LOG] " + log);
-	}
-
-	public static void writeInfo(String info) {
-		if (logLevel >= LOG_LEVEL_Info)
-			System.out.println(info);
-	}
-
-	public static void writeException(String exDesp) {
-		if (logLevel >= LOG_LEVEL_Exception)
-			System.out.println("[EXCEPTION] " + exDesp);
-
-		// write exception to a file
-		writeException2File(exDesp);
-	}
-
-	public static void writeException2File(String exDesp) {
-		String exceptionFileName = "." + File.separatorChar + EXCEPTION_FILE_NAME_Prefix + ".txt";
-		File exceptionFile = null;
-		FileWriter fw = null;
-		try {
-			exceptionFile  = new File(exceptionFileName);
-			if ( ! exceptionFile.exists()) {
-				exceptionFile.createNewFile();
-				fw = new FileWriter(exceptionFile.getCanonicalFile());
-				fw.write("Exceptions in File Checking and File Edition : " + "\n");
-				fw.write(exDesp + "\n");
-			} else {
-				fw = new FileWriter(exceptionFile.getCanonicalFile(), true);
-				fw.write(exDesp + "\n");
-			}
-
-		} catch (java.io.IOException e) {
-			e.printStackTrace();
-		}
-		finally {
-			if (fw != null) {
-				try {
-					fw.close();
-				}
-				catch (Exception ignoreException) {
-					// e.printStackTrace();
-				}
-			}
-		}
-	}
-
-}
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes log entries from a background thread, so that checking never waits for console or file output.
+ * Entries go through a bounded queue and are written in batches; when the queue is full, [LOG] entries
+ * are dropped and counted, while notifications and exceptions wait for room.
+ * The exception file stays open between batches.
+ * <p>
+ * logLevel is the default for the command line; checkers and editors embedded in another program
+ * pass their own level, so that checks running at the same time do not share it.
+ */
+public class Logger {
+
+	public static final int LOG_LEVEL_Silent = 0;
+	public static final int LOG_LEVEL_Exception = 1;
+	public static final int LOG_LEVEL_Info = 2;
+	public static final int LOG_LEVEL_Log = 3;
+
+	private final static String EXCEPTION_FILE_NAME_Prefix = "crException_";
+
+	private final static int QUEUE_CAPACITY = 8192;
+	private final static int MAX_BATCH_SIZE = 1024;
+
+	public static volatile int logLevel = LOG_LEVEL_Log; // how much output
+
+	private final static BlockingQueue<LogEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final static AtomicLong droppedLogCount = new AtomicLong();
+	private final static AtomicLong totalDroppedLogCount = new AtomicLong();
+	private static Thread writerThread = null;
+
+	// only used by the writer thread
+	private static BufferedWriter exceptionWriter = null;
+
+	public static void writeLog(String log) {
+		writeLog(logLevel, log);
+	}
+
+	public static void writeLog(int logLevel, String log) {
+		if (logLevel >= LOG_LEVEL_Log) {
+			if ( ! enqueue(new LogEntry("[LOG] " + log, null, null), false)) {
+				droppedLogCount.incrementAndGet();
+				totalDroppedLogCount.incrementAndGet();
+			}
+		}
+	}
+
+	public static void writeInfo(String info) {
+		writeInfo(logLevel, info);
+	}
+
+	public static void writeInfo(int logLevel, String info) {
+		if (logLevel >= LOG_LEVEL_Info)
+			enqueue(new LogEntry(info, null, null), true);
+	}
+
+	public static void writeException(String exDesp) {
+		writeException(logLevel, exDesp);
+	}
+
+	public static void writeException(int logLevel, String exDesp) {
+		// write exception to the console if asked, and always to a file
+		String consoleText = (logLevel >= LOG_LEVEL_Exception) ? "[EXCEPTION] " + exDesp : null;
+		enqueue(new LogEntry(consoleText, exDesp, null), true);
+	}
+
+	public static void writeException2File(String exDesp) {
+		enqueue(new LogEntry(null, exDesp, null), true);
+	}
+
+	/**
+	 * Returns how many [LOG] entries have been dropped because the queue was full.
+	 */
+	public static long getDroppedLogCount() {
+		return totalDroppedLogCount.get();
+	}
+
+	/**
+	 * Waits until every entry logged so far has been written.
+	 */
+	public static void flush() {
+		CountDownLatch written = new CountDownLatch(1);
+		enqueue(new LogEntry(null, null, written), true);
+		try {
+			written.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static boolean enqueue(LogEntry entry, boolean wait) {
+		startWriterThread();
+		if ( ! wait)
+			return queue.offer(entry);
+
+		try {
+			queue.put(entry);
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static synchronized void startWriterThread() {
+		if (writerThread != null)
+			return;
+
+		writerThread = new Thread("Logger") {
+			@Override
+			public void run() {
+				List<LogEntry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+				while (true) {
+					try {
+						batch.add(queue.take());
+					}
+					catch (InterruptedException ignoreException) {
+						continue;
+					}
+					queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+					writeBatch(batch);
+					batch.clear();
+				}
+			}
+		};
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread("Logger shutdown") {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+	}
+
+	private static void writeBatch(List<LogEntry> batch) {
+		String lineSeparator = System.lineSeparator();
+		StringBuilder console = new StringBuilder();
+
+		long droppedCount = droppedLogCount.getAndSet(0);
+		if (droppedCount > 0)
+			console.append("[LOG] ").append(droppedCount).append(" log entries dropped").append(lineSeparator);
+
+		for (LogEntry entry : batch) {
+			if (entry.consoleText != null)
+				console.append(entry.consoleText).append(lineSeparator);
+			if (entry.fileText != null)
+				writeToExceptionFile(entry.fileText);
+		}
+
+		if (console.length() > 0) {
+			System.out.print(console);
+			System.out.flush();
+		}
+		if (exceptionWriter != null) {
+			try {
+				exceptionWriter.flush();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		for (LogEntry entry : batch) {
+			if (entry.written != null)
+				entry.written.countDown();
+		}
+	}
+
+	private static void writeToExceptionFile(String exDesp) {
+		try {
+			if (exceptionWriter == null) {
+				String exceptionFileName = "." + File.separatorChar + EXCEPTION_FILE_NAME_Prefix + ".txt";
+				File exceptionFile = new File(exceptionFileName);
+				boolean newFile = ! exceptionFile.exists();
+				exceptionWriter = new BufferedWriter(new FileWriter(exceptionFile.getCanonicalFile(), true));
+				if (newFile)
+					exceptionWriter.write("Exceptions in File Checking and File Edition : " + "\n");
+			}
+			exceptionWriter.write(exDesp + "\n");
+		}
+		catch (java.io.IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static class LogEntry {
+		final String consoleText;
+		final String fileText;
+		// counted down once all entries before it have been written
+		final CountDownLatch written;
+
+		LogEntry(String consoleText, String fileText, CountDownLatch written) {
+			this.consoleText = consoleText;
+			this.fileText = fileText;
+			this.written = written;
+		}
+	}
+
+}
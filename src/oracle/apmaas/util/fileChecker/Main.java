@@ -1,83 +1,674 @@
-/*
- *  +===========================================================================+
- *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
- *  |                         All rights reserved.                              |
- *  +===========================================================================+
- */
-
-package oracle.apmaas.util.fileChecker;
-
-import java.util.Calendar;
-import java.util.concurrent.ExecutionException;
-
-public class Main {
-
-	public final static String FILE_EXT_NAME_Java = ".java";
-	public final static String FILE_EXT_NAME_PROPERTIES = ".properties";
-
-	private final static String COMMAND_help = "-h";
-	private final static String COMMAND_help_2 = "-help";
-	private final static String COMMAND_log = "-log";
-	private final static String COMMAND_info = "-info";
-	private final static String COMMAND_exception = "-ex";
-	private final static String COMMAND_silent = "-s";
-
-	private final static String CURRENT_DIR = ".";
-
-	public static void main(String[] args) {
-		String path = null;
-		int logLevel = Logger.LOG_LEVEL_Log;
-		if (args != null) {
-			if (args.length == 1) { // -h -help path
-				if (COMMAND_help.equalsIgnoreCase(args[0]) || COMMAND_help_2.equalsIgnoreCase(args[0])) {
-					Logger.writeInfo("Usage: \r\n   -h or -help :\r\n" +
-							"       Show help messages. OR\r\n" +
-							"   <file-path> :\r\n" +
-							"       Check this file; OR\r\n" +
-							"   [directory] :\r\n" +
-							"       Check all Java files in this directory and all its sub directories,\r\n" +
-							"       where \"directory\" can be an absolute path or a path relative to the current directory.\r\n" +
-							"       If directory is not present, check all Java files in the current directory and all its sub directories; OR\r\n" +
-							"   <directory> [-s|-log|-info|-ex] :\r\n" +
-							"       Check all Java files in this directory,\r\n" +
-							"       -s means running silently, \r\n" +
-							"       -log means displaying log entries, notifications and exceptions, \r\n" +
-							"       -info means displaying notifications and exceptions, \r\n" +
-							"       -ex means displaying only exceptions.\r\n");
-
-					return;
-				}
-				else {
-					path = args[0];
-				}
-			}
-			else if (args.length > 1) { // path -s
-				path = args[0];
-				if (COMMAND_silent.equalsIgnoreCase(args[1]))
-					logLevel = Logger.LOG_LEVEL_Silent;
-				else if (COMMAND_info.equalsIgnoreCase(args[1]))
-					logLevel = Logger.LOG_LEVEL_Info;
-				else if (COMMAND_exception.equalsIgnoreCase(args[1]))
-					logLevel = Logger.LOG_LEVEL_Exception;
-			}
-			if (path == null)
-				path = CURRENT_DIR;
-		}
-
-		Logger.logLevel = logLevel;
-
-		CopyrightChecker checker = new CopyrightChecker();
-		checker.checkDir(path);
-		checker.writeResultToFile(path);
-
-		CopyrightEditor editor = new CopyrightEditor();
-		editor.editMissingFiles(checker.getMissingFilePaths());
-	}
-
-	public static int getCurYear() {
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTimeInMillis(System.currentTimeMillis());
-		return calendar.get(Calendar.YEAR);
-	}
-
-}
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+
+package oracle.apmaas.util.fileChecker;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+public class Main {
+
+	public final static String FILE_EXT_NAME_Java = ".java";
+	public final static String FILE_EXT_NAME_PROPERTIES = ".properties";
+
+	private final static String COMMAND_help = "-h";
+	private final static String COMMAND_help_2 = "-help";
+	private final static String COMMAND_log = "-log";
+	private final static String COMMAND_info = "-info";
+	private final static String COMMAND_exception = "-ex";
+	private final static String COMMAND_silent = "-s";
+	private final static String COMMAND_threads = "-threads";
+	private final static String COMMAND_header_lines = "-header-lines";
+	private final static String COMMAND_header_bytes = "-header-bytes";
+	private final static String COMMAND_cache = "-cache";
+	private final static String COMMAND_cache_hash = "-cache-hash";
+	private final static String COMMAND_changed_since = "-changed-since";
+	private final static String COMMAND_format = "-format";
+	private final static String COMMAND_edit_threads = "-edit-threads";
+	private final static String COMMAND_fused = "-fused";
+	private final static String COMMAND_metrics = "-metrics";
+	private final static String COMMAND_jmx = "-jmx";
+	private final static String COMMAND_watch = "-watch";
+	private final static String COMMAND_server = "-server";
+	private final static String COMMAND_client = "-client";
+	private final static String COMMAND_port = "-port";
+	private final static String COMMAND_regex = "-regex";
+	private final static String COMMAND_exclude = "-exclude";
+	private final static String COMMAND_include = "-include";
+	private final static String COMMAND_ignore_file = "-ignore-file";
+	private final static String COMMAND_shard = "-shard";
+	private final static String COMMAND_merge = "-merge";
+	private final static String COMMAND_time_budget = "-time-budget";
+	private final static String COMMAND_resume = "-resume";
+	private final static String COMMAND_update_years = "-update-years";
+	private final static String COMMAND_archives = "-archives";
+	private final static String COMMAND_types = "-types";
+
+	private final static String FORMAT_text = "text";
+	private final static String FORMAT_jsonl = "jsonl";
+	private final static String FORMAT_sarif = "sarif";
+
+	private final static String CURRENT_DIR = ".";
+	private final static String METRICS_FILE_NAME = "crMetrics.json";
+
+	private static volatile CachedYear cachedYear;
+
+	public static void main(String[] args) {
+		List<String> paths = new ArrayList<>();
+		int logLevel = Logger.LOG_LEVEL_Log;
+		int threadCount = 1;
+		int headerWindowLines = CopyrightChecker.DEFAULT_HEADER_WINDOW_LINES;
+		int headerWindowBytes = CopyrightChecker.DEFAULT_HEADER_WINDOW_BYTES;
+		boolean useCache = false;
+		boolean cacheHashing = false;
+		String changedSince = null;
+		String formats = FORMAT_text;
+		int editThreadCount = 1;
+		boolean fused = false;
+		boolean writeMetrics = false;
+		boolean registerMetrics = false;
+		boolean watch = false;
+		boolean server = false;
+		boolean client = false;
+		int port = CheckServer.DEFAULT_PORT;
+		boolean byteMatching = true;
+		List<String> ignoreRules = new ArrayList<>();
+		String ignoreFile = null;
+		int shardIndex = 0;
+		int shardCount = 1;
+		boolean merge = false;
+		int timeBudgetSeconds = 0;
+		boolean resume = false;
+		boolean updateYears = false;
+		boolean archiveScanning = false;
+		FileTypes fileTypes = FileTypes.getDefaultTypes();
+		if (args != null) {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (COMMAND_help.equalsIgnoreCase(arg) || COMMAND_help_2.equalsIgnoreCase(arg)) {
+					showHelp();
+					return;
+				}
+				else if (COMMAND_silent.equalsIgnoreCase(arg))
+					logLevel = Logger.LOG_LEVEL_Silent;
+				else if (COMMAND_log.equalsIgnoreCase(arg))
+					logLevel = Logger.LOG_LEVEL_Log;
+				else if (COMMAND_info.equalsIgnoreCase(arg))
+					logLevel = Logger.LOG_LEVEL_Info;
+				else if (COMMAND_exception.equalsIgnoreCase(arg))
+					logLevel = Logger.LOG_LEVEL_Exception;
+				else if (COMMAND_threads.equalsIgnoreCase(arg)) {
+					threadCount = parseIntOption(args, ++i, COMMAND_threads, 1);
+					if (threadCount < 0)
+						return;
+				}
+				else if (COMMAND_edit_threads.equalsIgnoreCase(arg)) {
+					editThreadCount = parseIntOption(args, ++i, COMMAND_edit_threads, 1);
+					if (editThreadCount < 0)
+						return;
+				}
+				else if (COMMAND_fused.equalsIgnoreCase(arg))
+					fused = true;
+				else if (COMMAND_metrics.equalsIgnoreCase(arg))
+					writeMetrics = true;
+				else if (COMMAND_jmx.equalsIgnoreCase(arg))
+					registerMetrics = true;
+				else if (COMMAND_watch.equalsIgnoreCase(arg))
+					watch = true;
+				else if (COMMAND_server.equalsIgnoreCase(arg))
+					server = true;
+				else if (COMMAND_client.equalsIgnoreCase(arg))
+					client = true;
+				else if (COMMAND_regex.equalsIgnoreCase(arg))
+					byteMatching = false;
+				else if (COMMAND_exclude.equalsIgnoreCase(arg) || COMMAND_include.equalsIgnoreCase(arg)) {
+					if (++i >= args.length) {
+						Logger.writeException("Option " + arg + " needs a pattern.");
+						return;
+					}
+					ignoreRules.add(COMMAND_include.equalsIgnoreCase(arg) ? "!" + args[i] : args[i]);
+				}
+				else if (COMMAND_ignore_file.equalsIgnoreCase(arg)) {
+					if (++i >= args.length) {
+						Logger.writeException("Option " + COMMAND_ignore_file + " needs a file name.");
+						return;
+					}
+					ignoreFile = args[i];
+				}
+				else if (COMMAND_shard.equalsIgnoreCase(arg)) {
+					int[] shard = parseShardOption(args, ++i);
+					if (shard == null)
+						return;
+					shardIndex = shard[0];
+					shardCount = shard[1];
+				}
+				else if (COMMAND_merge.equalsIgnoreCase(arg))
+					merge = true;
+				else if (COMMAND_time_budget.equalsIgnoreCase(arg)) {
+					timeBudgetSeconds = parseIntOption(args, ++i, COMMAND_time_budget, 1);
+					if (timeBudgetSeconds < 0)
+						return;
+				}
+				else if (COMMAND_resume.equalsIgnoreCase(arg))
+					resume = true;
+				else if (COMMAND_update_years.equalsIgnoreCase(arg))
+					updateYears = true;
+				else if (COMMAND_archives.equalsIgnoreCase(arg))
+					archiveScanning = true;
+				else if (COMMAND_types.equalsIgnoreCase(arg)) {
+					if (++i >= args.length) {
+						Logger.writeException("Option " + COMMAND_types + " needs a list of file types.");
+						return;
+					}
+					fileTypes = FileTypes.forNames(args[i]);
+					if (fileTypes == null) {
+						Logger.writeException("Unknown file type in: " + args[i]);
+						return;
+					}
+				}
+				else if (COMMAND_port.equalsIgnoreCase(arg)) {
+					port = parseIntOption(args, ++i, COMMAND_port, 1);
+					if (port < 0)
+						return;
+				}
+				else if (COMMAND_header_lines.equalsIgnoreCase(arg)) {
+					headerWindowLines = parseIntOption(args, ++i, COMMAND_header_lines, 0);
+					if (headerWindowLines < 0)
+						return;
+				}
+				else if (COMMAND_header_bytes.equalsIgnoreCase(arg)) {
+					headerWindowBytes = parseIntOption(args, ++i, COMMAND_header_bytes, 0);
+					if (headerWindowBytes < 0)
+						return;
+				}
+				else if (COMMAND_cache.equalsIgnoreCase(arg))
+					useCache = true;
+				else if (COMMAND_cache_hash.equalsIgnoreCase(arg)) {
+					useCache = true;
+					cacheHashing = true;
+				}
+				else if (COMMAND_changed_since.equalsIgnoreCase(arg)) {
+					if (++i >= args.length) {
+						Logger.writeException("Option " + COMMAND_changed_since + " needs a git revision.");
+						return;
+					}
+					changedSince = args[i];
+				}
+				else if (COMMAND_format.equalsIgnoreCase(arg)) {
+					if (++i >= args.length) {
+						Logger.writeException("Option " + COMMAND_format + " needs a list of formats.");
+						return;
+					}
+					formats = args[i];
+				}
+				else
+					paths.add(arg);
+			}
+		}
+		if (paths.isEmpty())
+			paths.add(CURRENT_DIR);
+		String path = join(paths);
+
+		Logger.logLevel = logLevel;
+
+		// the server does not shard, so a shard is always checked in this process
+		if (client && (shardCount == 1)) {
+			// these options change how this process checks and edits, which the server would not do
+			List<String> unsupportedOptions = new ArrayList<>();
+			if (useCache)
+				unsupportedOptions.add(cacheHashing ? COMMAND_cache_hash : COMMAND_cache);
+			if (changedSince != null)
+				unsupportedOptions.add(COMMAND_changed_since);
+			if (fused)
+				unsupportedOptions.add(COMMAND_fused);
+			if (timeBudgetSeconds > 0)
+				unsupportedOptions.add(COMMAND_time_budget);
+			if (resume)
+				unsupportedOptions.add(COMMAND_resume);
+			if (watch)
+				unsupportedOptions.add(COMMAND_watch);
+			if (writeMetrics)
+				unsupportedOptions.add(COMMAND_metrics);
+			if (registerMetrics)
+				unsupportedOptions.add(COMMAND_jmx);
+			if ( ! unsupportedOptions.isEmpty()) {
+				Logger.writeException("Option " + join(unsupportedOptions) + " cannot be used with " + COMMAND_client + ".");
+				return;
+			}
+		}
+
+		if (server) {
+			// every client sends its own check options, so the server only takes those of its resources
+			List<String> clientOptions = new ArrayList<>();
+			if (headerWindowLines != CopyrightChecker.DEFAULT_HEADER_WINDOW_LINES)
+				clientOptions.add(COMMAND_header_lines);
+			if (headerWindowBytes != CopyrightChecker.DEFAULT_HEADER_WINDOW_BYTES)
+				clientOptions.add(COMMAND_header_bytes);
+			if ( ! byteMatching)
+				clientOptions.add(COMMAND_regex);
+			if (archiveScanning)
+				clientOptions.add(COMMAND_archives);
+			if ( ! fileTypes.getName().equals(FileTypes.getDefaultTypes().getName()))
+				clientOptions.add(COMMAND_types);
+			if ( ! ignoreRules.isEmpty())
+				clientOptions.add(COMMAND_exclude + "/" + COMMAND_include);
+			if (ignoreFile != null)
+				clientOptions.add(COMMAND_ignore_file);
+			if ( ! clientOptions.isEmpty()) {
+				Logger.writeException("Option " + join(clientOptions) + " cannot be used with " + COMMAND_server +
+						"; give it to each " + COMMAND_client + " instead.");
+				return;
+			}
+			serve(port, threadCount, editThreadCount);
+			return;
+		}
+
+		RunMetrics metrics = new RunMetrics();
+		if (registerMetrics)
+			metrics.registerMBean();
+
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setMetrics(metrics);
+		checker.setThreadCount(threadCount);
+		checker.setHeaderWindowLines(headerWindowLines);
+		checker.setHeaderWindowBytes(headerWindowBytes);
+		checker.setByteMatching(byteMatching);
+		checker.setArchiveScanning(archiveScanning);
+		checker.setFileTypes(fileTypes);
+		checker.setShard(shardIndex, shardCount);
+		if ((ignoreFile != null) || ! ignoreRules.isEmpty()) {
+			IgnoreRules rules = createIgnoreRules(paths.get(0), ignoreFile, ignoreRules);
+			if (rules == null)
+				return;
+			checker.setIgnoreRules(rules);
+		}
+		for (String format : formats.split(",")) {
+			ResultSink resultSink = createResultSink(format.trim());
+			if (resultSink == null) {
+				Logger.writeException("Unknown result format: " + format);
+				return;
+			}
+			checker.addResultSink(resultSink);
+		}
+
+		if (merge) {
+			mergeShardResults(checker, paths);
+			return;
+		}
+
+		if (updateYears) {
+			updateCopyrightYears(new File(paths.get(0)), checker.getFileFilter(), editThreadCount, metrics);
+			return;
+		}
+
+		if (client && (shardCount == 1)) {
+			List<EditOutcome> outcomes;
+			try {
+				outcomes = new CheckClient(port).check(paths, checker, path);
+			}
+			catch (IOException e) {
+				// the server may have inserted copyright blocks already, so the paths are not checked again here
+				Logger.writeException(e.getMessage());
+				System.exit(1);
+				return;
+			}
+			if (outcomes != null) {
+				reportEditOutcomes(outcomes);
+				return;
+			}
+			Logger.writeInfo("No check server on port " + port + ", checking in this process.");
+		}
+
+		if (useCache)
+			checker.enableCache(cacheHashing);
+		if (((timeBudgetSeconds > 0) || resume) && ! watch)
+			checker.enableCheckpoint(path, resume);
+		if (timeBudgetSeconds > 0)
+			checker.setTimeBudget(timeBudgetSeconds * 1000L);
+		CopyrightEditor editor = new CopyrightEditor();
+		editor.setMetrics(metrics);
+		editor.setIoParallelism(editThreadCount);
+		if (fused && ! watch)
+			checker.setMissingFileListener(editor.startPipeline());
+
+		checker.openResultSinks(path);
+		List<File> changedFiles = null;
+		if ((changedSince != null) && (paths.size() == 1) && new File(path).isDirectory()) {
+			changedFiles = GitChangedFiles.listChangedFiles(new File(path), changedSince, checker.getFileFilter());
+			if (changedFiles == null)
+				Logger.writeInfo("Cannot list the files changed since " + changedSince + " in " + path +
+						", checking all files.");
+		}
+		if (changedFiles != null)
+			checker.checkFiles(changedFiles);
+		else {
+			for (String pathToCheck : paths) {
+				checker.checkDir(pathToCheck);
+			}
+		}
+		checker.closeResultSinks(path);
+		checker.finishCheckpoint();
+		boolean stopped = checker.isStopped();
+		if (stopped) {
+			Logger.writeInfo("Time budget of " + timeBudgetSeconds + " seconds used up, the results are partial; " +
+					"run again with " + COMMAND_resume + " to continue.");
+		}
+		// only a complete walk of every file tells which cache entries belong to files no longer there
+		checker.saveCache(path, (changedFiles == null) && (shardCount == 1) && ! stopped);
+		if (shardCount > 1)
+			checker.writeShardResults(path);
+
+		if (watch) {
+			watch(checker, path, paths);
+			return;
+		}
+
+		// without -fused, files are only edited once the check has completed, so that a resumed check
+		// does not edit the files found before its checkpoint again
+		if (fused)
+			reportEditOutcomes(editor.finishPipeline());
+		else if ( ! stopped)
+			reportEditOutcomes(editor.editMissingFiles(checker.getMissingFilePaths().sorted()));
+
+		if (writeMetrics) {
+			try {
+				metrics.writeJson(METRICS_FILE_NAME);
+				Logger.writeInfo("Run metrics are written to " + METRICS_FILE_NAME);
+			}
+			catch (IOException e) {
+				Logger.writeException(e.getMessage());
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static void serve(int port, int threadCount, int editThreadCount) {
+		CheckServer checkServer = new CheckServer(port);
+		checkServer.setThreadCount(threadCount);
+		checkServer.setEditThreadCount(editThreadCount);
+		try {
+			checkServer.serve();
+		}
+		catch (IOException e) {
+			Logger.writeException(e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * The rules of the ignore file come first, so that the rules on the command line override them.
+	 */
+	private static IgnoreRules createIgnoreRules(String path, String ignoreFile, List<String> rules) {
+		try {
+			File root = new File(path);
+			IgnoreRules ignoreRules = new IgnoreRules(root.isDirectory() ? root : root.getAbsoluteFile().getParentFile());
+			if (ignoreFile != null)
+				ignoreRules.addRules(new File(ignoreFile));
+			for (String rule : rules) {
+				ignoreRules.addRule(rule);
+			}
+			return ignoreRules;
+		}
+		catch (IOException e) {
+			Logger.writeException("Cannot read ignore rules: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static String join(List<String> paths) {
+		StringBuilder sb = new StringBuilder();
+		for (String path : paths) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(path);
+		}
+		return sb.toString();
+	}
+
+	private static String getBuiltInTypeNames() {
+		StringBuilder sb = new StringBuilder();
+		for (FileTypes.FileType type : FileTypes.getBuiltInTypes()) {
+			if (sb.length() > 0)
+				sb.append(", ");
+			sb.append(type.getName());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Updates the copyright years of the files under dir to the years of their last commits.
+	 */
+	private static void updateCopyrightYears(File dir, FileFilter fileFilter, int editThreadCount, RunMetrics metrics) {
+		Map<String, Integer> lastModifiedYears = GitChangedFiles.listLastModifiedYears(dir, fileFilter);
+		if (lastModifiedYears == null) {
+			Logger.writeException("Cannot read the git history of " + dir.getPath() + ", no copyright year is updated.");
+			return;
+		}
+
+		CopyrightEditor editor = new CopyrightEditor();
+		editor.setMetrics(metrics);
+		editor.setIoParallelism(editThreadCount);
+		List<EditOutcome> outcomes = editor.updateYears(lastModifiedYears);
+		int editedCount = 0;
+		for (EditOutcome outcome : outcomes) {
+			if (outcome.getStatus() == EditOutcome.EDITED)
+				editedCount++;
+		}
+		Logger.writeInfo("Copyright years updated in " + editedCount + " of " + lastModifiedYears.size() + " committed files.");
+		reportEditOutcomes(outcomes);
+	}
+
+	/**
+	 * Writes the results of the shard result files as one checker would have written them for the whole path.
+	 */
+	private static void mergeShardResults(CopyrightChecker checker, List<String> shardFileNames) {
+		ShardResults shardResults = new ShardResults();
+		try {
+			for (String shardFileName : shardFileNames) {
+				shardResults.read(shardFileName);
+			}
+		}
+		catch (IOException e) {
+			Logger.writeException("Cannot merge shard results: " + e.getMessage());
+			return;
+		}
+		catch (NumberFormatException e) {
+			Logger.writeException("Cannot merge shard results: " + e.getMessage());
+			return;
+		}
+
+		List<Integer> missingShards = shardResults.getMissingShards();
+		if ( ! missingShards.isEmpty())
+			Logger.writeInfo("The results of shards " + missingShards + " are missing, the merged results are incomplete.");
+		checker.rewriteResults(shardResults.getPathChecked(), shardResults.getResults());
+	}
+
+	/**
+	 * Keeps the results of the checked directory up to date until the process is stopped; files are not edited.
+	 */
+	private static void watch(CopyrightChecker checker, String path, List<String> paths) {
+		try {
+			new DirectoryWatcher(checker, path, paths).watch();
+		}
+		catch (IOException e) {
+			Logger.writeException(e.getMessage());
+			e.printStackTrace();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void reportEditOutcomes(List<EditOutcome> outcomes) {
+		int failedCount = 0;
+		for (EditOutcome outcome : outcomes) {
+			if (outcome.getStatus() == EditOutcome.FAILED)
+				failedCount++;
+		}
+		if (failedCount > 0) {
+			Logger.writeInfo(failedCount + " of " + outcomes.size() + " files could not be edited:");
+			for (EditOutcome outcome : outcomes) {
+				if (outcome.getStatus() == EditOutcome.FAILED)
+					Logger.writeInfo("    " + outcome);
+			}
+		}
+	}
+
+	private static ResultSink createResultSink(String format) {
+		if (FORMAT_text.equalsIgnoreCase(format))
+			return new TextResultSink();
+		else if (FORMAT_jsonl.equalsIgnoreCase(format))
+			return new JsonlResultSink();
+		else if (FORMAT_sarif.equalsIgnoreCase(format))
+			return new SarifResultSink();
+		return null;
+	}
+
+	private static void showHelp() {
+		Logger.writeInfo("Usage: \r\n   -h or -help :\r\n" +
+				"       Show help messages. OR\r\n" +
+				"   <file-path> :\r\n" +
+				"       Check this file; OR\r\n" +
+				"   [directory] :\r\n" +
+				"       Check all Java files in this directory and all its sub directories,\r\n" +
+				"       where \"directory\" can be an absolute path or a path relative to the current directory.\r\n" +
+				"       If directory is not present, check all Java files in the current directory and all its sub directories; OR\r\n" +
+				"   <directory> [-s|-log|-info|-ex] [-threads N] [-edit-threads N] [-fused] [-header-lines N] [-header-bytes N] [-regex] [-archives] [-types java,xml,...|all] [-exclude <pattern>] [-include <pattern>] [-ignore-file <file>] [-cache|-cache-hash] [-changed-since <rev>] [-format text,jsonl,sarif] [-metrics] [-jmx] [-watch] [-shard i/N] [-time-budget N] [-resume] :\r\n" +
+				"       Check all Java files in this directory,\r\n" +
+				"       -s means running silently, \r\n" +
+				"       -log means displaying log entries, notifications and exceptions, \r\n" +
+				"       -info means displaying notifications and exceptions, \r\n" +
+				"       -ex means displaying only exceptions, \r\n" +
+				"       -threads N means checking the directory with N threads in parallel (default 1), \r\n" +
+				"       -edit-threads N means inserting missing copyright blocks into N files at a time (default 1), \r\n" +
+				"       -fused means inserting missing copyright blocks while checking, reusing the bytes already read, \r\n" +
+				"       -header-lines N means looking for the copyright block in the first N lines only (default " +
+				CopyrightChecker.DEFAULT_HEADER_WINDOW_LINES + ", 0 for no limit), \r\n" +
+				"       -header-bytes N means reading only the first N bytes of each file (default " +
+				CopyrightChecker.DEFAULT_HEADER_WINDOW_BYTES + ", 0 for the whole file), \r\n" +
+				"       -regex means matching the header as decoded lines with regular expressions instead of as raw bytes,\r\n" +
+				"       which gives the same results but is slower, \r\n" +
+				"       -archives means also checking the Java files inside .jar and .zip files, e.g. source jars, without\r\n" +
+				"       extracting them; they are reported as <archive>!/<entry> and never edited, \r\n" +
+				"       -types means checking the files of these types instead of Java files and the apm-wldf properties files,\r\n" +
+				"       all in one walk: " + getBuiltInTypeNames() + " or all; missing blocks are inserted in the comment syntax\r\n" +
+				"       of each type, after a first line starting with #! or <?xml, \r\n" +
+				"       -exclude <pattern> means not checking the files and directories matching the .gitignore style pattern,\r\n" +
+				"       relative to the checked directory; ignored directories are not visited at all, \r\n" +
+				"       -include <pattern> means checking the matching files again, unless a directory above them is excluded, \r\n" +
+				"       -ignore-file <file> means reading such patterns, one per line, before those given on the command line, \r\n" +
+				"       -cache means skipping files unchanged since the last run, using crCheckCache.txt, \r\n" +
+				"       -cache-hash means the same, but also skipping files whose header is unchanged although their time stamp changed, \r\n" +
+				"       -changed-since <rev> means checking only the files added or modified since the git revision <rev>,\r\n" +
+				"       including untracked files; all files are checked if the directory is not in a git repository, \r\n" +
+				"       -format means writing the results as crCheckResult_*.txt (text, the default), crCheckResult.jsonl\r\n" +
+				"       and/or crCheckResult.sarif; several formats are separated by commas, \r\n" +
+				"       -metrics means writing file counts, bytes read and the latency of each phase to " + METRICS_FILE_NAME + ", \r\n" +
+				"       -jmx means publishing the same metrics as the MBean oracle.apmaas.util.fileChecker:type=RunMetrics, \r\n" +
+				"       -watch means checking again the files which change below any of the directories after the first check\r\n" +
+				"       and updating the results, sorted by path within each directory, until stopped; no copyright block\r\n" +
+				"       is inserted in watch mode, \r\n" +
+				"       -shard i/N means checking only shard i of N, the files whose relative path hashes to it, and writing\r\n" +
+				"       the findings also to crCheckShard_iofN.txt; run each shard on the same tree, e.g. on N nodes, \r\n" +
+				"       -time-budget N means stopping after N seconds with partial results, saving the completed directories\r\n" +
+				"       to crCheckCheckpoint.txt; copyright blocks are then only inserted with -fused, \r\n" +
+				"       -resume means continuing from crCheckCheckpoint.txt, if it is of the same path, without reading the\r\n" +
+				"       directories completed before again; the checkpoint is also saved every few seconds, and removed\r\n" +
+				"       once the check completes; OR\r\n" +
+				"   -merge [-format text,jsonl,sarif] <shard-file> ... :\r\n" +
+				"       Write the results of the crCheckShard_*.txt files of all shards, in the order of checking without shards; OR\r\n" +
+				"   -update-years [-edit-threads N] [directory] :\r\n" +
+				"       Extend the years in the copyright block of each committed Java file in this git directory to the year\r\n" +
+				"       of its last commit, e.g. \"2016\" to \"2016-2019\", reading the history with a single git log; OR\r\n" +
+				"   -server [-port N] [-threads N] [-edit-threads N] :\r\n" +
+				"       Keep running and check the paths sent by clients on the loopback port N (default " +
+				CheckServer.DEFAULT_PORT + "); only clients\r\n" +
+				"       which can read the token the server writes to crCheckServerToken_N.txt, readable by its owner only, are served; OR\r\n" +
+				"   -client [-port N] [-s|-log|-info|-ex] [-format text,jsonl,sarif] [-header-lines N] [-header-bytes N] [-regex]\r\n" +
+				"   [-archives] [-types ...] [-exclude <pattern>] [-include <pattern>] [-ignore-file <file>] <path> ... :\r\n" +
+				"       Check the files and directories on the server with these options and write the results as if checked\r\n" +
+				"       in this process, with the threads of the server; the client must run in the directory of the server, to\r\n" +
+				"       read its token; if no server is running, check them in this process. The options -cache, -cache-hash,\r\n" +
+				"       -changed-since, -fused, -time-budget, -resume, -watch, -metrics and -jmx cannot be used with -client.\r\n");
+	}
+
+	/**
+	 * Returns the shard index (from 0) and the shard count of "-shard i/N", or null after reporting an invalid value.
+	 */
+	private static int[] parseShardOption(String[] args, int index) {
+		if (index < args.length) {
+			String[] fields = args[index].split("/");
+			try {
+				if (fields.length == 2) {
+					int shard = Integer.parseInt(fields[0]);
+					int shardCount = Integer.parseInt(fields[1]);
+					if ((shard >= 1) && (shard <= shardCount))
+						return new int[] { shard - 1, shardCount };
+				}
+			}
+			catch (NumberFormatException ignoreException) {
+				// reported below
+			}
+		}
+		Logger.writeException("Option " + COMMAND_shard + " needs a value i/N with 1 <= i <= N.");
+		return null;
+	}
+
+	/**
+	 * Returns the integer value of an option, or -1 after reporting a missing value or one below minValue.
+	 */
+	private static int parseIntOption(String[] args, int index, String option, int minValue) {
+		if (index < args.length) {
+			try {
+				int value = Integer.parseInt(args[index]);
+				if (value >= minValue)
+					return value;
+			}
+			catch (NumberFormatException ignoreException) {
+				// reported below
+			}
+		}
+		Logger.writeException("Option " + option + " needs an integer value of at least " + minValue + ".");
+		return -1;
+	}
+
+	/**
+	 * Returns the current year; the Calendar is only consulted again once the cached year has ended.
+	 */
+	public static int getCurYear() {
+		long now = System.currentTimeMillis();
+		CachedYear year = cachedYear;
+		if ((year == null) || (now < year.startMillis) || (now >= year.endMillis)) {
+			year = new CachedYear(now);
+			cachedYear = year;
+		}
+		return year.year;
+	}
+
+	private static class CachedYear {
+		final int year;
+		final long startMillis;
+		final long endMillis;
+
+		CachedYear(long now) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(now);
+			year = calendar.get(Calendar.YEAR);
+			calendar.clear();
+			calendar.set(year, Calendar.JANUARY, 1);
+			startMillis = calendar.getTimeInMillis();
+			calendar.set(year + 1, Calendar.JANUARY, 1);
+			endMillis = calendar.getTimeInMillis();
+		}
+	}
+
+}
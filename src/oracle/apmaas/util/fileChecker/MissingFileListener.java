@@ -0,0 +1,21 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+/**
+ * Told by CopyrightChecker about each file whose copyright is not present, while the check is still running.
+ * It may be called from several checking threads at the same time.
+ */
+public interface MissingFileListener {
+
+	/**
+	 * head holds the first headLength bytes of the file as read by the checker, or is null if
+	 * nothing was read; it is only valid during the call. fileLength and lastModified are the file size and
+	 * modification time from before head was read, so that a later change of the file shows in either.
+	 */
+	void missingFile(String filePath, byte[] head, int headLength, long fileLength, long lastModified);
+}
@@ -0,0 +1,289 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Compact list of file paths, for the findings of a check of a huge tree. The directories of the paths are
+ * the nodes of a trie, so a directory prefix is stored once however many paths share it, and the names of
+ * the directories are interned. The file names are packed into one UTF-8 byte array. A path costs its file
+ * name and a few words instead of a String of its whole length.
+ *
+ * A path is split after each '/' and '\\'; get returns a string equal to the one added. The list keeps
+ * the order in which the paths were added, and sorted() returns them sorted. Like ArrayList, it is not
+ * safe to add paths from several threads at once.
+ */
+public class PathList extends AbstractList<String> implements RandomAccess {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+	private final static int INITIAL_CAPACITY = 16;
+	private final static byte[] NO_BYTES = new byte[0];
+
+	private Dir root;
+	private int dirCount = 0;
+	// the names of the directories, each kept once
+	private Map<String, String> dirNames;
+
+	// path i is the path of entryDirs[i] followed by the bytes of names up to nameEnds[i]
+	private int size = 0;
+	private Dir[] entryDirs;
+	private int[] nameEnds;
+	private byte[] names;
+	private int namesLength = 0;
+	// the file names whose UTF-8 bytes do not decode to them again, as they hold a surrogate which is not
+	// part of a pair, by index; they are sorted by the bytes, with "?" for such a surrogate
+	private Map<Integer, String> unpairedNames;
+
+	// the directory of the path added or returned last, as paths come directory by directory
+	private DirPath lastDirPath;
+
+	public PathList() {
+		clear();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String get(int index) {
+		if ((index < 0) || (index >= size))
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		String name = unpairedNames.isEmpty() ? null : unpairedNames.get(index);
+		if (name == null) {
+			int nameStart = getNameStart(index);
+			name = new String(names, nameStart, nameEnds[index] - nameStart, UTF_8);
+		}
+		return getPath(entryDirs[index]) + name;
+	}
+
+	@Override
+	public boolean add(String path) {
+		int nameStart = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+		Dir dir = findDir(path, nameStart);
+		byte[] name = path.substring(nameStart).getBytes(UTF_8);
+
+		if (size == entryDirs.length) {
+			int capacity = size + (size >> 1);
+			entryDirs = Arrays.copyOf(entryDirs, capacity);
+			nameEnds = Arrays.copyOf(nameEnds, capacity);
+		}
+		if (namesLength + name.length > names.length)
+			names = Arrays.copyOf(names, Math.max(namesLength + name.length, names.length + (names.length >> 1)));
+
+		System.arraycopy(name, 0, names, namesLength, name.length);
+		namesLength += name.length;
+		if (hasUnpairedSurrogate(path, nameStart))
+			unpairedNames.put(size, path.substring(nameStart));
+		entryDirs[size] = dir;
+		nameEnds[size] = namesLength;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		root = new Dir(null, "", 0);
+		dirCount = 1;
+		dirNames = new HashMap<>();
+		size = 0;
+		entryDirs = new Dir[INITIAL_CAPACITY];
+		nameEnds = new int[INITIAL_CAPACITY];
+		names = new byte[INITIAL_CAPACITY * 16];
+		namesLength = 0;
+		unpairedNames = new HashMap<>();
+		lastDirPath = null;
+		modCount++;
+	}
+
+	/**
+	 * Returns the paths sorted by their UTF-8 bytes, which is the order of String.compareTo unless a path holds
+	 * characters beyond U+FFFF. The returned list is a read-only snapshot; paths added later are not in it.
+	 */
+	public List<String> sorted() {
+		final int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		mergeSort(order, new int[size], 0, size, new byte[dirCount][]);
+
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index) {
+				return PathList.this.get(order[index]);
+			}
+
+			@Override
+			public int size() {
+				return order.length;
+			}
+		};
+	}
+
+	private static boolean hasUnpairedSurrogate(String path, int start) {
+		for (int i = start; i < path.length(); i++) {
+			char ch = path.charAt(i);
+			if (Character.isHighSurrogate(ch) && (i + 1 < path.length()) && Character.isLowSurrogate(path.charAt(i + 1)))
+				i++;
+			else if (Character.isSurrogate(ch))
+				return true;
+		}
+		return false;
+	}
+
+	private int getNameStart(int index) {
+		return (index == 0) ? 0 : nameEnds[index - 1];
+	}
+
+	private Dir findDir(String path, int nameStart) {
+		DirPath last = lastDirPath;
+		if ((last != null) && (last.path.length() == nameStart) && path.startsWith(last.path))
+			return last.dir;
+
+		Dir dir = root;
+		int start = 0;
+		while (start < nameStart) {
+			int end = start;
+			while ((path.charAt(end) != '/') && (path.charAt(end) != '\\')) {
+				end++;
+			}
+			dir = getChild(dir, path.substring(start, end + 1));
+			start = end + 1;
+		}
+		lastDirPath = new DirPath(dir, path.substring(0, nameStart));
+		return dir;
+	}
+
+	private Dir getChild(Dir dir, String name) {
+		if (dir.children == null)
+			dir.children = new HashMap<>(4);
+		Dir child = dir.children.get(name);
+		if (child == null) {
+			String dirName = dirNames.get(name);
+			if (dirName == null) {
+				dirName = name;
+				dirNames.put(dirName, dirName);
+			}
+			child = new Dir(dir, dirName, dirCount++);
+			dir.children.put(dirName, child);
+		}
+		return child;
+	}
+
+	private String getPath(Dir dir) {
+		DirPath last = lastDirPath;
+		if ((last != null) && (last.dir == dir))
+			return last.path;
+
+		StringBuilder sb = new StringBuilder();
+		appendPath(sb, dir);
+		String path = sb.toString();
+		lastDirPath = new DirPath(dir, path);
+		return path;
+	}
+
+	private static void appendPath(StringBuilder sb, Dir dir) {
+		if (dir.parent != null)
+			appendPath(sb, dir.parent);
+		sb.append(dir.name);
+	}
+
+	private static byte[] getPathBytes(byte[][] dirPaths, Dir dir) {
+		byte[] pathBytes = dirPaths[dir.id];
+		if (pathBytes == null) {
+			byte[] name = dir.name.getBytes(UTF_8);
+			byte[] parentBytes = (dir.parent == null) ? NO_BYTES : getPathBytes(dirPaths, dir.parent);
+			pathBytes = Arrays.copyOf(parentBytes, parentBytes.length + name.length);
+			System.arraycopy(name, 0, pathBytes, parentBytes.length, name.length);
+			dirPaths[dir.id] = pathBytes;
+		}
+		return pathBytes;
+	}
+
+	/**
+	 * Sorts order[from, to) by path; dirPaths caches the UTF-8 bytes of the directory paths by id.
+	 */
+	private void mergeSort(int[] order, int[] buffer, int from, int to, byte[][] dirPaths) {
+		if (to - from < 2)
+			return;
+
+		int middle = (from + to) >>> 1;
+		mergeSort(order, buffer, from, middle, dirPaths);
+		mergeSort(order, buffer, middle, to, dirPaths);
+		// paths added in the order of a sorted walk are in order already
+		if (compare(order[middle - 1], order[middle], dirPaths) <= 0)
+			return;
+
+		System.arraycopy(order, from, buffer, from, to - from);
+		int i = from;
+		int j = middle;
+		for (int k = from; k < to; k++) {
+			if ((j >= to) || ((i < middle) && (compare(buffer[i], buffer[j], dirPaths) <= 0)))
+				order[k] = buffer[i++];
+			else
+				order[k] = buffer[j++];
+		}
+	}
+
+	private int compare(int index1, int index2, byte[][] dirPaths) {
+		int nameStart1 = getNameStart(index1);
+		int nameStart2 = getNameStart(index2);
+		byte[] dir1;
+		byte[] dir2;
+		if (entryDirs[index1] == entryDirs[index2]) {
+			// only the file names differ
+			dir1 = dir2 = NO_BYTES;
+		}
+		else {
+			dir1 = getPathBytes(dirPaths, entryDirs[index1]);
+			dir2 = getPathBytes(dirPaths, entryDirs[index2]);
+		}
+		int length1 = dir1.length + nameEnds[index1] - nameStart1;
+		int length2 = dir2.length + nameEnds[index2] - nameStart2;
+		for (int i = 0; i < Math.min(length1, length2); i++) {
+			int b1 = ((i < dir1.length) ? dir1[i] : names[nameStart1 + i - dir1.length]) & 0xFF;
+			int b2 = ((i < dir2.length) ? dir2[i] : names[nameStart2 + i - dir2.length]) & 0xFF;
+			if (b1 != b2)
+				return b1 - b2;
+		}
+		return length1 - length2;
+	}
+
+	private static class Dir {
+		private final Dir parent;
+		// the name with its trailing separator, e.g. "src/"; "" for the root
+		private final String name;
+		private final int id;
+		private Map<String, Dir> children;
+
+		Dir(Dir parent, String name, int id) {
+			this.parent = parent;
+			this.name = name;
+			this.id = id;
+		}
+	}
+
+	private static class DirPath {
+		private final Dir dir;
+		private final String path;
+
+		DirPath(Dir dir, String path) {
+			this.dir = dir;
+			this.path = path;
+		}
+	}
+}
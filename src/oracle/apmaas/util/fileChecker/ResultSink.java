@@ -0,0 +1,24 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.IOException;
+
+/**
+ * Receives the findings of a check as they are produced.
+ */
+public interface ResultSink {
+
+	void open(String pathChecked) throws IOException;
+
+	/**
+	 * Called once per file whose copyright is missing or in wrong format, with its canonical path.
+	 */
+	void addResult(int caseNum, String filePath) throws IOException;
+
+	void close() throws IOException;
+}
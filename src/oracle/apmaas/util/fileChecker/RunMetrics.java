@@ -0,0 +1,192 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and per phase latency histograms of one run, shared by CopyrightChecker, CopyrightEditor and Logger.
+ * Written as a JSON summary at exit, and optionally exposed through JMX.
+ */
+public class RunMetrics implements RunMetricsMBean {
+
+	public final static String PHASE_LIST_DIRECTORY = "listDirectory";
+	public final static String PHASE_CANONICAL_PATH = "canonicalPath";
+	public final static String PHASE_READ_FILE = "readFile";
+	public final static String PHASE_MATCH_HEADER = "matchHeader";
+	public final static String PHASE_WRITE_RESULTS = "writeResults";
+	public final static String PHASE_EDIT_FILE = "editFile";
+
+	private final static String[] PHASES = {
+			PHASE_LIST_DIRECTORY, PHASE_CANONICAL_PATH, PHASE_READ_FILE,
+			PHASE_MATCH_HEADER, PHASE_WRITE_RESULTS, PHASE_EDIT_FILE };
+
+	private final static String MBEAN_NAME = "oracle.apmaas.util.fileChecker:type=RunMetrics";
+
+	private final long startMillis = System.currentTimeMillis();
+
+	private final AtomicLong filesChecked = new AtomicLong();
+	private final AtomicLong filesFromCache = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong directoriesVisited = new AtomicLong();
+	private final AtomicLong filesOk = new AtomicLong();
+	private final AtomicLong filesMissing = new AtomicLong();
+	private final AtomicLong filesWrongFormat = new AtomicLong();
+	private final AtomicLong filesFailed = new AtomicLong();
+	private final AtomicLong filesEdited = new AtomicLong();
+	private final AtomicLong editsFailed = new AtomicLong();
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+
+	public RunMetrics() {
+		for (int i = 0; i < PHASES.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	public void recordPhase(String phase, long startNanos) {
+		getHistogram(phase).record(System.nanoTime() - startNanos);
+	}
+
+	public LatencyHistogram getHistogram(String phase) {
+		for (int i = 0; i < PHASES.length; i++) {
+			if (PHASES[i].equals(phase))
+				return histograms[i];
+		}
+		throw new IllegalArgumentException("Unknown phase: " + phase);
+	}
+
+	public void addDirectoryVisited() {
+		directoriesVisited.incrementAndGet();
+	}
+
+	public void addBytesRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	public void addFileChecked(int caseNum, boolean fromCache) {
+		filesChecked.incrementAndGet();
+		if (fromCache)
+			filesFromCache.incrementAndGet();
+
+		if (caseNum == CopyrightChecker.COPYRIGHT_OK)
+			filesOk.incrementAndGet();
+		else if (caseNum == CopyrightChecker.COPYRIGHT_Not_Present)
+			filesMissing.incrementAndGet();
+		else if (caseNum == CopyrightChecker.COPYRIGHT_Wrong_Format)
+			filesWrongFormat.incrementAndGet();
+		else
+			filesFailed.incrementAndGet();
+	}
+
+	public void addEditOutcome(EditOutcome outcome) {
+		if (outcome.getStatus() == EditOutcome.EDITED)
+			filesEdited.incrementAndGet();
+		else if (outcome.getStatus() == EditOutcome.FAILED)
+			editsFailed.incrementAndGet();
+	}
+
+	public long getElapsedMillis() {
+		return System.currentTimeMillis() - startMillis;
+	}
+
+	public long getFilesChecked() {
+		return filesChecked.get();
+	}
+
+	public long getFilesFromCache() {
+		return filesFromCache.get();
+	}
+
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public long getDirectoriesVisited() {
+		return directoriesVisited.get();
+	}
+
+	public long getFilesOk() {
+		return filesOk.get();
+	}
+
+	public long getFilesMissing() {
+		return filesMissing.get();
+	}
+
+	public long getFilesWrongFormat() {
+		return filesWrongFormat.get();
+	}
+
+	public long getFilesFailed() {
+		return filesFailed.get();
+	}
+
+	public long getFilesEdited() {
+		return filesEdited.get();
+	}
+
+	public long getEditsFailed() {
+		return editsFailed.get();
+	}
+
+	public String getSummaryJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"elapsedMillis\":").append(getElapsedMillis());
+		sb.append(",\"filesChecked\":").append(getFilesChecked());
+		sb.append(",\"filesFromCache\":").append(getFilesFromCache());
+		sb.append(",\"bytesRead\":").append(getBytesRead());
+		sb.append(",\"directoriesVisited\":").append(getDirectoriesVisited());
+		sb.append(",\"results\":{\"ok\":").append(getFilesOk())
+				.append(",\"missing\":").append(getFilesMissing())
+				.append(",\"wrongFormat\":").append(getFilesWrongFormat())
+				.append(",\"failed\":").append(getFilesFailed()).append("}");
+		sb.append(",\"filesEdited\":").append(getFilesEdited());
+		sb.append(",\"editsFailed\":").append(getEditsFailed());
+		sb.append(",\"logEntriesDropped\":").append(Logger.getDroppedLogCount());
+		sb.append(",\"phases\":{");
+		for (int i = 0; i < PHASES.length; i++) {
+			if (i > 0)
+				sb.append(",");
+			sb.append(Json.quote(PHASES[i])).append(":").append(histograms[i].toJson());
+		}
+		sb.append("}}");
+		return sb.toString();
+	}
+
+	public void writeJson(String fileName) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8");
+		try {
+			writer.write(getSummaryJson());
+			writer.write("\n");
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, replacing metrics registered before.
+	 */
+	public void registerMBean() {
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(MBEAN_NAME);
+			if (mBeanServer.isRegistered(objectName))
+				mBeanServer.unregisterMBean(objectName);
+			mBeanServer.registerMBean(this, objectName);
+		}
+		catch (JMException e) {
+			Logger.writeException("Failed registering run metrics with JMX: " + e.getMessage());
+		}
+	}
+}
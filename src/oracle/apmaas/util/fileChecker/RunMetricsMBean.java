@@ -0,0 +1,37 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+/**
+ * JMX view of RunMetrics.
+ */
+public interface RunMetricsMBean {
+
+	long getElapsedMillis();
+
+	long getFilesChecked();
+
+	long getFilesFromCache();
+
+	long getBytesRead();
+
+	long getDirectoriesVisited();
+
+	long getFilesOk();
+
+	long getFilesMissing();
+
+	long getFilesWrongFormat();
+
+	long getFilesFailed();
+
+	long getFilesEdited();
+
+	long getEditsFailed();
+
+	String getSummaryJson();
+}
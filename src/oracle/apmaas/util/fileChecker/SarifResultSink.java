@@ -0,0 +1,88 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.net.URI;
+
+/**
+ * Writes the findings as a SARIF 2.1.0 log to crCheckResult.sarif, for code scanning dashboards.
+ * The results array is streamed; the log is only complete once close() has run.
+ */
+public class SarifResultSink implements ResultSink {
+
+	private final static String RESULT_FILE_NAME = "crCheckResult.sarif";
+	private final static String TOOL_NAME = "oracleFileChecker";
+	private final static String RULE_ID_Prefix = "copyright-";
+
+	private final static String URI_BASE_ID = "SRCROOT";
+
+	private BufferedWriter bw;
+	private boolean firstResult;
+	private URI rootUri;
+
+	public synchronized void open(String pathChecked) throws IOException {
+		bw = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(generateResultFileName()), "UTF-8"));
+		firstResult = true;
+		rootUri = new File(pathChecked).getCanonicalFile().toURI();
+
+		bw.write("{\"version\":\"2.1.0\"," +
+				"\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\"," +
+				"\"runs\":[{\"tool\":{\"driver\":{\"name\":" + Json.quote(TOOL_NAME) + ",\"rules\":[" +
+				formatRule(CopyrightChecker.COPYRIGHT_Not_Present) + "," +
+				formatRule(CopyrightChecker.COPYRIGHT_Wrong_Format) + "]}}," +
+				"\"originalUriBaseIds\":{" + Json.quote(URI_BASE_ID) + ":{\"uri\":" + Json.quote(rootUri.toString()) + "}}," +
+				"\"results\":[");
+		bw.newLine();
+	}
+
+	public synchronized void addResult(int caseNum, String filePath) throws IOException {
+		if ( ! firstResult) {
+			bw.write(",");
+			bw.newLine();
+		}
+		firstResult = false;
+
+		bw.write("{\"ruleId\":" + Json.quote(getRuleId(caseNum)) + ",\"level\":\"error\"," +
+				"\"message\":{\"text\":" + Json.quote(CopyrightChecker.describeCase(caseNum)) + "}," +
+				"\"locations\":[{\"physicalLocation\":{\"artifactLocation\":" + formatArtifactLocation(filePath) + "," +
+				"\"region\":{\"startLine\":1}}}]}");
+	}
+
+	public synchronized void close() throws IOException {
+		if (bw != null) {
+			bw.newLine();
+			bw.write("]}]}");
+			bw.newLine();
+			bw.close();
+			bw = null;
+		}
+	}
+
+	// paths under the checked directory are given relative to it, others as absolute URIs
+	private String formatArtifactLocation(String filePath) {
+		URI fileUri = new File(filePath).toURI();
+		URI relativeUri = rootUri.relativize(fileUri);
+		if (relativeUri.isAbsolute())
+			return "{\"uri\":" + Json.quote(fileUri.toString()) + "}";
+		return "{\"uri\":" + Json.quote(relativeUri.toString()) + ",\"uriBaseId\":" + Json.quote(URI_BASE_ID) + "}";
+	}
+
+	private static String formatRule(int caseNum) {
+		return "{\"id\":" + Json.quote(getRuleId(caseNum)) +
+				",\"shortDescription\":{\"text\":" + Json.quote(CopyrightChecker.describeCase(caseNum)) + "}}";
+	}
+
+	private static String getRuleId(int caseNum) {
+		return RULE_ID_Prefix + JsonlResultSink.getResultName(caseNum);
+	}
+
+	private static String generateResultFileName() {
+		return "." + File.separatorChar + RESULT_FILE_NAME;
+	}
+}
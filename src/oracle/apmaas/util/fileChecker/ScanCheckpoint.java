@@ -0,0 +1,198 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The progress of a long check, written now and then so that a check which is stopped or killed can be
+ * resumed without reading the completed directories again. Only the topmost completed directories are kept,
+ * each with the findings of its whole subtree in walk order; the entries of its sub directories are dropped
+ * once it completes, so the checkpoint stays about as small as the findings.
+ *
+ * File layout: a header line "#crCheckCheckpoint <version> <fingerprint> <path-checked>", then for each
+ * completed directory a line "D\t<canonical-path>", followed by one line "F\t<case>\t<ordinal>\t<path>"
+ * per finding; the ordinal is only known when checking a shard.
+ */
+public class ScanCheckpoint {
+
+	private final static String CHECKPOINT_HEADER = "#crCheckCheckpoint";
+	private final static int CHECKPOINT_VERSION = 1;
+	private final static String DIR_TAG = "D";
+	private final static String FINDING_TAG = "F";
+	private final static String FIELD_SEPARATOR = "\t";
+
+	// a killed check loses at most the directories completed within this interval
+	private final static long SAVE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private final String checkpointFileName;
+	private final String fingerprint;
+	private final String pathChecked;
+
+	private final Map<String, List<Finding>> completedDirs = new ConcurrentHashMap<>();
+	private long lastSaveNanos = System.nanoTime();
+
+	public ScanCheckpoint(String checkpointFileName, String fingerprint, String pathChecked) {
+		this.checkpointFileName = checkpointFileName;
+		this.fingerprint = fingerprint;
+		this.pathChecked = pathChecked;
+	}
+
+	/**
+	 * Reads the checkpoint of an earlier check of the same path with the same rules, if there is one.
+	 */
+	public void load() {
+		File checkpointFile = new File(checkpointFileName);
+		if ( ! checkpointFile.exists())
+			return;
+
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8"));
+			String headerLine = br.readLine();
+			String[] header = (headerLine == null) ? null : headerLine.split(" ", 4);
+			if ((header == null) || (header.length != 4) || ! CHECKPOINT_HEADER.equals(header[0]) ||
+					! String.valueOf(CHECKPOINT_VERSION).equals(header[1]) || ! fingerprint.equals(header[2]) ||
+					! pathChecked.equals(header[3])) {
+				Logger.writeInfo("Checkpoint " + checkpointFileName + " is of another check, all directories will be checked.");
+				return;
+			}
+
+			List<Finding> findings = null;
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split(FIELD_SEPARATOR, 4);
+				if ((fields.length == 2) && DIR_TAG.equals(fields[0])) {
+					findings = new ArrayList<>();
+					completedDirs.put(fields[1], findings);
+				}
+				else if ((fields.length == 4) && FINDING_TAG.equals(fields[0]) && (findings != null)) {
+					findings.add(new Finding(Integer.parseInt(fields[1]), fields[2], fields[3]));
+				}
+			}
+			Logger.writeInfo("Resuming from checkpoint " + checkpointFileName + " with " + completedDirs.size() +
+					" completed directories.");
+		}
+		catch (Exception e) {
+			// a damaged checkpoint only costs a full check
+			Logger.writeException("Failed reading checkpoint " + checkpointFileName + ": " + e.getMessage());
+			completedDirs.clear();
+		}
+		finally {
+			if (br != null) {
+				try {
+					br.close();
+				}
+				catch (Exception ignoreException) {
+					// nothing to do here
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the findings of the subtree of a directory completed before, or null if it is not completed.
+	 */
+	public List<Finding> getFindings(String dirPath) {
+		return completedDirs.get(dirPath);
+	}
+
+	/**
+	 * Records a directory whose whole subtree has been checked, replacing its sub directories,
+	 * and writes the checkpoint if it has not been written for a while.
+	 */
+	public void complete(String dirPath, List<Finding> findings, List<String> subDirPaths) {
+		completedDirs.put(dirPath, findings);
+		for (String subDirPath : subDirPaths) {
+			completedDirs.remove(subDirPath);
+		}
+
+		synchronized (this) {
+			if (System.nanoTime() - lastSaveNanos < SAVE_INTERVAL_NANOS)
+				return;
+		}
+		try {
+			save();
+		}
+		catch (IOException e) {
+			Logger.writeException(e.getMessage());
+		}
+	}
+
+	public int getCompletedDirCount() {
+		return completedDirs.size();
+	}
+
+	public synchronized void save() throws IOException {
+		File checkpointFile = new File(checkpointFileName);
+		File tempFile = new File(checkpointFileName + ".tmp");
+		BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+		try {
+			bw.write(CHECKPOINT_HEADER + " " + CHECKPOINT_VERSION + " " + fingerprint + " " + pathChecked);
+			bw.newLine();
+			for (Map.Entry<String, List<Finding>> completedDir : completedDirs.entrySet()) {
+				bw.write(DIR_TAG + FIELD_SEPARATOR + completedDir.getKey());
+				bw.newLine();
+				for (Finding finding : completedDir.getValue()) {
+					bw.write(FINDING_TAG + FIELD_SEPARATOR + finding.caseNum + FIELD_SEPARATOR + finding.ordinal +
+							FIELD_SEPARATOR + finding.filePath);
+					bw.newLine();
+				}
+			}
+		}
+		finally {
+			bw.close();
+		}
+
+		if (checkpointFile.exists() && ! checkpointFile.delete())
+			throw new IOException("Failed replacing checkpoint " + checkpointFileName);
+		if ( ! tempFile.renameTo(checkpointFile))
+			throw new IOException("Failed writing checkpoint " + checkpointFileName);
+		lastSaveNanos = System.nanoTime();
+	}
+
+	/**
+	 * Removes the checkpoint once the check has completed.
+	 */
+	public void delete() {
+		File checkpointFile = new File(checkpointFileName);
+		if (checkpointFile.exists() && ! checkpointFile.delete())
+			Logger.writeException("Failed deleting checkpoint " + checkpointFileName);
+	}
+
+	public static class Finding {
+		private final int caseNum;
+		private final String ordinal;
+		private final String filePath;
+
+		public Finding(int caseNum, String ordinal, String filePath) {
+			this.caseNum = caseNum;
+			this.ordinal = ordinal;
+			this.filePath = filePath;
+		}
+
+		public int getCaseNum() {
+			return caseNum;
+		}
+
+		/**
+		 * Returns the position in the serial walk when checking a shard, or an empty string.
+		 */
+		public String getOrdinal() {
+			return ordinal;
+		}
+
+		public String getFilePath() {
+			return filePath;
+		}
+	}
+}
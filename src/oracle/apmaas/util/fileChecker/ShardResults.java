@@ -0,0 +1,172 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the findings of one shard of a sharded check, and merges the findings of all shards into the
+ * results a single checker would have written, in the same order.
+ *
+ * File layout: a header line "#crCheckShard <shard-index> <shard-count> <path-checked>",
+ * then one line per finding: "<ordinal>\t<case>\t<path>", where the ordinal is the position of
+ * the file in the serial walk as dot separated indexes.
+ */
+public class ShardResults {
+
+	private final static String SHARD_HEADER = "#crCheckShard";
+	private final static String FIELD_SEPARATOR = "\t";
+
+	private String pathChecked;
+	private int shardCount;
+	private final Set<Integer> shardsRead = new TreeSet<>();
+	private final List<Finding> findings = new ArrayList<>();
+
+	public static String generateShardFileName(int shardIndex, int shardCount) {
+		return "./crCheckShard_" + (shardIndex + 1) + "of" + shardCount + ".txt";
+	}
+
+	/**
+	 * Returns the shard (from 0) of a path relative to the checked path. The hash does not depend on
+	 * the node, the JVM or the order of the walk, so every shard agrees on it.
+	 */
+	public static int getShard(String relativePath, int shardCount) {
+		CRC32 crc = new CRC32();
+		try {
+			crc.update(relativePath.getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return (int) (crc.getValue() % shardCount);
+	}
+
+	public static void write(String fileName, int shardIndex, int shardCount, String pathChecked,
+			List<String> wrongFormatFilePaths, List<String> missingFilePaths, Map<String, String> ordinals)
+			throws IOException {
+		BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"));
+		try {
+			bw.write(SHARD_HEADER + " " + shardIndex + " " + shardCount + " " + pathChecked);
+			bw.newLine();
+			writeFindings(bw, CopyrightChecker.COPYRIGHT_Wrong_Format, wrongFormatFilePaths, ordinals);
+			writeFindings(bw, CopyrightChecker.COPYRIGHT_Not_Present, missingFilePaths, ordinals);
+		}
+		finally {
+			bw.close();
+		}
+	}
+
+	private static void writeFindings(BufferedWriter bw, int caseNum, List<String> filePaths,
+			Map<String, String> ordinals) throws IOException {
+		for (String filePath : filePaths) {
+			String ordinal = ordinals.get(filePath);
+			bw.write((ordinal == null ? "" : ordinal) + FIELD_SEPARATOR + caseNum + FIELD_SEPARATOR + filePath);
+			bw.newLine();
+		}
+	}
+
+	/**
+	 * Reads the findings of one shard. All shards must come from the same shard count and checked path.
+	 */
+	public void read(String fileName) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			String headerLine = br.readLine();
+			String[] header = (headerLine == null) ? null : headerLine.split(" ", 4);
+			if ((header == null) || (header.length != 4) || ! SHARD_HEADER.equals(header[0]))
+				throw new IOException(fileName + " is not a shard result file.");
+
+			int shardIndex = Integer.parseInt(header[1]);
+			int count = Integer.parseInt(header[2]);
+			if (pathChecked == null) {
+				pathChecked = header[3];
+				shardCount = count;
+			}
+			else if ((count != shardCount) || ! pathChecked.equals(header[3])) {
+				throw new IOException(fileName + " is shard " + (shardIndex + 1) + " of " + count + " of " + header[3] +
+						", not of " + shardCount + " of " + pathChecked + ".");
+			}
+			if ( ! shardsRead.add(shardIndex))
+				throw new IOException(fileName + " repeats shard " + (shardIndex + 1) + ".");
+
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split(FIELD_SEPARATOR, 3);
+				if (fields.length == 3)
+					findings.add(new Finding(parseOrdinal(fields[0]), Integer.parseInt(fields[1]), fields[2]));
+			}
+		}
+		finally {
+			br.close();
+		}
+	}
+
+	public String getPathChecked() {
+		return pathChecked;
+	}
+
+	/**
+	 * Returns the shards (from 1) which were not read, empty once all shards are read.
+	 */
+	public List<Integer> getMissingShards() {
+		List<Integer> missingShards = new ArrayList<>();
+		for (int i = 0; i < shardCount; i++) {
+			if ( ! shardsRead.contains(i))
+				missingShards.add(i + 1);
+		}
+		return missingShards;
+	}
+
+	/**
+	 * Returns the findings of all shards read, by path, in the order of the serial walk.
+	 */
+	public Map<String, Integer> getResults() {
+		List<Finding> sortedFindings = new ArrayList<>(findings);
+		Collections.sort(sortedFindings);
+		Map<String, Integer> results = new LinkedHashMap<>();
+		for (Finding finding : sortedFindings) {
+			results.put(finding.filePath, finding.caseNum);
+		}
+		return results;
+	}
+
+	private static int[] parseOrdinal(String ordinal) {
+		if (ordinal.isEmpty())
+			return new int[0];
+		String[] components = ordinal.split("\\.");
+		int[] indexes = new int[components.length];
+		for (int i = 0; i < components.length; i++) {
+			indexes[i] = Integer.parseInt(components[i]);
+		}
+		return indexes;
+	}
+
+	private static class Finding implements Comparable<Finding> {
+		private final int[] ordinal;
+		private final int caseNum;
+		private final String filePath;
+
+		Finding(int[] ordinal, int caseNum, String filePath) {
+			this.ordinal = ordinal;
+			this.caseNum = caseNum;
+			this.filePath = filePath;
+		}
+
+		@Override
+		public int compareTo(Finding other) {
+			for (int i = 0; (i < ordinal.length) && (i < other.ordinal.length); i++) {
+				if (ordinal[i] != other.ordinal[i])
+					return (ordinal[i] < other.ordinal[i]) ? -1 : 1;
+			}
+			if (ordinal.length != other.ordinal.length)
+				return (ordinal.length < other.ordinal.length) ? -1 : 1;
+			return filePath.compareTo(other.filePath);
+		}
+	}
+}
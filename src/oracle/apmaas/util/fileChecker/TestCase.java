@@ -3,5 +3,87 @@ package oracle.apmaas.util.fileChecker;
 |      Copyright (c) 2015, Oracle and/or its affiliates. All rights reserved. |
 |      Created by Lucky Liu (lucky.liu@oracle.com) 5/27/2015                  |
 +=============================================================================*/
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Base of the tests under the test source root, in the style of JUnit 3 without needing its jar: every public
+ * no-argument method whose name starts with "test" is run on an instance of its own, between setUp() and tearDown().
+ *
+ * Usage: TestCase testClassName...; exits with 1 if a test failed.
+ */
 public class TestCase {
+
+	protected void setUp() throws Exception {
+	}
+
+	protected void tearDown() throws Exception {
+	}
+
+	protected static void assertEquals(String message, int expected, int actual) {
+		if (expected != actual)
+			fail(message + ": expected " + expected + " but was " + actual);
+	}
+
+	protected static void assertTrue(String message, boolean condition) {
+		if ( ! condition)
+			fail(message);
+	}
+
+	protected static void fail(String message) {
+		throw new AssertionError(message);
+	}
+
+	/**
+	 * Runs the tests of testClass in the order of their names, printing each failure; returns how many failed.
+	 */
+	public static int run(Class<? extends TestCase> testClass) throws Exception {
+		List<Method> tests = new ArrayList<>();
+		for (Method method : testClass.getMethods()) {
+			if (method.getName().startsWith("test") && (method.getParameterTypes().length == 0) &&
+					! Modifier.isStatic(method.getModifiers()))
+				tests.add(method);
+		}
+		Collections.sort(tests, new Comparator<Method>() {
+			public int compare(Method method1, Method method2) {
+				return method1.getName().compareTo(method2.getName());
+			}
+		});
+
+		int failedCount = 0;
+		for (Method test : tests) {
+			TestCase testCase = testClass.getConstructor().newInstance();
+			try {
+				testCase.setUp();
+				try {
+					test.invoke(testCase);
+				}
+				finally {
+					testCase.tearDown();
+				}
+			}
+			catch (InvocationTargetException e) {
+				failedCount++;
+				System.out.println("FAILED " + testClass.getSimpleName() + "." + test.getName() + ": " + e.getCause());
+			}
+			catch (Exception e) {
+				failedCount++;
+				System.out.println("FAILED " + testClass.getSimpleName() + "." + test.getName() + ": " + e);
+			}
+		}
+		System.out.println(testClass.getSimpleName() + ": " + tests.size() + " tests, " + failedCount + " failed.");
+		return failedCount;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int failedCount = 0;
+		for (String className : args) {
+			failedCount += run(Class.forName(className).asSubclass(TestCase.class));
+		}
+		if (failedCount > 0)
+			System.exit(1);
+	}
 }
@@ -0,0 +1,121 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Writes the findings to crCheckResult_1.txt and crCheckResult_2.txt, one file per case.
+ * The paths are streamed to a ".part" file while checking; close() writes the result file
+ * with its header and the paths, so a crashed run still leaves the findings behind.
+ */
+public class TextResultSink implements ResultSink {
+
+	private final static String RESULT_FILE_NAME_Prefix = "crCheckResult_";
+	private final static String PART_FILE_NAME_Suffix = ".part";
+
+	private final static int[] CASES = {
+			CopyrightChecker.COPYRIGHT_Wrong_Format,
+			CopyrightChecker.COPYRIGHT_Not_Present };
+
+	private String pathChecked;
+	private final BufferedWriter[] partWriters = new BufferedWriter[CASES.length];
+
+	public synchronized void open(String pathChecked) throws IOException {
+		this.pathChecked = pathChecked;
+
+		// delete all old result files
+		for (int caseNum : CASES) {
+			deleteFile(generateResultFileName(caseNum));
+			deleteFile(generateResultFileName(caseNum) + PART_FILE_NAME_Suffix);
+		}
+	}
+
+	public synchronized void addResult(int caseNum, String filePath) throws IOException {
+		int index = indexOfCase(caseNum);
+		if (index < 0)
+			return;
+
+		if (partWriters[index] == null) {
+			partWriters[index] = new BufferedWriter(
+					new FileWriter(generateResultFileName(caseNum) + PART_FILE_NAME_Suffix));
+		}
+		partWriters[index].write(filePath);
+		partWriters[index].newLine();
+	}
+
+	public synchronized void close() throws IOException {
+		String completedTime = (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")).format(new Date());
+		for (int i = 0; i < CASES.length; i++) {
+			if (partWriters[i] != null) {
+				partWriters[i].close();
+				partWriters[i] = null;
+				writeResultFile(CASES[i], completedTime);
+			}
+		}
+	}
+
+	private void writeResultFile(int caseNum, String completedTime) throws IOException {
+		File resultFile = new File(generateResultFileName(caseNum));
+		File partFile = new File(generateResultFileName(caseNum) + PART_FILE_NAME_Suffix);
+		BufferedWriter bw = null;
+		BufferedReader br = null;
+		try {
+			bw = new BufferedWriter(new FileWriter(resultFile.getCanonicalFile()));
+			bw.write("File/Path checked: " + pathChecked);
+			bw.newLine();
+			bw.write("Check completed at " + completedTime + ".");
+			bw.newLine();
+			bw.newLine();
+
+			bw.write("*************************** Error : " + CopyrightChecker.describeCase(caseNum) +
+					" ***************************");
+			bw.newLine();
+
+			br = new BufferedReader(new FileReader(partFile));
+			String incorrectFilePath;
+			while ((incorrectFilePath = br.readLine()) != null) {
+				bw.write(incorrectFilePath);
+				bw.newLine();
+			}
+		}
+		finally {
+			if (br != null) {
+				try {
+					br.close();
+				}
+				catch (Exception ignoreException) {
+					// nothing to do here
+				}
+			}
+			if (bw != null)
+				bw.close();
+		}
+		partFile.delete();
+	}
+
+	private static int indexOfCase(int caseNum) {
+		for (int i = 0; i < CASES.length; i++) {
+			if (CASES[i] == caseNum)
+				return i;
+		}
+		return -1;
+	}
+
+	private static void deleteFile(String fileName) {
+		File file = new File(fileName);
+		if (file.exists()) {
+			file.delete();
+		}
+	}
+
+	static String generateResultFileName(int caseNum) {
+		return "." + File.separatorChar + RESULT_FILE_NAME_Prefix + caseNum + ".txt";
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Checks that matching the header bytes gives the same results as the regular expressions on decoded lines,
+ * for fixed lines and files: non-ASCII text, CR and CRLF line ends, headers cut by the header window and
+ * years in a wrong format. The randomized counterpart is bench.ByteMatcherDiff.
+ */
+public class ByteMatchingTest extends TestCase {
+
+	private final static String START_LINE = " *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |";
+	private final static String FOLLOWING_LINE = " *  |                         All rights reserved.                              |";
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Charset charset = Charset.defaultCharset();
+	private int logLevel;
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		logLevel = Logger.logLevel;
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		file = File.createTempFile("crByteMatchingTest", ".java");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+		Logger.logLevel = logLevel;
+	}
+
+	public void testNonAsciiLines() {
+		assertSameLine("\u00E9" + START_LINE);
+		assertSameLine(" * \u00A0Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA");
+		assertSameLine(" * Copyright (c) 2016 Oracle\u00A0Corporation, Redwood Shores, CA, USA");
+		assertSameLine(" * Copyr\u0130ght (c) 2016 Oracle Corporation, Redwood Shores, CA, USA");
+		assertSameLine(" * Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, US\u212A");
+		assertSameLine(" * \uFF23opyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA");
+		assertSameLine("\uFEFF" + FOLLOWING_LINE);
+		assertSameLine(" * \u00C0ll rights reserved.");
+		assertSameLine(" * All rights r\u00E9served.");
+	}
+
+	public void testNonAsciiFiles() throws IOException {
+		assertEquals("header after a byte order mark", CopyrightChecker.COPYRIGHT_OK,
+				checkBothWays("\uFEFF/*\n" + START_LINE + "\n" + FOLLOWING_LINE + "\n */\nclass A {}\n"));
+		assertEquals("header in a frame of non-ASCII characters", CopyrightChecker.COPYRIGHT_OK,
+				checkBothWays("/* \u00E9\u00E9\n \u00E9 Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA \u00E9\n" +
+						" \u00E9 All rights reserved. \u00E9\n */\n"));
+		checkBothWays("// \u00FCber\n/*\n" + START_LINE.replace("Oracle", "\u00D6racle") + "\n" + FOLLOWING_LINE + "\n */\n");
+		checkBothWays("/*\n" + START_LINE + "\n * All rights r\u00E9served.\n */\n");
+	}
+
+	public void testCrLfFiles() throws IOException {
+		String[] terminators = { "\r\n", "\r", "\n\r" };
+		for (String terminator : terminators) {
+			String name = "header ended by " + escape(terminator);
+			// "\n\r" ends a line and then an empty one, which breaks the block
+			assertEquals(name, "\n\r".equals(terminator) ? CopyrightChecker.COPYRIGHT_Wrong_Format : CopyrightChecker.COPYRIGHT_OK,
+					checkBothWays("/*" + terminator + START_LINE + terminator + FOLLOWING_LINE + terminator + " */" + terminator));
+			assertEquals(name + " without a following line", CopyrightChecker.COPYRIGHT_Wrong_Format,
+					checkBothWays("/*" + terminator + START_LINE + terminator + " */" + terminator));
+			checkBothWays(START_LINE + terminator + FOLLOWING_LINE);
+			checkBothWays(terminator + terminator + START_LINE + terminator + terminator + FOLLOWING_LINE + terminator);
+		}
+		assertSameLine(START_LINE + "\r");
+		assertSameLine(FOLLOWING_LINE + "\r");
+	}
+
+	public void testHeaderAtWindowBoundary() throws IOException {
+		String[] contents = {
+				"/*\n" + START_LINE + "\n" + FOLLOWING_LINE + "\n */\nclass A {}\n",
+				"/*\r\n" + START_LINE + "\r\n" + FOLLOWING_LINE + "\r\n */\r\n",
+				"package a;\n\n/*\n" + START_LINE + "\n" + FOLLOWING_LINE,
+				"/*\n" + START_LINE + "\n *  |   All rights reserved.  |\n" };
+		int[] windowLines = { 0, 1, 2, 3, 4, 40 };
+		for (String content : contents) {
+			int length = content.getBytes(UTF_8).length;
+			for (int lines : windowLines) {
+				for (int bytes = 1; bytes <= length + 1; bytes++) {
+					checkBothWays(content, lines, bytes);
+				}
+			}
+		}
+	}
+
+	public void testFollowingLineCutByWindow() throws IOException {
+		String[] terminators = { "\n", "\r\n", "\r" };
+		for (String terminator : terminators) {
+			String head = "/*" + terminator + START_LINE + terminator.charAt(0);
+			String content = head + terminator.substring(1) + FOLLOWING_LINE + terminator + " */" + terminator + "class A {}";
+			// once the start line is complete, the rest of the following line is read beyond the window
+			for (int bytes = head.length(); bytes <= content.length(); bytes++) {
+				assertEquals("window of " + bytes + " bytes with " + escape(terminator), CopyrightChecker.COPYRIGHT_OK,
+						checkBothWays(content, CopyrightChecker.DEFAULT_HEADER_WINDOW_LINES, bytes));
+			}
+		}
+	}
+
+	public void testWrongFormatYears() throws IOException {
+		String[] wrongYears = { "201", "20165", "2016-2013", "2016-2016", "2013-" + (Main.getCurYear() + 1), "2013-201", "2O16" };
+		for (String years : wrongYears) {
+			String line = " * Copyright (c) " + years + " Oracle Corporation, Redwood Shores, CA, USA";
+			assertSameLine(line);
+			assertEquals("years " + years, CopyrightChecker.COPYRIGHT_Wrong_Format,
+					checkBothWays("/*\n" + line + "\n * All rights reserved.\n */\n"));
+		}
+
+		String[] years = { "2013-2016", "2013 - 2016", "2013  -2016", "2016" };
+		for (String year : years) {
+			String line = " * Copyright (c) " + year + " Oracle Corporation, Redwood Shores, CA, USA";
+			assertSameLine(line);
+			assertEquals("years " + year, CopyrightChecker.COPYRIGHT_OK,
+					checkBothWays("/*\n" + line + "\n * All rights reserved.\n */\n"));
+		}
+	}
+
+	/**
+	 * Asserts that line, encoded and decoded with the default charset as the checker reads it, gets the same
+	 * results from the regular expressions and the byte matcher, as start and as following line, for block
+	 * comments and for "#" line comments.
+	 */
+	private void assertSameLine(String line) {
+		if ( ! HeaderRules.isAsciiCompatible(charset))
+			return;
+
+		HeaderRules[] rulesList = { HeaderRules.getDefaultRules(), HeaderRules.forLineComments("#") };
+		for (HeaderRules rules : rulesList) {
+			String prefixedLine = (rules.getLinePrefix() != null) ? rules.getLinePrefix() + line : line;
+			byte[] bytes = prefixedLine.getBytes(UTF_8);
+			String decoded = new String(bytes, charset);
+
+			assertEquals("start line \"" + escape(prefixedLine) + "\"", rules.checkStartLine(decoded),
+					rules.checkStartLine(bytes, 0, bytes.length));
+			assertEquals("following line \"" + escape(prefixedLine) + "\"", rules.checkFollowingLine(decoded),
+					rules.checkFollowingLine(bytes, 0, bytes.length));
+		}
+	}
+
+	private int checkBothWays(String content) throws IOException {
+		return checkBothWays(content, CopyrightChecker.DEFAULT_HEADER_WINDOW_LINES, CopyrightChecker.DEFAULT_HEADER_WINDOW_BYTES);
+	}
+
+	/**
+	 * Writes content in UTF-8 and checks it with the given header window, matching the regular expressions and
+	 * the bytes; asserts that both give the same result and returns it.
+	 */
+	private int checkBothWays(String content, int windowLines, int windowBytes) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(content.getBytes(UTF_8));
+		}
+		finally {
+			fos.close();
+		}
+
+		int expected = createChecker(windowLines, windowBytes, false).checkFile(file);
+		int actual = createChecker(windowLines, windowBytes, true).checkFile(file);
+		assertEquals("window of " + windowLines + " lines and " + windowBytes + " bytes on \"" + escape(content) + "\"",
+				expected, actual);
+		return expected;
+	}
+
+	private static CopyrightChecker createChecker(int windowLines, int windowBytes, boolean byteMatching) {
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setHeaderWindowLines(windowLines);
+		checker.setHeaderWindowBytes(windowBytes);
+		checker.setByteMatching(byteMatching);
+		return checker;
+	}
+
+	private static String escape(String text) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if ((ch < ' ') || (ch > '~'))
+				sb.append(String.format("\\u%04X", (int) ch));
+			else
+				sb.append(ch);
+		}
+		return sb.toString();
+	}
+}
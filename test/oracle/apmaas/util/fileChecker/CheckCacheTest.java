@@ -0,0 +1,178 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks when the check cache gives the result of a file without checking it: a file is only taken from the cache
+ * while its size and modification time, or with hashing its header window, are unchanged, and the whole cache is
+ * dropped once the rules change. The results in the cache are forged, so that a result taken from it shows.
+ * The cache is written to the current directory, which must not hold one already.
+ */
+public class CheckCacheTest extends TestCase {
+
+	private final static String CACHE_FILE_NAME = "crCheckCache.txt";
+	// old enough for the cache to trust the time stamps
+	private final static long AGE_MILLIS = 60 * 1000;
+
+	private int logLevel;
+	private File cacheFile;
+	private File dir;
+	private File missingFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		logLevel = Logger.logLevel;
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		cacheFile = new File(CACHE_FILE_NAME);
+		if (cacheFile.exists())
+			throw new IOException(cacheFile.getAbsolutePath() + " is in the way of the test cache.");
+		dir = TestTrees.createTempDir("crCheckCacheTest");
+		TestTrees.createTree(dir, 1, 2, 6);
+		setLastModified(dir, System.currentTimeMillis() - AGE_MILLIS);
+		missingFile = new File(dir, "F1.java").getCanonicalFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cacheFile.delete();
+		TestTrees.delete(dir);
+		Logger.logLevel = logLevel;
+	}
+
+	public void testUnchangedFiles() throws IOException {
+		CopyrightChecker checker = check(false, null);
+		assertEquals("files from the cache of no check", 0, (int) checker.getMetrics().getFilesFromCache());
+		assertTrue("missing file found", checker.getMissingFilePaths().contains(missingFile.getPath()));
+
+		forgeResult(missingFile, CopyrightChecker.COPYRIGHT_OK);
+		checker = check(false, null);
+		assertEquals("files from the cache", 18, (int) checker.getMetrics().getFilesFromCache());
+		assertTrue("forged result taken", ! checker.getMissingFilePaths().contains(missingFile.getPath()));
+	}
+
+	public void testSizeChange() throws IOException {
+		check(false, null);
+		forgeResult(missingFile, CopyrightChecker.COPYRIGHT_OK);
+		long lastModified = missingFile.lastModified();
+		TestTrees.writeFile(missingFile, "class F1 {\n}\n\n");
+		missingFile.setLastModified(lastModified);
+
+		CopyrightChecker checker = check(false, null);
+		assertEquals("files from the cache", 17, (int) checker.getMetrics().getFilesFromCache());
+		assertTrue("file checked again", checker.getMissingFilePaths().contains(missingFile.getPath()));
+	}
+
+	public void testModificationTimeChange() throws IOException {
+		check(false, null);
+		forgeResult(missingFile, CopyrightChecker.COPYRIGHT_OK);
+		missingFile.setLastModified(missingFile.lastModified() + 1000);
+
+		CopyrightChecker checker = check(false, null);
+		assertEquals("files from the cache", 17, (int) checker.getMetrics().getFilesFromCache());
+		assertTrue("file checked again", checker.getMissingFilePaths().contains(missingFile.getPath()));
+	}
+
+	public void testHashChange() throws IOException {
+		check(true, null);
+		forgeResult(missingFile, CopyrightChecker.COPYRIGHT_OK);
+		// only touched, the header window hashes the same
+		missingFile.setLastModified(missingFile.lastModified() + 1000);
+		CopyrightChecker checker = check(true, null);
+		assertEquals("files from the cache", 18, (int) checker.getMetrics().getFilesFromCache());
+		assertTrue("forged result taken", ! checker.getMissingFilePaths().contains(missingFile.getPath()));
+
+		forgeResult(missingFile, CopyrightChecker.COPYRIGHT_OK);
+		// the same size, another header window
+		TestTrees.writeFile(missingFile, "class G1 {\n}\n");
+		missingFile.setLastModified(System.currentTimeMillis() - AGE_MILLIS / 2);
+		checker = check(true, null);
+		assertEquals("files from the cache", 17, (int) checker.getMetrics().getFilesFromCache());
+		assertTrue("file checked again", checker.getMissingFilePaths().contains(missingFile.getPath()));
+	}
+
+	public void testFingerprintChange() throws IOException {
+		check(false, null);
+		forgeResult(missingFile, CopyrightChecker.COPYRIGHT_OK);
+		CopyrightChecker checker = check(false, FileTypes.getAllTypes());
+		assertEquals("files from the cache of other file types", 0, (int) checker.getMetrics().getFilesFromCache());
+		assertTrue("file checked again", checker.getMissingFilePaths().contains(missingFile.getPath()));
+	}
+
+	public void testRuleFingerprintChange() throws IOException {
+		String fingerprint = HeaderRules.getDefaultRules().getFingerprint();
+		CheckCache cache = new CheckCache(cacheFile.getPath(), fingerprint, false);
+		cache.put(missingFile.getPath(), new CheckCache.Entry(missingFile.length(), missingFile.lastModified(),
+				CheckCache.NO_HASH, CopyrightChecker.COPYRIGHT_Not_Present));
+		cache.save(dir.getCanonicalPath(), true);
+
+		cache = new CheckCache(cacheFile.getPath(), fingerprint, false);
+		cache.load();
+		assertTrue("entry of the same rules", cache.get(missingFile.getPath()) != null);
+		cache = new CheckCache(cacheFile.getPath(), HeaderRules.forLineComments("#").getFingerprint(), false);
+		cache.load();
+		assertTrue("entry of other rules", cache.get(missingFile.getPath()) == null);
+	}
+
+	/**
+	 * Checks dir with the cache, with the default file types if fileTypes is null, and saves the cache.
+	 */
+	private CopyrightChecker check(boolean hashing, FileTypes fileTypes) {
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setMetrics(new RunMetrics());
+		if (fileTypes != null)
+			checker.setFileTypes(fileTypes);
+		checker.enableCache(hashing);
+		checker.checkDir(dir.getPath());
+		checker.saveCache(dir.getPath(), true);
+		return checker;
+	}
+
+	/**
+	 * Replaces the result of file in the cache file by caseNum.
+	 */
+	private void forgeResult(File file, int caseNum) throws IOException {
+		List<String> lines = new ArrayList<>();
+		boolean forged = false;
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split("\t", 5);
+				if ((fields.length == 5) && fields[4].equals(file.getPath())) {
+					line = fields[0] + "\t" + fields[1] + "\t" + fields[2] + "\t" + caseNum + "\t" + fields[4];
+					forged = true;
+				}
+				lines.add(line);
+			}
+		}
+		finally {
+			br.close();
+		}
+		assertTrue("cache entry of " + file, forged);
+
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append('\n');
+		}
+		TestTrees.writeFile(cacheFile, sb.toString());
+	}
+
+	private static void setLastModified(File file, long lastModified) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				setLastModified(child, lastModified);
+			}
+		}
+		file.setLastModified(lastModified);
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+
+/**
+ * Checks the edits of CopyrightEditor on temporary files: a file too large for the edit buffer is streamed into
+ * a temporary file and moved over the original, keeping its content byte for byte and its permissions. Years
+ * of the same length are overwritten in place, the others take the same streaming path.
+ */
+public class CopyrightEditorTest extends TestCase {
+
+	private final static int YEAR = 2016;
+	// the largest file edited before files were streamed
+	private final static int OLD_MAX_FILE_SIZE = 32 * 1024 * 1024;
+	// above the edit buffer, so that the file is streamed
+	private final static int STREAMED_FILE_SIZE = 2 * 1024 * 1024;
+	private final static String PERMISSIONS = "rwxr-x---";
+
+	private int logLevel;
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		logLevel = Logger.logLevel;
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		dir = TestTrees.createTempDir("crCopyrightEditorTest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestTrees.delete(dir);
+		Logger.logLevel = logLevel;
+	}
+
+	public void testInsertIntoLargeFile() throws IOException {
+		File file = new File(dir, "A.java");
+		byte[] content = createContent("class A {\n", OLD_MAX_FILE_SIZE + 1024 * 1024, "}\n");
+		TestTrees.writeFile(file, content);
+
+		List<EditOutcome> outcomes = createEditor().editMissingFiles(Collections.singletonList(file.getPath()));
+		assertEquals("outcome", EditOutcome.EDITED, outcomes.get(0).getStatus());
+		assertContent(file, getCopyrightBlock(file), content);
+		assertNoTempFiles();
+	}
+
+	public void testInsertWithHeadReadByChecker() throws IOException {
+		File file = new File(dir, "A.java");
+		byte[] content = createContent("class A {\n", STREAMED_FILE_SIZE, "}\n");
+		TestTrees.writeFile(file, content);
+		byte[] head = Arrays.copyOf(content, CopyrightChecker.DEFAULT_HEADER_WINDOW_BYTES);
+
+		CopyrightEditor editor = createEditor();
+		editor.startPipeline().missingFile(file.getPath(), head, head.length, file.length(), file.lastModified());
+		List<EditOutcome> outcomes = editor.finishPipeline();
+		assertEquals("outcome", EditOutcome.EDITED, outcomes.get(0).getStatus());
+		assertContent(file, getCopyrightBlock(file), content);
+		assertNoTempFiles();
+	}
+
+	public void testInsertAfterFirstLine() throws IOException {
+		File file = new File(dir, "a.sh");
+		String firstLine = "#!/bin/sh\n";
+		byte[] content = createContent(firstLine, STREAMED_FILE_SIZE, "exit 0\n");
+		TestTrees.writeFile(file, content);
+
+		List<EditOutcome> outcomes = createEditor().editMissingFiles(Collections.singletonList(file.getPath()));
+		assertEquals("outcome", EditOutcome.EDITED, outcomes.get(0).getStatus());
+		assertContent(file, firstLine + getCopyrightBlock(file),
+				Arrays.copyOfRange(content, firstLine.length(), content.length));
+	}
+
+	public void testStreamedInsertKeepsPermissions() throws IOException {
+		File file = new File(dir, "A.java");
+		TestTrees.writeFile(file, createContent("class A {\n", STREAMED_FILE_SIZE, "}\n"));
+		if ( ! setPermissions(file))
+			return;
+
+		createEditor().editMissingFiles(Collections.singletonList(file.getPath()));
+		assertPermissions(file);
+	}
+
+	public void testYearOverwrittenInPlace() throws IOException {
+		File file = new File(dir, "A.java");
+		byte[] content = createContent("", STREAMED_FILE_SIZE, "}\n");
+		TestTrees.writeFile(file, concat(createHeader("2016-2018"), content));
+		Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+
+		List<EditOutcome> outcomes = createEditor().updateYears(Collections.singletonMap(file.getPath(), 2019));
+		assertEquals("outcomes", 1, outcomes.size());
+		assertEquals("outcome", EditOutcome.EDITED, outcomes.get(0).getStatus());
+		assertContent(file, createHeader("2016-2019"), content);
+		assertTrue("file overwritten in place",
+				fileKey.equals(Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey()));
+		assertNoTempFiles();
+	}
+
+	public void testYearRangeStreamed() throws IOException {
+		File file = new File(dir, "A.java");
+		byte[] content = createContent("", OLD_MAX_FILE_SIZE + 1024 * 1024, "}\n");
+		TestTrees.writeFile(file, concat(createHeader("2016"), content));
+
+		List<EditOutcome> outcomes = createEditor().updateYears(Collections.singletonMap(file.getPath(), 2019));
+		assertEquals("outcome", EditOutcome.EDITED, outcomes.get(0).getStatus());
+		assertContent(file, createHeader("2016-2019"), content);
+		assertNoTempFiles();
+	}
+
+	public void testYearsLeftAlone() throws IOException {
+		// years up to date, a year after the last modification, no copyright block
+		String[] contents = { createHeader("2016-2019") + "}\n", createHeader("2020") + "}\n", "class A {\n}\n" };
+		Map<String, Integer> lastModifiedYears = new LinkedHashMap<>();
+		for (int i = 0; i < contents.length; i++) {
+			File file = new File(dir, "A" + i + ".java");
+			TestTrees.writeFile(file, contents[i]);
+			lastModifiedYears.put(file.getPath(), 2019);
+		}
+		assertEquals("outcomes", 0, createEditor().updateYears(lastModifiedYears).size());
+		for (int i = 0; i < contents.length; i++) {
+			assertContent(new File(dir, "A" + i + ".java"), contents[i], new byte[0]);
+		}
+	}
+
+	public void testParallelYearOutcomes() throws IOException {
+		Map<String, Integer> lastModifiedYears = new LinkedHashMap<>();
+		for (int i = 0; i < 8; i++) {
+			File file = new File(dir, "A" + i + ".java");
+			TestTrees.writeFile(file, createHeader((i % 2 == 0) ? "2016" : "2016-2017") + "}\n");
+			lastModifiedYears.put(file.getPath(), 2019);
+		}
+		CopyrightEditor editor = createEditor();
+		editor.setIoParallelism(4);
+		List<EditOutcome> outcomes = editor.updateYears(lastModifiedYears);
+
+		assertEquals("outcomes", lastModifiedYears.size(), outcomes.size());
+		int i = 0;
+		for (String path : lastModifiedYears.keySet()) {
+			EditOutcome outcome = outcomes.get(i++);
+			assertTrue("outcome in order: " + outcome.getFilePath(), path.equals(outcome.getFilePath()));
+			assertEquals("outcome", EditOutcome.EDITED, outcome.getStatus());
+			assertContent(new File(path), createHeader("2016-2019") + "}\n", new byte[0]);
+		}
+	}
+
+	public void testStreamedYearsKeepPermissions() throws IOException {
+		File file = new File(dir, "A.java");
+		TestTrees.writeFile(file, createHeader("2016") + "}\n");
+		if ( ! setPermissions(file))
+			return;
+
+		createEditor().updateYears(Collections.singletonMap(file.getPath(), 2019));
+		assertContent(file, createHeader("2016-2019") + "}\n", new byte[0]);
+		assertPermissions(file);
+	}
+
+	private static CopyrightEditor createEditor() {
+		CopyrightEditor editor = new CopyrightEditor(YEAR);
+		editor.setLogLevel(Logger.LOG_LEVEL_Silent);
+		return editor;
+	}
+
+	private static String getCopyrightBlock(File file) {
+		return FileTypes.getAllTypes().getFileType(file.getName()).getCopyrightBlock(YEAR);
+	}
+
+	private static String createHeader(String years) {
+		return "/*\n" + TestTrees.START_LINE.replace("2016", years) + "\n" + TestTrees.FOLLOWING_LINE + "\n */\n" +
+				"class A {\n";
+	}
+
+	private static byte[] concat(String head, byte[] content) throws IOException {
+		byte[] headBytes = head.getBytes("US-ASCII");
+		byte[] bytes = Arrays.copyOf(headBytes, headBytes.length + content.length);
+		System.arraycopy(content, 0, bytes, headBytes.length, content.length);
+		return bytes;
+	}
+
+	/**
+	 * Returns head, lines of text up to length bytes in all, and tail.
+	 */
+	private static byte[] createContent(String head, int length, String tail) throws IOException {
+		byte[] headBytes = head.getBytes("US-ASCII");
+		byte[] tailBytes = tail.getBytes("US-ASCII");
+		byte[] content = new byte[length];
+		System.arraycopy(headBytes, 0, content, 0, headBytes.length);
+		for (int i = headBytes.length; i < length - tailBytes.length; i++) {
+			content[i] = (i % 80 == 79) ? (byte) '\n' : (byte) ('a' + i % 26);
+		}
+		System.arraycopy(tailBytes, 0, content, length - tailBytes.length, tailBytes.length);
+		return content;
+	}
+
+	/**
+	 * Asserts that file holds head followed by content.
+	 */
+	private static void assertContent(File file, String head, byte[] content) throws IOException {
+		byte[] headBytes = head.getBytes("US-ASCII");
+		byte[] edited = Files.readAllBytes(file.toPath());
+		assertEquals("length of " + file.getName(), headBytes.length + content.length, edited.length);
+		for (int i = 0; i < headBytes.length; i++) {
+			if (edited[i] != headBytes[i])
+				fail("head of " + file.getName() + " differs at " + i);
+		}
+		for (int i = 0; i < content.length; i++) {
+			if (edited[headBytes.length + i] != content[i])
+				fail("content of " + file.getName() + " differs at " + i);
+		}
+	}
+
+	private void assertNoTempFiles() {
+		String[] names = dir.list();
+		assertEquals("files left in " + dir + ": " + Arrays.toString(names), 1, names.length);
+	}
+
+	/**
+	 * Sets PERMISSIONS on file; returns false if the file system has no POSIX permissions.
+	 */
+	private static boolean setPermissions(File file) throws IOException {
+		try {
+			Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString(PERMISSIONS));
+			return true;
+		}
+		catch (UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	private static void assertPermissions(File file) throws IOException {
+		Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file.toPath());
+		assertTrue("permissions of " + file.getName() + ": " + PosixFilePermissions.toString(permissions),
+				PosixFilePermissions.fromString(PERMISSIONS).equals(permissions));
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+import java.io.*;
+
+/**
+ * Checks which rules the files of each type are checked with; the apm-wldf properties files checked by default
+ * keep the results they had before the other types were added.
+ */
+public class FileTypesTest extends TestCase {
+
+	private final static String START_LINE = "Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA";
+	private final static String FOLLOWING_LINE = "All rights reserved.";
+
+	private int logLevel;
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		logLevel = Logger.logLevel;
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		dir = File.createTempFile("crFileTypesTest", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+		Logger.logLevel = logLevel;
+	}
+
+	public void testDefaultWldfResults() throws IOException {
+		assertEquals("header commented out with \"!\"", CopyrightChecker.COPYRIGHT_OK,
+				check(FileTypes.getDefaultTypes(), "apm-wldf-FUTURE.properties",
+						"! " + START_LINE + "\n! " + FOLLOWING_LINE + "\nkey=value\n"));
+		assertEquals("header in a property value", CopyrightChecker.COPYRIGHT_Wrong_Format,
+				check(FileTypes.getDefaultTypes(), "apm-wldf-INTERNAL-RELEASE.properties",
+						"note=" + START_LINE + "\nkey=value\n"));
+		assertEquals("header commented out with \"#\"", CopyrightChecker.COPYRIGHT_OK,
+				check(FileTypes.getDefaultTypes(), "apm-wldf-FUTURE.properties",
+						"#  |  " + START_LINE + "  |\n#  |  " + FOLLOWING_LINE + "  |\n"));
+		assertEquals("no header", CopyrightChecker.COPYRIGHT_Not_Present,
+				check(FileTypes.getDefaultTypes(), "apm-wldf-INTERNAL-RELEASE.properties", "key=value\n"));
+	}
+
+	public void testWldfRulesWithAllTypes() throws IOException {
+		// the file names are looked up before the extension of the properties type
+		assertEquals("header commented out with \"!\"", CopyrightChecker.COPYRIGHT_OK,
+				check(FileTypes.getAllTypes(), "apm-wldf-FUTURE.properties",
+						"! " + START_LINE + "\n! " + FOLLOWING_LINE + "\n"));
+		assertTrue("wldf rules", FileTypes.getAllTypes().getFileType("apm-wldf-FUTURE.properties").getHeaderRules() ==
+				HeaderRules.getDefaultRules());
+	}
+
+	public void testLineCommentTypes() throws IOException {
+		assertEquals("properties header in a property value", CopyrightChecker.COPYRIGHT_Not_Present,
+				check(FileTypes.getAllTypes(), "a.properties", "note=" + START_LINE + "\nkey=value\n"));
+		assertEquals("properties header commented out", CopyrightChecker.COPYRIGHT_OK,
+				check(FileTypes.getAllTypes(), "a.properties", "# " + START_LINE + "\n# " + FOLLOWING_LINE + "\n"));
+		assertEquals("shell header in code", CopyrightChecker.COPYRIGHT_Not_Present,
+				check(FileTypes.getAllTypes(), "a.sh", "#!/bin/sh\necho \"" + START_LINE + "\"\necho \"" + FOLLOWING_LINE + "\"\n"));
+		assertEquals("sql header half commented out", CopyrightChecker.COPYRIGHT_Wrong_Format,
+				check(FileTypes.getAllTypes(), "a.sql", "-- " + START_LINE + "\n" + FOLLOWING_LINE + "\n"));
+		assertEquals("sql header", CopyrightChecker.COPYRIGHT_OK,
+				check(FileTypes.getAllTypes(), "a.sql", "-- " + START_LINE + "\n-- " + FOLLOWING_LINE + "\n"));
+	}
+
+	/**
+	 * Writes a file named fileName and checks it with the given types, asserting that matching the bytes
+	 * and the regular expressions give the same result.
+	 */
+	private int check(FileTypes fileTypes, String fileName, String content) throws IOException {
+		File file = new File(dir, fileName);
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(content.getBytes("UTF-8"));
+		}
+		finally {
+			fos.close();
+		}
+
+		int expected = createChecker(fileTypes, false).checkFile(file);
+		int actual = createChecker(fileTypes, true).checkFile(file);
+		assertEquals("byte matching of " + fileName, expected, actual);
+		return expected;
+	}
+
+	private static CopyrightChecker createChecker(FileTypes fileTypes, boolean byteMatching) {
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setFileTypes(fileTypes);
+		checker.setByteMatching(byteMatching);
+		return checker;
+	}
+}
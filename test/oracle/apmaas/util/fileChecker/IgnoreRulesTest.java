@@ -0,0 +1,256 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the .gitignore semantics of IgnoreRules: "**", a trailing "/", anchoring, "!" and escapes, the globs
+ * of matchGlob, and that the states each thread keeps for the directory matched last never change a result.
+ */
+public class IgnoreRulesTest extends TestCase {
+
+	private final static String[] RULES = {
+			"*.class", "/top.java", "a/b.java", "tmp/", "**/logs", "a/**/b", "docs/**", "gen*/", "!gen-keep/",
+			"*.java", "!Keep*.java", "x/[a-c]?/*.txt" };
+
+	private File root;
+
+	@Override
+	protected void setUp() throws Exception {
+		root = TestTrees.createTempDir("crIgnoreRulesTest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestTrees.delete(root);
+	}
+
+	public void testAnySegments() throws IOException {
+		IgnoreRules rules = createRules("**/logs", "a/**/b", "docs/**");
+		assertIgnored(rules, "logs", true, true);
+		assertIgnored(rules, "x/y/logs", false, true);
+		assertIgnored(rules, "a/b", true, true);
+		assertIgnored(rules, "a/x/b", true, true);
+		assertIgnored(rules, "a/x/y/b", false, true);
+		assertIgnored(rules, "x/a/b", true, false);
+		assertIgnored(rules, "a/bb", true, false);
+		// "docs/**" matches what is inside, not the directory itself
+		assertIgnored(rules, "docs", true, false);
+		assertIgnored(rules, "docs/x", false, true);
+		assertIgnored(rules, "docs/x/y", true, true);
+		assertIgnored(rules, "x/docs/y", false, false);
+	}
+
+	public void testDirectoriesOnly() throws IOException {
+		IgnoreRules rules = createRules("tmp/", "/build/");
+		assertIgnored(rules, "tmp", true, true);
+		assertIgnored(rules, "tmp", false, false);
+		assertIgnored(rules, "a/b/tmp", true, true);
+		assertIgnored(rules, "build", true, true);
+		assertIgnored(rules, "build", false, false);
+		assertIgnored(rules, "a/build", true, false);
+	}
+
+	public void testAnchoring() throws IOException {
+		IgnoreRules rules = createRules("/top.java", "a/b.java", "*.class", "a//c.java");
+		assertIgnored(rules, "top.java", false, true);
+		assertIgnored(rules, "a/top.java", false, false);
+		// a "/" in the middle anchors the rule too
+		assertIgnored(rules, "a/b.java", false, true);
+		assertIgnored(rules, "x/a/b.java", false, false);
+		assertIgnored(rules, "a/c.java", false, true);
+		assertIgnored(rules, "A.class", false, true);
+		assertIgnored(rules, "x/y/A.class", false, true);
+	}
+
+	public void testIncludeAgain() throws IOException {
+		IgnoreRules rules = createRules("*.java", "!Keep*.java", "gen*/", "!gen-keep/");
+		assertIgnored(rules, "A.java", false, true);
+		assertIgnored(rules, "Keep.java", false, false);
+		assertIgnored(rules, "x/KeepA.java", false, false);
+		assertIgnored(rules, "gen", true, true);
+		assertIgnored(rules, "x/gen-keep", true, false);
+		// the last matching rule wins
+		rules = createRules("!Keep*.java", "*.java");
+		assertIgnored(rules, "Keep.java", false, true);
+	}
+
+	public void testCommentsAndEscapes() throws IOException {
+		IgnoreRules rules = createRules("# comment", "", "   ");
+		assertTrue("only comments and blank lines", rules.isEmpty());
+		assertIgnored(rules, "# comment", false, false);
+
+		rules = createRules("\\#hash", "\\!bang", "space\\ ", "trailing  ", "a\\*");
+		assertIgnored(rules, "#hash", false, true);
+		assertIgnored(rules, "!bang", false, true);
+		assertIgnored(rules, "space ", false, true);
+		assertIgnored(rules, "trailing", false, true);
+		assertIgnored(rules, "a*", false, true);
+		assertIgnored(rules, "ab", false, false);
+	}
+
+	public void testFiles() throws IOException {
+		IgnoreRules rules = createRules(RULES);
+		assertTrue("file below the root", rules.isIgnored(new File(root, "x" + File.separator + "A.class"), false));
+		assertTrue("file through the absolute root",
+				rules.isIgnored(new File(root.getAbsoluteFile(), "top.java"), false));
+		assertTrue("root itself", ! rules.isIgnored(root, true));
+		assertTrue("file outside the root", ! rules.isIgnored(new File(root.getParentFile(), "A.class"), false));
+	}
+
+	public void testLinesAndFingerprint() throws IOException {
+		IgnoreRules rules = createRules(RULES);
+		assertTrue("lines", Arrays.asList(RULES).equals(rules.getLines()));
+		IgnoreRules sameRules = createRules(rules.getLines().toArray(new String[0]));
+		assertTrue("fingerprint of the same lines", rules.getFingerprint().equals(sameRules.getFingerprint()));
+		sameRules.addRule("# comment");
+		assertTrue("fingerprint of another line", ! rules.getFingerprint().equals(sameRules.getFingerprint()));
+	}
+
+	public void testMatchGlob() {
+		assertGlob("*.java", "A.java", true);
+		assertGlob("*.java", ".java", true);
+		assertGlob("*.java", "A.jav", false);
+		assertGlob("*", "", true);
+		assertGlob("", "", true);
+		assertGlob("", "a", false);
+		assertGlob("?", "", false);
+		assertGlob("a?c", "abc", true);
+		assertGlob("a?c", "ac", false);
+		assertGlob("a*b*c", "aXbYbZc", true);
+		assertGlob("a*b*c", "aXbYc", true);
+		assertGlob("a*b*c", "aXcYb", false);
+		assertGlob("a**", "abc", true);
+		assertGlob("[a-c]x", "bx", true);
+		assertGlob("[a-c]x", "dx", false);
+		assertGlob("[!a-c]x", "dx", true);
+		assertGlob("[^a-c]x", "ax", false);
+		assertGlob("[abc-]", "-", true);
+		assertGlob("[]]", "]", true);
+		assertGlob("[]a]", "a", true);
+		// an unclosed "[" is itself
+		assertGlob("[a", "[a", true);
+		assertGlob("\\*", "*", true);
+		assertGlob("\\*", "a", false);
+		assertGlob("\\", "\\", true);
+		assertTrue("glob from an offset", IgnoreRules.matchGlob("x*.java", 1, "yA.java", 1));
+	}
+
+	public void testDirStatesKeepResults() throws IOException {
+		IgnoreRules rules = createRules(RULES);
+		// directories of the same length, one after another, and a rule added in between
+		assertIgnored(rules, "a/b/x.java", false, true);
+		assertIgnored(rules, "a/b/Keep.java", false, false);
+		assertIgnored(rules, "x/bb/y.txt", false, true);
+		assertIgnored(rules, "x/db/y.txt", false, false);
+		assertIgnored(rules, "c/b/x.txt", false, false);
+		rules.addRule("c/b/*.txt");
+		assertIgnored(rules, "c/b/x.txt", false, true);
+
+		List<String> paths = createPaths(new Random(23), 3000);
+		assertSameAsFreshRules(rules, paths);
+	}
+
+	public void testDirStatesPerThread() throws Exception {
+		final IgnoreRules rules = createRules(RULES);
+		final AtomicInteger failedCount = new AtomicInteger();
+		final Map<String, Boolean> expected = new HashMap<>();
+		final List<List<String>> threadPaths = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			List<String> paths = createPaths(new Random(29 + i), 2000);
+			threadPaths.add(paths);
+			for (String path : paths) {
+				expected.put(path, createRules(RULES).isIgnored(path, false));
+			}
+		}
+
+		List<Thread> threads = new ArrayList<>();
+		for (final List<String> paths : threadPaths) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for (int run = 0; run < 5; run++) {
+						for (String path : paths) {
+							if (rules.isIgnored(path, false) != expected.get(path))
+								failedCount.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals("paths matched differently by threads sharing the rules", 0, failedCount.get());
+	}
+
+	/**
+	 * Asserts that rules match paths, one after another, as rules of the same lines which have not matched
+	 * any path before.
+	 */
+	private void assertSameAsFreshRules(IgnoreRules rules, List<String> paths) throws IOException {
+		String[] lines = rules.getLines().toArray(new String[0]);
+		for (String path : paths) {
+			for (boolean isDirectory : new boolean[] { false, true }) {
+				boolean expected = createRules(lines).isIgnored(path, isDirectory);
+				if (rules.isIgnored(path, isDirectory) != expected)
+					fail(path + (isDirectory ? " as directory" : " as file") + ": expected ignored " + expected);
+			}
+		}
+	}
+
+	/**
+	 * Returns relative paths whose directories are mostly those of the path before.
+	 */
+	private static List<String> createPaths(Random random, int count) {
+		String[] names = { "a", "b", "c", "x", "bb", "db", "tmp", "logs", "docs", "gen", "gen-keep" };
+		String[] fileNames = { "A.java", "Keep.java", "top.java", "b.java", "A.class", "y.txt", "b" };
+		List<String> paths = new ArrayList<>();
+		String dirPath = "";
+		for (int i = 0; i < count; i++) {
+			if ((i == 0) || (random.nextInt(4) == 0)) {
+				StringBuilder sb = new StringBuilder();
+				int depth = random.nextInt(5);
+				for (int j = 0; j < depth; j++) {
+					sb.append(names[random.nextInt(names.length)]).append(File.separatorChar);
+				}
+				dirPath = sb.toString();
+			}
+			paths.add(dirPath + fileNames[random.nextInt(fileNames.length)]);
+		}
+		return paths;
+	}
+
+	private IgnoreRules createRules(String... lines) throws IOException {
+		IgnoreRules rules = new IgnoreRules(root);
+		for (String line : lines) {
+			rules.addRule(line);
+		}
+		return rules;
+	}
+
+	/**
+	 * path is relative to the root, with "/" between its names.
+	 */
+	private static void assertIgnored(IgnoreRules rules, String path, boolean isDirectory, boolean expected) {
+		String relativePath = path.replace('/', File.separatorChar);
+		assertTrue(path + (isDirectory ? " as directory" : " as file") + (expected ? " ignored" : " not ignored"),
+				rules.isIgnored(relativePath, isDirectory) == expected);
+	}
+
+	private static void assertGlob(String glob, String text, boolean expected) {
+		assertTrue("\"" + glob + "\" " + (expected ? "matches" : "does not match") + " \"" + text + "\"",
+				IgnoreRules.matchGlob(glob, 0, text, 0) == expected);
+	}
+}
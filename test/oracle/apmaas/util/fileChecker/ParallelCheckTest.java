@@ -0,0 +1,81 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks that a check with several threads finds the same files as the serial walk, in the same order.
+ */
+public class ParallelCheckTest extends TestCase {
+
+	private final static int RUN_COUNT = 5;
+
+	private int logLevel;
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		logLevel = Logger.logLevel;
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		dir = TestTrees.createTempDir("crParallelCheckTest");
+		TestTrees.createTree(dir, 3, 4, 7);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestTrees.delete(dir);
+		Logger.logLevel = logLevel;
+	}
+
+	public void testSameResultsAsSerial() {
+		CopyrightChecker serialChecker = check(1);
+		assertTrue("missing files found", ! serialChecker.getMissingFilePaths().isEmpty());
+		assertTrue("files in wrong format found", ! serialChecker.getWrongFormatFilePaths().isEmpty());
+
+		// the threads finish in another order on every run
+		for (int run = 0; run < RUN_COUNT; run++) {
+			CopyrightChecker parallelChecker = check(4);
+			TestTrees.assertSamePaths("missing files, run " + run, serialChecker.getMissingFilePaths(),
+					parallelChecker.getMissingFilePaths());
+			TestTrees.assertSamePaths("files in wrong format, run " + run, serialChecker.getWrongFormatFilePaths(),
+					parallelChecker.getWrongFormatFilePaths());
+		}
+	}
+
+	public void testSameResultsForFileList() throws IOException {
+		List<File> files = new ArrayList<>();
+		for (File subDir : dir.listFiles()) {
+			File[] subDirFiles = subDir.listFiles();
+			if (subDirFiles != null) {
+				for (File file : subDirFiles) {
+					if (file.isFile())
+						files.add(file);
+				}
+			}
+		}
+
+		CopyrightChecker serialChecker = new CopyrightChecker();
+		serialChecker.checkFiles(files);
+		CopyrightChecker parallelChecker = new CopyrightChecker();
+		parallelChecker.setThreadCount(4);
+		parallelChecker.checkFiles(files);
+		TestTrees.assertSamePaths("missing files", serialChecker.getMissingFilePaths(), parallelChecker.getMissingFilePaths());
+		TestTrees.assertSamePaths("files in wrong format", serialChecker.getWrongFormatFilePaths(),
+				parallelChecker.getWrongFormatFilePaths());
+	}
+
+	private CopyrightChecker check(int threadCount) {
+		CopyrightChecker checker = new CopyrightChecker();
+		checker.setThreadCount(threadCount);
+		checker.checkDir(dir.getPath());
+		return checker;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Checks that PathList returns exactly the strings added, whatever their separators and even with surrogates
+ * which are not part of a pair, and that sorted() orders them by their UTF-8 bytes.
+ */
+public class PathListTest extends TestCase {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final static String[] PATHS = {
+			"/src/oracle/A.java", "/src/oracle/B.java", "/src/B.java", "/src/oracle/C.java",
+			"", "/", "A.java", "/src/", "/src//A.java", "//A.java",
+			"C:\\src\\oracle\\A.java", "C:\\src/oracle\\B.java", "\\\\server\\share\\A.java",
+			"/src/oracle", "/src/oracle/A.java/B.java",
+			"/src/\u00E9t\u00E9/\u00C9t\u00E9.java", "/src/\uFF5E/\uFF5E.java", "/src/\uD83D\uDE00/\uD83D\uDE00.java",
+			"/src/oracle/A.java", "/lib.jar!/oracle/A.java", "/a b/c\td.java", "/src/A.java ",
+			"/src/\uD800/A\uDC00.java", "/src/\uDE00\uD83D.java", "/src/A\uD83D" };
+
+	public void testGetReturnsPathsAdded() {
+		PathList pathList = new PathList();
+		for (String path : PATHS) {
+			pathList.add(path);
+		}
+		assertEquals("size", PATHS.length, pathList.size());
+		for (int i = 0; i < PATHS.length; i++) {
+			assertTrue("path " + i + ": " + pathList.get(i), PATHS[i].equals(pathList.get(i)));
+		}
+		// the directory returned last is not taken for that of another path
+		for (int i = PATHS.length - 1; i >= 0; i--) {
+			assertTrue("path " + i + " backwards: " + pathList.get(i), PATHS[i].equals(pathList.get(i)));
+		}
+	}
+
+	public void testGetBetweenAdds() {
+		Random random = new Random(17);
+		PathList pathList = new PathList();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			String path = createPath(random);
+			pathList.add(path);
+			expected.add(path);
+			int index = random.nextInt(expected.size());
+			assertTrue("path " + index + " after " + path, expected.get(index).equals(pathList.get(index)));
+		}
+		assertTrue("all paths", expected.equals(pathList));
+	}
+
+	public void testSorted() {
+		Random random = new Random(19);
+		PathList pathList = new PathList();
+		List<String> expected = new ArrayList<>(Arrays.asList(PATHS));
+		for (int i = 0; i < 2000; i++) {
+			expected.add(createPath(random));
+		}
+		for (String path : expected) {
+			pathList.add(path);
+		}
+		Collections.sort(expected, new Comparator<String>() {
+			public int compare(String path1, String path2) {
+				byte[] bytes1 = path1.getBytes(UTF_8);
+				byte[] bytes2 = path2.getBytes(UTF_8);
+				for (int i = 0; i < Math.min(bytes1.length, bytes2.length); i++) {
+					if (bytes1[i] != bytes2[i])
+						return (bytes1[i] & 0xFF) - (bytes2[i] & 0xFF);
+				}
+				return bytes1.length - bytes2.length;
+			}
+		});
+
+		List<String> sorted = pathList.sorted();
+		assertTrue("sorted paths", expected.equals(sorted));
+		pathList.add("/0.java");
+		assertEquals("paths of the snapshot", expected.size(), sorted.size());
+	}
+
+	public void testClear() {
+		PathList pathList = new PathList();
+		for (String path : PATHS) {
+			pathList.add(path);
+		}
+		pathList.clear();
+		assertEquals("size after clear", 0, pathList.size());
+		assertEquals("sorted size after clear", 0, pathList.sorted().size());
+
+		pathList.add(PATHS[1]);
+		assertEquals("size", 1, pathList.size());
+		assertTrue("path after clear", PATHS[1].equals(pathList.get(0)));
+		try {
+			pathList.get(1);
+			fail("index beyond the size");
+		}
+		catch (IndexOutOfBoundsException expected) {
+			// as with ArrayList
+		}
+	}
+
+	/**
+	 * Returns a path of a few directories shared with other paths, with either separator.
+	 */
+	private static String createPath(Random random) {
+		String[] names = { "src", "oracle", "\u00E9t\u00E9", "\uD83D\uDE00", "\uFF5E", "a", "ab", "a.b", "" };
+		StringBuilder sb = new StringBuilder();
+		int depth = random.nextInt(4);
+		for (int i = 0; i < depth; i++) {
+			sb.append(names[random.nextInt(names.length)]).append(random.nextBoolean() ? '/' : '\\');
+		}
+		return sb.append(names[random.nextInt(names.length)]).append(random.nextInt(20)).append(".java").toString();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks that a check resumed from the checkpoint of a stopped one takes the findings of the completed
+ * directories from the checkpoint instead of checking them again, and ends with the results of an uninterrupted
+ * check: none lost, none twice, in the same order. The check is stopped by using up its time budget half way.
+ * The checkpoint is written to the current directory, which must not hold one already.
+ */
+public class ResumeTest extends TestCase {
+
+	private final static String CHECKPOINT_FILE_NAME = "crCheckCheckpoint.txt";
+
+	private int logLevel;
+	private File checkpointFile;
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		logLevel = Logger.logLevel;
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		checkpointFile = new File(CHECKPOINT_FILE_NAME);
+		if (checkpointFile.exists())
+			throw new IOException(checkpointFile.getAbsolutePath() + " is in the way of the test checkpoint.");
+		dir = TestTrees.createTempDir("crResumeTest");
+		TestTrees.createTree(dir, 2, 4, 6);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		checkpointFile.delete();
+		TestTrees.delete(dir);
+		Logger.logLevel = logLevel;
+	}
+
+	public void testSerialResume() throws IOException {
+		assertResumedResults(1);
+	}
+
+	public void testParallelResume() throws IOException {
+		assertResumedResults(4);
+	}
+
+	private void assertResumedResults(int threadCount) throws IOException {
+		CopyrightChecker expectedChecker = new CopyrightChecker();
+		expectedChecker.checkDir(dir.getPath());
+		int missingFileCount = expectedChecker.getMissingFilePaths().size();
+
+		CopyrightChecker stoppedChecker = new CopyrightChecker();
+		stoppedChecker.enableCheckpoint(dir.getPath(), false);
+		stoppedChecker.setMissingFileListener(new StoppingListener(stoppedChecker, missingFileCount / 2));
+		stoppedChecker.checkDir(dir.getPath());
+		stoppedChecker.finishCheckpoint();
+		assertTrue("check stopped", stoppedChecker.isStopped());
+		assertTrue("stopped before the end",
+				stoppedChecker.getMissingFilePaths().size() < missingFileCount);
+
+		// a file fixed since is still missing if its directory is not checked again
+		File completedMissingFile = findCompletedMissingFile();
+		TestTrees.writeFile(completedMissingFile, TestTrees.VALID_HEADER + "class Fixed {\n}\n");
+
+		CopyrightChecker resumedChecker = new CopyrightChecker();
+		resumedChecker.setThreadCount(threadCount);
+		resumedChecker.enableCheckpoint(dir.getPath(), true);
+		resumedChecker.checkDir(dir.getPath());
+		resumedChecker.finishCheckpoint();
+		assertTrue("check completed", ! resumedChecker.isStopped());
+		assertTrue("checkpoint removed", ! checkpointFile.exists());
+		TestTrees.assertSamePaths("missing files", expectedChecker.getMissingFilePaths(),
+				resumedChecker.getMissingFilePaths());
+		TestTrees.assertSamePaths("files in wrong format", expectedChecker.getWrongFormatFilePaths(),
+				resumedChecker.getWrongFormatFilePaths());
+	}
+
+	/**
+	 * Returns a file of a completed directory of the checkpoint which was found without copyright.
+	 */
+	private File findCompletedMissingFile() throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8"));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split("\t", 4);
+				if ((fields.length == 4) && fields[0].equals("F") &&
+						fields[1].equals(String.valueOf(CopyrightChecker.COPYRIGHT_Not_Present)))
+					return new File(fields[3]);
+			}
+		}
+		finally {
+			br.close();
+		}
+		fail("no missing file in a completed directory of the checkpoint");
+		return null;
+	}
+
+	/**
+	 * Uses up the time budget of the checker once it has found stopCount files without copyright.
+	 */
+	private static class StoppingListener implements MissingFileListener {
+		private final CopyrightChecker checker;
+		private final int stopCount;
+		private int count;
+
+		StoppingListener(CopyrightChecker checker, int stopCount) {
+			this.checker = checker;
+			this.stopCount = stopCount;
+		}
+
+		@Override
+		public void missingFile(String filePath, byte[] head, int headLength, long fileLength, long lastModified) {
+			if (++count == stopCount)
+				checker.setTimeBudget(0);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks that merging the results of every shard of a check gives the results of the serial walk, in its order;
+ * the directories hold more than ten files, so that ordering the ordinals as text would misplace some.
+ * The shard results are written to the current directory, which must not hold any of them already.
+ */
+public class ShardMergeTest extends TestCase {
+
+	private final static int SHARD_COUNT = 3;
+
+	private int logLevel;
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		logLevel = Logger.logLevel;
+		Logger.logLevel = Logger.LOG_LEVEL_Silent;
+		for (int i = 0; i < SHARD_COUNT; i++) {
+			File shardFile = new File(ShardResults.generateShardFileName(i, SHARD_COUNT));
+			if (shardFile.exists())
+				throw new IOException(shardFile.getAbsolutePath() + " is in the way of the test shard results.");
+		}
+		dir = TestTrees.createTempDir("crShardMergeTest");
+		TestTrees.createTree(dir, 2, 3, 12);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (int i = 0; i < SHARD_COUNT; i++) {
+			new File(ShardResults.generateShardFileName(i, SHARD_COUNT)).delete();
+		}
+		TestTrees.delete(dir);
+		Logger.logLevel = logLevel;
+	}
+
+	public void testSerialShards() throws IOException {
+		assertMergedResults(1);
+	}
+
+	public void testParallelShards() throws IOException {
+		assertMergedResults(4);
+	}
+
+	public void testMissingShard() throws IOException {
+		checkShards(1);
+		ShardResults shardResults = new ShardResults();
+		shardResults.read(ShardResults.generateShardFileName(0, SHARD_COUNT));
+		shardResults.read(ShardResults.generateShardFileName(2, SHARD_COUNT));
+		assertEquals("missing shards", 1, shardResults.getMissingShards().size());
+		assertEquals("missing shard", 2, shardResults.getMissingShards().get(0));
+	}
+
+	private void assertMergedResults(int threadCount) throws IOException {
+		CopyrightChecker serialChecker = new CopyrightChecker();
+		serialChecker.checkDir(dir.getPath());
+
+		checkShards(threadCount);
+		ShardResults shardResults = new ShardResults();
+		for (int i = 0; i < SHARD_COUNT; i++) {
+			shardResults.read(ShardResults.generateShardFileName(i, SHARD_COUNT));
+		}
+		assertTrue("all shards read", shardResults.getMissingShards().isEmpty());
+
+		List<String> missingFilePaths = new ArrayList<>();
+		List<String> wrongFormatFilePaths = new ArrayList<>();
+		for (Map.Entry<String, Integer> result : shardResults.getResults().entrySet()) {
+			if (result.getValue() == CopyrightChecker.COPYRIGHT_Not_Present)
+				missingFilePaths.add(result.getKey());
+			else if (result.getValue() == CopyrightChecker.COPYRIGHT_Wrong_Format)
+				wrongFormatFilePaths.add(result.getKey());
+			else
+				fail("result " + result.getValue() + " of " + result.getKey());
+		}
+		TestTrees.assertSamePaths("missing files", serialChecker.getMissingFilePaths(), missingFilePaths);
+		TestTrees.assertSamePaths("files in wrong format", serialChecker.getWrongFormatFilePaths(), wrongFormatFilePaths);
+	}
+
+	private void checkShards(int threadCount) {
+		for (int i = 0; i < SHARD_COUNT; i++) {
+			CopyrightChecker checker = new CopyrightChecker();
+			checker.setThreadCount(threadCount);
+			checker.setShard(i, SHARD_COUNT);
+			checker.checkDir(dir.getPath());
+			checker.writeShardResults(dir.getPath());
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ *  +===========================================================================+
+ *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |
+ *  |                         All rights reserved.                              |
+ *  +===========================================================================+
+ */
+package oracle.apmaas.util.fileChecker;
+
+
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Builds the trees the tests check: nested directories whose files have a valid copyright, none, or one in
+ * wrong format, so that both result lists hold files from every level.
+ */
+final class TestTrees {
+
+	final static String START_LINE = " *  |      Copyright (c) 2016 Oracle Corporation, Redwood Shores, CA, USA       |";
+	final static String FOLLOWING_LINE = " *  |                         All rights reserved.                              |";
+	final static String VALID_HEADER = "/*\n" + START_LINE + "\n" + FOLLOWING_LINE + "\n */\n";
+	final static String WRONG_FORMAT_HEADER = "/*\n" + START_LINE + "\n */\n";
+
+	private TestTrees() {
+	}
+
+	static File createTempDir(String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, "");
+		dir.delete();
+		if ( ! dir.mkdir())
+			throw new IOException("Cannot create directory " + dir);
+		return dir;
+	}
+
+	/**
+	 * Writes fileCount files into dir and, down to depth levels, dirCount directories built the same way.
+	 * Of every three files, the first has a valid copyright, the second none and the third one in wrong format.
+	 */
+	static void createTree(File dir, int depth, int dirCount, int fileCount) throws IOException {
+		for (int i = 0; i < fileCount; i++) {
+			String header = (i % 3 == 0) ? VALID_HEADER : (i % 3 == 1) ? "" : WRONG_FORMAT_HEADER;
+			writeFile(new File(dir, "F" + i + ".java"), header + "class F" + i + " {\n}\n");
+		}
+		if (depth > 0) {
+			for (int i = 0; i < dirCount; i++) {
+				File subDir = new File(dir, "d" + i);
+				subDir.mkdir();
+				createTree(subDir, depth - 1, dirCount, fileCount);
+			}
+		}
+	}
+
+	static void writeFile(File file, String content) throws IOException {
+		writeFile(file, content.getBytes("UTF-8"));
+	}
+
+	static void writeFile(File file, byte[] content) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(content);
+		}
+		finally {
+			fos.close();
+		}
+	}
+
+	/**
+	 * Asserts that actual holds the paths of expected in the same order.
+	 */
+	static void assertSamePaths(String message, List<String> expected, List<String> actual) {
+		TestCase.assertEquals(message + ", count", expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			if ( ! expected.get(i).equals(actual.get(i)))
+				TestCase.fail(message + ": expected " + expected.get(i) + " at " + i + " but was " + actual.get(i));
+		}
+	}
+
+	/**
+	 * Deletes file, or dir with everything below it, without following links.
+	 */
+	static void delete(File file) {
+		if (file.isDirectory() && ! Files.isSymbolicLink(file.toPath())) {
+			File[] files = file.listFiles();
+			if (files != null) {
+				for (File child : files) {
+					delete(child);
+				}
+			}
+		}
+		file.delete();
+	}
+}